@@ -0,0 +1,122 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.ClassResolver;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import com.esotericsoftware.kryo.util.PerfectHashClassResolver;
+
+/** Compares the class resolvers for collections of 1000 elements whose classes alternate between 1 and 64 types, where a single
+ * class memo misses on every element. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ClassResolverBenchmark {
+	@Benchmark
+	public int lookup (ClassResolverState state) {
+		ClassResolver resolver = state.resolver;
+		int found = 0;
+		for (Class type : state.classes)
+			if (resolver.getRegistration(type) != null) found++;
+		return found;
+	}
+
+	@Benchmark
+	public int write (ClassResolverState state) {
+		Output output = state.output;
+		output.clear();
+		state.kryo.writeObject(output, state.list);
+		return output.position();
+	}
+
+	static public enum ResolverType {
+		standard {
+			ClassResolver newResolver () {
+				return new DefaultClassResolver();
+			}
+		},
+
+		perfectHash {
+			ClassResolver newResolver () {
+				return new PerfectHashClassResolver();
+			}
+		};
+
+		abstract ClassResolver newResolver ();
+	}
+
+	@State(Scope.Thread)
+	static public class ClassResolverState {
+		static final Class[] componentTypes = {byte.class, short.class, int.class, long.class, float.class, double.class,
+			char.class, boolean.class, String.class, Object.class};
+
+		@Param({"standard", "perfectHash"}) public ResolverType resolverType;
+		@Param({"1", "2", "8", "64"}) public int typeCount;
+
+		ClassResolver resolver;
+		Kryo kryo;
+		final Class[] classes = new Class[1000];
+		final ArrayList list = new ArrayList(classes.length);
+		final Output output = new Output(4096, -1);
+
+		@Setup
+		public void setup () {
+			resolver = resolverType.newResolver();
+			kryo = new Kryo(resolver, new MapReferenceResolver());
+			kryo.setReferences(false);
+			kryo.register(ArrayList.class);
+			// Array classes of increasing dimension provide any number of distinct types.
+			ArrayList<Class> types = new ArrayList(typeCount);
+			for (int dimension = 1; types.size() < typeCount; dimension++) {
+				for (int i = 0; i < componentTypes.length && types.size() < typeCount; i++)
+					types.add(Array.newInstance(componentTypes[i], new int[dimension]).getClass());
+			}
+			for (Class type : types)
+				kryo.register(type);
+			for (int i = 0; i < classes.length; i++) {
+				Class type = types.get(i % typeCount);
+				classes[i] = type;
+				list.add(Array.newInstance(type.getComponentType(), 0));
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.benchmarks.data.Sample;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Measures {@link com.esotericsoftware.kryo.serializers.CollectionSerializer} and
+ * {@link com.esotericsoftware.kryo.serializers.MapSerializer} with small and large collections. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CollectionBenchmark {
+	@Benchmark
+	public int writeIntegerList (CollectionState state) {
+		return state.write(state.integerList);
+	}
+
+	@Benchmark
+	public int writeStringList (CollectionState state) {
+		return state.write(state.stringList);
+	}
+
+	@Benchmark
+	public int writeSampleList (CollectionState state) {
+		return state.write(state.sampleList);
+	}
+
+	@Benchmark
+	public int writeMap (CollectionState state) {
+		return state.write(state.map);
+	}
+
+	@Benchmark
+	public Object readIntegerList (CollectionState state) {
+		return state.read(state.integerListInput);
+	}
+
+	@Benchmark
+	public Object readStringList (CollectionState state) {
+		return state.read(state.stringListInput);
+	}
+
+	@Benchmark
+	public Object readSampleList (CollectionState state) {
+		return state.read(state.sampleListInput);
+	}
+
+	@Benchmark
+	public Object readMap (CollectionState state) {
+		return state.read(state.mapInput);
+	}
+
+	@State(Scope.Thread)
+	static public class CollectionState {
+		@Param({"10", "1000"}) public int size;
+		@Param({"true", "false"}) public boolean references;
+		@Param({"output", "unsafe"}) public StreamType stream;
+
+		final Kryo kryo = new Kryo();
+		final ArrayList<Integer> integerList = new ArrayList();
+		final ArrayList<String> stringList = new ArrayList();
+		final ArrayList<Sample> sampleList = new ArrayList();
+		final HashMap<String, Integer> map = new HashMap();
+		Output output;
+		Input integerListInput, stringListInput, sampleListInput, mapInput;
+
+		@Setup
+		public void setup () {
+			kryo.setReferences(references);
+			kryo.setRegistrationRequired(true);
+			kryo.register(ArrayList.class);
+			kryo.register(HashMap.class);
+			kryo.register(int[].class);
+			kryo.register(long[].class);
+			kryo.register(double[].class);
+			kryo.register(Sample.class);
+
+			for (int i = 0; i < size; i++) {
+				integerList.add(i);
+				stringList.add("string " + i);
+				sampleList.add(new Sample().populate(false));
+				map.put("key " + i, i);
+			}
+
+			output = stream.createOutput(size * 128);
+			integerListInput = newInput(integerList);
+			stringListInput = newInput(stringList);
+			sampleListInput = newInput(sampleList);
+			mapInput = newInput(map);
+		}
+
+		private Input newInput (Object object) {
+			Output output = stream.createOutput(size * 128);
+			kryo.writeClassAndObject(output, object);
+			Input input = stream.createInput(1);
+			stream.prepareInput(output, input);
+			return input;
+		}
+
+		int write (Object object) {
+			output.clear();
+			kryo.writeClassAndObject(output, object);
+			return output.position();
+		}
+
+		Object read (Input input) {
+			input.rewind();
+			return kryo.readClassAndObject(input);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.benchmarks.data.Sample;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.GeneratedFieldSerializer;
+import com.esotericsoftware.kryo.serializers.TaggedFieldSerializer;
+
+/** Compares the serializers that use reflection to access fields, with and without references, for each {@link StreamType}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FieldSerializerBenchmark {
+	@Benchmark
+	public int write (FieldSerializerState state) {
+		Output output = state.output;
+		output.clear();
+		state.kryo.writeObject(output, state.sample);
+		return output.position();
+	}
+
+	@Benchmark
+	public Sample read (FieldSerializerState state) {
+		state.input.rewind();
+		return state.kryo.readObject(state.input, Sample.class);
+	}
+
+	@Benchmark
+	public Sample roundTrip (FieldSerializerState state) {
+		Output output = state.output;
+		output.clear();
+		state.kryo.writeObject(output, state.sample);
+		state.stream.prepareInput(output, state.roundTripInput);
+		return state.kryo.readObject(state.roundTripInput, Sample.class);
+	}
+
+	static public enum SerializerType {
+		field {
+			Serializer newSerializer (Kryo kryo, Class type) {
+				return new FieldSerializer(kryo, type);
+			}
+		},
+
+		generated {
+			Serializer newSerializer (Kryo kryo, Class type) {
+				return new GeneratedFieldSerializer(kryo, type);
+			}
+		},
+
+		compatible {
+			Serializer newSerializer (Kryo kryo, Class type) {
+				return new CompatibleFieldSerializer(kryo, type);
+			}
+		},
+
+		tagged {
+			Serializer newSerializer (Kryo kryo, Class type) {
+				return new TaggedFieldSerializer(kryo, type);
+			}
+		};
+
+		abstract Serializer newSerializer (Kryo kryo, Class type);
+	}
+
+	@State(Scope.Thread)
+	static public class FieldSerializerState {
+		@Param({"field", "generated", "compatible", "tagged"}) public SerializerType serializer;
+		@Param({"true", "false"}) public boolean references;
+		@Param({"output", "unsafe", "byteBuffer", "unsafeMemory"}) public StreamType stream;
+
+		final Kryo kryo = new Kryo();
+		final Sample sample = new Sample().populate(true);
+		Output output;
+		Input input, roundTripInput;
+
+		@Setup
+		public void setup () {
+			kryo.setReferences(references);
+			kryo.setRegistrationRequired(true);
+			kryo.register(int[].class);
+			kryo.register(long[].class);
+			kryo.register(double[].class);
+			kryo.register(Sample.class, serializer.newSerializer(kryo, Sample.class));
+
+			output = stream.createOutput(1024);
+			roundTripInput = stream.createInput(1);
+
+			// The input reads from its own output so the write and read benchmarks don't share a buffer.
+			Output inputBytes = stream.createOutput(1024);
+			kryo.writeObject(inputBytes, sample);
+			input = stream.createInput(1);
+			stream.prepareInput(inputBytes, input);
+			if (!sample.equals(kryo.readObject(input, Sample.class))) throw new RuntimeException("Round trip failed.");
+		}
+	}
+}
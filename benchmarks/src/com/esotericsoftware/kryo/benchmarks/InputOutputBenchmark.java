@@ -0,0 +1,219 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Measures writing and reading primitive values directly with each {@link StreamType}. Each invocation writes or reads
+ * {@link InputOutputState#count} values so the per call overhead of the benchmark harness is negligible. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InputOutputBenchmark {
+	@Benchmark
+	public int writeInt (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		for (int i = 0, n = state.count; i < n; i++)
+			output.writeInt(i);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeVarInt (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		for (int i = 0, n = state.count; i < n; i++)
+			output.writeVarInt(i, true);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeLong (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		for (int i = 0, n = state.count; i < n; i++)
+			output.writeLong(i);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeVarLong (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		for (int i = 0, n = state.count; i < n; i++)
+			output.writeVarLong(i, true);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeDouble (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		for (int i = 0, n = state.count; i < n; i++)
+			output.writeDouble(i);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeInts (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		output.writeInts(state.ints);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeBytes (InputOutputState state) {
+		Output output = state.output;
+		output.clear();
+		output.writeBytes(state.bytes);
+		return output.position();
+	}
+
+	@Benchmark
+	public long readInt (InputOutputState state) {
+		Input input = state.rewind(state.intInput);
+		long sum = 0;
+		for (int i = 0, n = state.count; i < n; i++)
+			sum += input.readInt();
+		return sum;
+	}
+
+	@Benchmark
+	public long readVarInt (InputOutputState state) {
+		Input input = state.rewind(state.varIntInput);
+		long sum = 0;
+		for (int i = 0, n = state.count; i < n; i++)
+			sum += input.readVarInt(true);
+		return sum;
+	}
+
+	@Benchmark
+	public long readLong (InputOutputState state) {
+		Input input = state.rewind(state.longInput);
+		long sum = 0;
+		for (int i = 0, n = state.count; i < n; i++)
+			sum += input.readLong();
+		return sum;
+	}
+
+	@Benchmark
+	public long readVarLong (InputOutputState state) {
+		Input input = state.rewind(state.varLongInput);
+		long sum = 0;
+		for (int i = 0, n = state.count; i < n; i++)
+			sum += input.readVarLong(true);
+		return sum;
+	}
+
+	@Benchmark
+	public int[] readInts (InputOutputState state) {
+		return state.rewind(state.intInput).readInts(state.count);
+	}
+
+	@Benchmark
+	public byte[] readBytes (InputOutputState state) {
+		return state.rewind(state.byteInput).readBytes(state.count);
+	}
+
+	@State(Scope.Thread)
+	static public class InputOutputState {
+		@Param({"output", "unsafe", "byteBuffer", "unsafeMemory"}) public StreamType stream;
+
+		/** The number of values written or read per invocation. */
+		@Param("1024") public int count;
+
+		Output output;
+		Input intInput, varIntInput, longInput, varLongInput, byteInput;
+		int[] ints;
+		byte[] bytes;
+
+		@Setup
+		public void setup () {
+			output = stream.createOutput(count * 10);
+
+			ints = new int[count];
+			bytes = new byte[count];
+			for (int i = 0; i < count; i++) {
+				ints[i] = i;
+				bytes[i] = (byte)i;
+			}
+
+			// Each input reads from its own output, since the unsafe streams use native byte order and the bytes must be written
+			// with the stream type under test.
+			Output intOutput = newOutput();
+			for (int i = 0; i < count; i++)
+				intOutput.writeInt(i);
+			intInput = newInput(intOutput);
+
+			Output varIntOutput = newOutput();
+			for (int i = 0; i < count; i++)
+				varIntOutput.writeVarInt(i, true);
+			varIntInput = newInput(varIntOutput);
+
+			Output longOutput = newOutput();
+			for (int i = 0; i < count; i++)
+				longOutput.writeLong(i);
+			longInput = newInput(longOutput);
+
+			Output varLongOutput = newOutput();
+			for (int i = 0; i < count; i++)
+				varLongOutput.writeVarLong(i, true);
+			varLongInput = newInput(varLongOutput);
+
+			Output byteOutput = newOutput();
+			byteOutput.writeBytes(bytes);
+			byteInput = newInput(byteOutput);
+		}
+
+		private Output newOutput () {
+			return stream.createOutput(count * 10);
+		}
+
+		private Input newInput (Output output) {
+			Input input = stream.createInput(1);
+			stream.prepareInput(output, input);
+			return input;
+		}
+
+		Input rewind (Input input) {
+			input.rewind();
+			return input;
+		}
+	}
+}
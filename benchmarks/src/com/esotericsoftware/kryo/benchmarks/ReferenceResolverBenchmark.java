@@ -0,0 +1,118 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.ReferenceResolver;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.GenerationalReferenceResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+
+/** Compares the write throughput of the reference resolvers for graphs of different sizes. Each graph is written with a reset
+ * before the next, so the cost of resetting after a large graph is included. The largest graphs need a large heap. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class ReferenceResolverBenchmark {
+	@Benchmark
+	public int writeGraph (ReferenceResolverState state) {
+		Output output = state.output;
+		output.clear();
+		state.kryo.writeObject(output, state.nodes);
+		return output.position();
+	}
+
+	static public enum ResolverType {
+		map {
+			ReferenceResolver newResolver () {
+				return new MapReferenceResolver();
+			}
+		},
+
+		generational {
+			ReferenceResolver newResolver () {
+				return new GenerationalReferenceResolver();
+			}
+		},
+
+		/** Keeps the table at reset after graphs of up to about 500,000 objects. */
+		generationalLarge {
+			ReferenceResolver newResolver () {
+				return new GenerationalReferenceResolver(1 << 20);
+			}
+		},
+
+		/** Never reallocates the table. */
+		generationalUnbounded {
+			ReferenceResolver newResolver () {
+				return new GenerationalReferenceResolver(Integer.MAX_VALUE);
+			}
+		};
+
+		abstract ReferenceResolver newResolver ();
+	}
+
+	@State(Scope.Thread)
+	static public class ReferenceResolverState {
+		@Param({"map", "generational", "generationalLarge", "generationalUnbounded"}) public ResolverType resolver;
+		@Param({"10", "1000", "100000", "1000000", "10000000"}) public int graphSize;
+
+		Kryo kryo;
+		final Output output = new Output(4096, -1);
+		final ArrayList<Node> nodes = new ArrayList();
+
+		@Setup
+		public void setup () {
+			kryo = new Kryo(resolver.newResolver());
+			kryo.register(ArrayList.class);
+			kryo.register(Node.class);
+			for (int i = 0; i < graphSize; i++) {
+				Node node = new Node();
+				node.value = i;
+				// Each node references one written before it.
+				if (i > 0) node.other = nodes.get(i / 2);
+				nodes.add(node);
+			}
+		}
+	}
+
+	static public class Node {
+		public int value;
+		public Node other;
+	}
+}
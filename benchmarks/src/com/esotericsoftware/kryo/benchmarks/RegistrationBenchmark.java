@@ -0,0 +1,192 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.RegistrationTable;
+import com.esotericsoftware.kryo.benchmarks.data.Sample;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Measures the startup of a Kryo that has many classes registered and writes an object of one of them, as happens when an
+ * application starts or a pool creates a Kryo. Registering the classes creates a serializer for each one, a
+ * {@link RegistrationTable} creates only the serializers for the classes that are used, and reading a snapshot of the table
+ * avoids registering the classes to build it. Run with {@code -bm ss -f 20} to measure the first, cold use instead. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegistrationBenchmark {
+	@Benchmark
+	public int register (RegistrationState state) {
+		Kryo kryo = new Kryo();
+		state.register(kryo);
+		return state.write(kryo);
+	}
+
+	@Benchmark
+	public int table (RegistrationState state) {
+		return state.write(new Kryo(state.table));
+	}
+
+	@Benchmark
+	public int snapshot (RegistrationState state) {
+		RegistrationTable table = RegistrationTable.read(new Kryo(), new Input(state.snapshot));
+		return state.write(new Kryo(table));
+	}
+
+	@State(Scope.Thread)
+	static public class RegistrationState {
+		static final Class[] types = {Sample.class, int[].class, long[].class, double[].class, Type0.class, Type1.class,
+			Type2.class, Type3.class, Type4.class, Type5.class, Type6.class, Type7.class, Type8.class, Type9.class, Type10.class,
+			Type11.class, Type12.class, Type13.class, Type14.class, Type15.class};
+
+		final Sample sample = new Sample().populate(true);
+		final Output output = new Output(1024);
+		RegistrationTable table;
+		byte[] snapshot;
+
+		@Setup
+		public void setup () {
+			Kryo kryo = new Kryo();
+			register(kryo);
+			table = new RegistrationTable(kryo);
+			Output output = new Output(1024, -1);
+			table.write(output);
+			snapshot = output.toBytes();
+		}
+
+		void register (Kryo kryo) {
+			kryo.setRegistrationRequired(true);
+			for (Class type : types)
+				kryo.register(type);
+		}
+
+		int write (Kryo kryo) {
+			output.clear();
+			kryo.writeObject(output, sample);
+			return output.position();
+		}
+	}
+
+	static public class Type0 {
+		public int a;
+		public String b;
+	}
+
+	static public class Type1 {
+		public long a;
+		public String b;
+		public Type0 c;
+	}
+
+	static public class Type2 {
+		public double a, b;
+		public String c;
+	}
+
+	static public class Type3 {
+		public int a, b, c;
+		public Type2 d;
+	}
+
+	static public class Type4 {
+		public String a, b;
+		public long c;
+	}
+
+	static public class Type5 {
+		public boolean a;
+		public Type4 b;
+		public int[] c;
+	}
+
+	static public class Type6 {
+		public float a, b;
+		public short c;
+	}
+
+	static public class Type7 {
+		public String a;
+		public Type6 b;
+		public Type5 c;
+	}
+
+	static public class Type8 {
+		public long a, b;
+		public double[] c;
+	}
+
+	static public class Type9 {
+		public char a;
+		public String b;
+		public Type8 c;
+	}
+
+	static public class Type10 {
+		public int a;
+		public long b;
+		public float c;
+		public double d;
+	}
+
+	static public class Type11 {
+		public Type10 a;
+		public Type9 b;
+		public String c;
+	}
+
+	static public class Type12 {
+		public byte a;
+		public short b;
+		public long[] c;
+	}
+
+	static public class Type13 {
+		public String a, b, c;
+	}
+
+	static public class Type14 {
+		public Type13 a;
+		public Type12 b;
+		public boolean c;
+	}
+
+	static public class Type15 {
+		public int a;
+		public Type14 b;
+		public Type11 c;
+	}
+}
@@ -0,0 +1,108 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.nio.ByteBuffer;
+
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryOutput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+
+/** The Output/Input implementations that are benchmarked. Each type creates a matching pair and knows how to make the bytes
+ * written to its Output available to its Input without copying. */
+public enum StreamType {
+	output {
+		public Output createOutput (int bufferSize) {
+			return new Output(bufferSize, -1);
+		}
+
+		public Input createInput (int bufferSize) {
+			return new Input(bufferSize);
+		}
+
+		public void prepareInput (Output output, Input input) {
+			input.setBuffer(output.getBuffer(), 0, output.position());
+		}
+	},
+
+	unsafe {
+		public Output createOutput (int bufferSize) {
+			return new UnsafeOutput(bufferSize, -1);
+		}
+
+		public Input createInput (int bufferSize) {
+			return new UnsafeInput(bufferSize);
+		}
+
+		public void prepareInput (Output output, Input input) {
+			input.setBuffer(output.getBuffer(), 0, output.position());
+		}
+	},
+
+	byteBuffer {
+		public Output createOutput (int bufferSize) {
+			return new ByteBufferOutput(bufferSize, -1);
+		}
+
+		public Input createInput (int bufferSize) {
+			return new ByteBufferInput(bufferSize);
+		}
+
+		public void prepareInput (Output output, Input input) {
+			prepareByteBufferInput((ByteBufferOutput)output, (ByteBufferInput)input);
+		}
+	},
+
+	unsafeMemory {
+		public Output createOutput (int bufferSize) {
+			return new UnsafeMemoryOutput(bufferSize, -1);
+		}
+
+		public Input createInput (int bufferSize) {
+			return new UnsafeMemoryInput(bufferSize);
+		}
+
+		public void prepareInput (Output output, Input input) {
+			prepareByteBufferInput((ByteBufferOutput)output, (ByteBufferInput)input);
+		}
+	};
+
+	/** @param bufferSize The initial size of the buffer, which grows as needed. */
+	abstract public Output createOutput (int bufferSize);
+
+	abstract public Input createInput (int bufferSize);
+
+	/** Sets the input's buffer to the bytes written so far to the output. The output must not be written to while the input is in
+	 * use. */
+	abstract public void prepareInput (Output output, Input input);
+
+	static void prepareByteBufferInput (ByteBufferOutput output, ByteBufferInput input) {
+		// The output's buffer may have been replaced when it grew, so it is always set again.
+		ByteBuffer buffer = output.getByteBuffer();
+		buffer.limit(output.position());
+		buffer.position(0);
+		input.setBuffer(buffer);
+	}
+}
@@ -0,0 +1,104 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Measures {@link Output#writeString(String)}, {@link Output#writeAscii(String)} and {@link Input#readString()} for ASCII and
+ * non-ASCII strings of various lengths. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StringBenchmark {
+	@Benchmark
+	public int writeString (StringState state) {
+		Output output = state.output;
+		output.clear();
+		output.writeString(state.string);
+		return output.position();
+	}
+
+	@Benchmark
+	public int writeAscii (StringState state) {
+		Output output = state.output;
+		output.clear();
+		// writeAscii can only be used for ASCII strings.
+		if (state.ascii)
+			output.writeAscii(state.string);
+		else
+			output.writeString(state.string);
+		return output.position();
+	}
+
+	@Benchmark
+	public String readString (StringState state) {
+		state.input.rewind();
+		return state.input.readString();
+	}
+
+	@Benchmark
+	public StringBuilder readStringBuilder (StringState state) {
+		state.input.rewind();
+		return state.input.readStringBuilder();
+	}
+
+	@State(Scope.Thread)
+	static public class StringState {
+		@Param({"8", "64", "1024"}) public int length;
+		@Param({"true", "false"}) public boolean ascii;
+		@Param({"output", "unsafe", "byteBuffer", "unsafeMemory"}) public StreamType stream;
+
+		String string;
+		Output output;
+		Input input;
+
+		@Setup
+		public void setup () {
+			StringBuilder buffer = new StringBuilder(length);
+			for (int i = 0; i < length; i++)
+				buffer.append(ascii ? (char)('a' + i % 26) : (char)('\u0430' + i % 32));
+			string = buffer.toString();
+
+			output = stream.createOutput(length * 3 + 5);
+
+			Output inputBytes = stream.createOutput(length * 3 + 5);
+			inputBytes.writeString(string);
+			input = stream.createInput(1);
+			stream.prepareInput(inputBytes, input);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.benchmarks.data;
+
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.serializers.TaggedFieldSerializer.Tag;
+
+/** A typical DTO with primitive, wrapper, string, array and nested object fields. Fields are tagged so the class can be used with
+ * {@link com.esotericsoftware.kryo.serializers.TaggedFieldSerializer}. */
+public class Sample {
+	@Tag(0) public int intValue;
+	@Tag(1) public long longValue;
+	@Tag(2) public float floatValue;
+	@Tag(3) public double doubleValue;
+	@Tag(4) public short shortValue;
+	@Tag(5) public char charValue;
+	@Tag(6) public boolean booleanValue;
+	@Tag(7) public Integer IntegerValue;
+	@Tag(8) public Long LongValue;
+	@Tag(9) public Float FloatValue;
+	@Tag(10) public Double DoubleValue;
+	@Tag(11) public Short ShortValue;
+	@Tag(12) public Character CharValue;
+	@Tag(13) public Boolean BooleanValue;
+	@Tag(14) public int[] intArray;
+	@Tag(15) public long[] longArray;
+	@Tag(16) public double[] doubleArray;
+	@Tag(17) public String string;
+	@Tag(18) public Sample sample;
+
+	public Sample populate (boolean child) {
+		intValue = 123;
+		longValue = 1230000;
+		floatValue = 12.345f;
+		doubleValue = 1.234567;
+		shortValue = 12345;
+		charValue = '!';
+		booleanValue = true;
+
+		IntegerValue = 321;
+		LongValue = 3210000L;
+		FloatValue = 54.321f;
+		DoubleValue = 7.654321;
+		ShortValue = 32100;
+		CharValue = '$';
+		BooleanValue = Boolean.FALSE;
+
+		intArray = new int[] {-1234, -123, -12, -1, 0, 1, 12, 123, 1234};
+		longArray = new long[] {-123400, -12300, -1200, -100, 0, 100, 1200, 12300, 123400};
+		doubleArray = new double[] {-1234.5, -123.4, -12.3, -1.2, 0, 1.2, 12.3, 123.4, 1234.5};
+		string = "just some string";
+
+		if (child) sample = new Sample().populate(false);
+		return this;
+	}
+
+	public boolean equals (Object object) {
+		if (this == object) return true;
+		if (object == null || getClass() != object.getClass()) return false;
+		Sample other = (Sample)object;
+		if (intValue != other.intValue || longValue != other.longValue || floatValue != other.floatValue
+			|| doubleValue != other.doubleValue || shortValue != other.shortValue || charValue != other.charValue
+			|| booleanValue != other.booleanValue) return false;
+		if (!equals(IntegerValue, other.IntegerValue) || !equals(LongValue, other.LongValue)
+			|| !equals(FloatValue, other.FloatValue) || !equals(DoubleValue, other.DoubleValue)
+			|| !equals(ShortValue, other.ShortValue) || !equals(CharValue, other.CharValue)
+			|| !equals(BooleanValue, other.BooleanValue)) return false;
+		if (!Arrays.equals(intArray, other.intArray) || !Arrays.equals(longArray, other.longArray)
+			|| !Arrays.equals(doubleArray, other.doubleArray)) return false;
+		return equals(string, other.string) && equals(sample, other.sample);
+	}
+
+	public int hashCode () {
+		return 31 * intValue + (string == null ? 0 : string.hashCode());
+	}
+
+	static private boolean equals (Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,358 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import com.esotericsoftware.kryo.GenerateSerializer;
+import com.esotericsoftware.kryo.serializers.CompiledSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+
+/** Generates a {@link CompiledSerializer} for each class annotated with {@link GenerateSerializer}. The serializer is written to
+ * the same package as the class and reads and writes the same bytes as {@link FieldSerializer} with its default configuration.
+ * <p>
+ * Fields are accessed directly, or through a non-private getter and setter named after the field when the field is private.
+ * Final fields and fields using the {@link FieldSerializer.Optional} or bind annotations are not supported and cause a compile
+ * error. */
+@SupportedAnnotationTypes("com.esotericsoftware.kryo.GenerateSerializer")
+public class SerializerProcessor extends AbstractProcessor {
+	static private final String NOT_NULL = "com.esotericsoftware.kryo.NotNull";
+	static private final String[] unsupportedAnnotations = {"com.esotericsoftware.kryo.serializers.FieldSerializer.Optional",
+		"com.esotericsoftware.kryo.serializers.FieldSerializer.Bind",
+		"com.esotericsoftware.kryo.serializers.CollectionSerializer.BindCollection",
+		"com.esotericsoftware.kryo.serializers.MapSerializer.BindMap"};
+
+	public SourceVersion getSupportedSourceVersion () {
+		return SourceVersion.latestSupported();
+	}
+
+	public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(GenerateSerializer.class)) {
+			try {
+				if (element.getKind() != ElementKind.CLASS)
+					throw new ProcessorException("@GenerateSerializer can only be used on classes.", element);
+				generate((TypeElement)element);
+			} catch (ProcessorException ex) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ex.getMessage(), ex.element);
+			} catch (IOException ex) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write serializer: " + ex, element);
+			}
+		}
+		return true;
+	}
+
+	private void generate (TypeElement type) throws IOException {
+		String packageName = getPackage(type).getQualifiedName().toString();
+		Set<Modifier> modifiers = type.getModifiers();
+		if (modifiers.contains(Modifier.ABSTRACT)) throw new ProcessorException("Class must not be abstract.", type);
+		if (type.getNestingKind() != NestingKind.TOP_LEVEL && !modifiers.contains(Modifier.STATIC))
+			throw new ProcessorException("Nested class must be static.", type);
+		if (!isAccessible(type, packageName)) throw new ProcessorException("Class must not be private.", type);
+
+		// Collect fields the same way FieldSerializer does: subclass first, then sorted by name.
+		List<FieldInfo> fields = new ArrayList();
+		List<FieldInfo> transientFields = new ArrayList();
+		Set<String> names = new HashSet();
+		for (TypeElement current = type; current != null; current = getSuperclass(current)) {
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				Set<Modifier> fieldModifiers = field.getModifiers();
+				if (fieldModifiers.contains(Modifier.STATIC)) continue;
+				boolean isTransient = fieldModifiers.contains(Modifier.TRANSIENT);
+				boolean shadowed = !names.add(field.getSimpleName().toString());
+				FieldInfo info = newFieldInfo(type, current, field, shadowed, packageName, isTransient);
+				if (info == null) continue;
+				if (isTransient)
+					transientFields.add(info);
+				else
+					fields.add(info);
+			}
+		}
+		Comparator<FieldInfo> comparator = new Comparator<FieldInfo>() {
+			public int compare (FieldInfo o1, FieldInfo o2) {
+				return o1.name.compareTo(o2.name);
+			}
+		};
+		Collections.sort(fields, comparator);
+		Collections.sort(transientFields, comparator);
+
+		String typeName = type.getQualifiedName().toString();
+		String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		String serializerName = CompiledSerializer.getSerializerName(binaryName);
+		String simpleName = serializerName.substring(serializerName.lastIndexOf('.') + 1);
+
+		StringBuilder buffer = new StringBuilder(1024);
+		buffer.append("// Generated by kryo-processor from ").append(typeName).append(". Do not modify.\n");
+		if (packageName.length() > 0) buffer.append("package ").append(packageName).append(";\n");
+		buffer.append("\n");
+		buffer.append("import com.esotericsoftware.kryo.Kryo;\n");
+		buffer.append("import com.esotericsoftware.kryo.io.Input;\n");
+		buffer.append("import com.esotericsoftware.kryo.io.Output;\n");
+		buffer.append("import com.esotericsoftware.kryo.serializers.CompiledSerializer;\n");
+		buffer.append("\n");
+		buffer.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+		buffer.append("public final class ").append(simpleName).append(" extends CompiledSerializer<").append(typeName).append("> {\n");
+		for (int i = 0, n = fields.size(); i < n; i++)
+			if (!fields.get(i).primitive) buffer.append("\tprivate final ObjectFieldCodec codec").append(i).append(";\n");
+		buffer.append("\n");
+
+		buffer.append("\tpublic ").append(simpleName).append(" (Kryo kryo) {\n");
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			FieldInfo field = fields.get(i);
+			if (field.primitive) continue;
+			buffer.append("\t\tcodec").append(i).append(" = new ObjectFieldCodec(kryo, ").append(typeName).append(".class, \"")
+				.append(field.name).append("\", ").append(field.typeName).append(".class, ").append(field.canBeNull).append(");\n");
+		}
+		buffer.append("\t}\n\n");
+
+		buffer.append("\tpublic void write (Kryo kryo, Output output, ").append(typeName).append(" object) {\n");
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			FieldInfo field = fields.get(i);
+			String value = field.get("object");
+			if (field.primitive)
+				buffer.append("\t\toutput.write").append(field.method).append('(').append(value).append(field.varInt ? ", false" : "")
+					.append(");\n");
+			else
+				buffer.append("\t\tcodec").append(i).append(".write(kryo, output, ").append(value).append(");\n");
+		}
+		buffer.append("\t}\n\n");
+
+		buffer.append("\tpublic ").append(typeName).append(" read (Kryo kryo, Input input, Class<").append(typeName)
+			.append("> type) {\n");
+		buffer.append("\t\t").append(typeName).append(" object = ");
+		if (hasNoArgConstructor(type))
+			buffer.append("new ").append(typeName).append("();\n");
+		else
+			buffer.append("(").append(typeName).append(")kryo.newInstance(type);\n");
+		buffer.append("\t\tkryo.reference(object);\n");
+		for (int i = 0, n = fields.size(); i < n; i++) {
+			FieldInfo field = fields.get(i);
+			String value;
+			if (field.primitive)
+				value = "input.read" + field.method + (field.varInt ? "(false)" : "()");
+			else
+				value = "(" + field.typeName + ")codec" + i + ".read(kryo, input)";
+			buffer.append("\t\t").append(field.set("object", value)).append(";\n");
+		}
+		buffer.append("\t\treturn object;\n");
+		buffer.append("\t}\n\n");
+
+		buffer.append("\tpublic ").append(typeName).append(" copy (Kryo kryo, ").append(typeName).append(" original) {\n");
+		buffer.append("\t\t").append(typeName).append(" copy = (").append(typeName).append(")kryo.newInstance(original.getClass());\n");
+		buffer.append("\t\tkryo.reference(copy);\n");
+		List<FieldInfo> copyFields = new ArrayList(transientFields);
+		copyFields.addAll(fields);
+		for (FieldInfo field : copyFields) {
+			String value = field.get("original");
+			if (!field.primitive) value = "kryo.copy(" + value + ")";
+			buffer.append("\t\t").append(field.set("copy", value)).append(";\n");
+		}
+		buffer.append("\t\treturn copy;\n");
+		buffer.append("\t}\n");
+		buffer.append("}\n");
+
+		Writer writer = processingEnv.getFiler().createSourceFile(serializerName, type).openWriter();
+		try {
+			writer.write(buffer.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/** Returns null if the field is transient and cannot be copied. */
+	private FieldInfo newFieldInfo (TypeElement type, TypeElement declaringType, VariableElement field, boolean shadowed,
+		String packageName, boolean isTransient) {
+		for (AnnotationMirror mirror : field.getAnnotationMirrors()) {
+			String annotation = ((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+			for (String unsupported : unsupportedAnnotations)
+				if (annotation.equals(unsupported))
+					throw new ProcessorException("@" + annotation.substring(annotation.lastIndexOf('.') + 1) + " is not supported.", field);
+		}
+
+		FieldInfo info = new FieldInfo();
+		info.name = field.getSimpleName().toString();
+		Set<Modifier> modifiers = field.getModifiers();
+		if (modifiers.contains(Modifier.FINAL)) {
+			if (isTransient) return null;
+			throw new ProcessorException("Final fields are not supported, make the field non-final or transient.", field);
+		}
+
+		TypeMirror fieldType = field.asType();
+		info.primitive = fieldType.getKind().isPrimitive();
+		if (info.primitive) {
+			switch (fieldType.getKind()) {
+			case INT:
+				info.method = "Int";
+				info.varInt = true;
+				break;
+			case LONG:
+				info.method = "Long";
+				info.varInt = true;
+				break;
+			default:
+				String kind = fieldType.getKind().name();
+				info.method = kind.charAt(0) + kind.substring(1).toLowerCase();
+			}
+		}
+		info.typeName = processingEnv.getTypeUtils().erasure(fieldType).toString();
+		info.canBeNull = !info.primitive && !hasAnnotation(field, NOT_NULL);
+
+		if (!info.primitive && !isAccessible(fieldType, packageName)) {
+			if (isTransient) return null;
+			throw new ProcessorException("Field type is not accessible from package: " + packageName, field);
+		}
+
+		if (isAccessible(field, packageName)) {
+			if (shadowed) {
+				// Cast to the declaring class to access a field hidden by a subclass field with the same name.
+				if (!isAccessible(declaringType, packageName)) {
+					if (isTransient) return null;
+					throw new ProcessorException("Field is hidden by a subclass field and its class is not accessible.", field);
+				}
+				info.owner = declaringType.getQualifiedName().toString();
+			}
+			return info;
+		}
+
+		// Use a getter and setter for fields that cannot be accessed directly.
+		if (shadowed) {
+			if (isTransient) return null;
+			throw new ProcessorException("Field is hidden by a subclass field and is not accessible.", field);
+		}
+		String capitalized = Character.toUpperCase(info.name.charAt(0)) + info.name.substring(1);
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			if (method.getModifiers().contains(Modifier.STATIC) || !isAccessible(method, packageName)) continue;
+			String name = method.getSimpleName().toString();
+			List<? extends VariableElement> parameters = method.getParameters();
+			if (parameters.isEmpty()) {
+				if (!name.equals("get" + capitalized) && !(name.equals("is" + capitalized) && fieldType.getKind() == TypeKind.BOOLEAN))
+					continue;
+				if (processingEnv.getTypeUtils().isSameType(method.getReturnType(), fieldType)) info.getter = name;
+			} else if (parameters.size() == 1 && name.equals("set" + capitalized)) {
+				if (processingEnv.getTypeUtils().isSameType(parameters.get(0).asType(), fieldType)) info.setter = name;
+			}
+		}
+		if (info.getter == null || info.setter == null) {
+			if (isTransient) return null;
+			throw new ProcessorException("Private field requires a non-private getter and setter: " + info.name, field);
+		}
+		return info;
+	}
+
+	private boolean hasNoArgConstructor (TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+			if (constructor.getParameters().isEmpty()) return !constructor.getModifiers().contains(Modifier.PRIVATE);
+		return false;
+	}
+
+	private boolean hasAnnotation (Element element, String name) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors())
+			if (((TypeElement)mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) return true;
+		return false;
+	}
+
+	private TypeElement getSuperclass (TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED) return null;
+		TypeElement element = (TypeElement)((DeclaredType)superclass).asElement();
+		if (element.getQualifiedName().contentEquals("java.lang.Object")) return null;
+		return element;
+	}
+
+	private PackageElement getPackage (Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	/** Returns true if the type can be named from a class in the specified package. */
+	private boolean isAccessible (TypeMirror type, String packageName) {
+		if (type.getKind() == TypeKind.ARRAY) return isAccessible(((ArrayType)type).getComponentType(), packageName);
+		type = processingEnv.getTypeUtils().erasure(type);
+		if (type.getKind() != TypeKind.DECLARED) return true;
+		return isAccessible(((DeclaredType)type).asElement(), packageName);
+	}
+
+	/** Returns true if the element and the types enclosing it can be accessed from a class in the specified package. */
+	private boolean isAccessible (Element element, String packageName) {
+		boolean samePackage = getPackage(element).getQualifiedName().contentEquals(packageName);
+		for (; element != null && element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement()) {
+			Set<Modifier> modifiers = element.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE)) return false;
+			if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) return false;
+		}
+		return true;
+	}
+
+	static class FieldInfo {
+		String name, typeName;
+		boolean primitive, varInt, canBeNull;
+		/** The primitive type name used for the Input and Output methods. */
+		String method;
+		/** Set when the field is hidden by a subclass field with the same name. */
+		String owner;
+		String getter, setter;
+
+		String get (String object) {
+			if (getter != null) return object + '.' + getter + "()";
+			if (owner != null) return "((" + owner + ")" + object + ")." + name;
+			return object + '.' + name;
+		}
+
+		String set (String object, String value) {
+			if (setter != null) return object + '.' + setter + '(' + value + ')';
+			if (owner != null) return "((" + owner + ")" + object + ")." + name + " = " + value;
+			return object + '.' + name + " = " + value;
+		}
+	}
+
+	static class ProcessorException extends RuntimeException {
+		final Element element;
+
+		public ProcessorException (String message, Element element) {
+			super(message);
+			this.element = element;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.processor;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import com.esotericsoftware.kryo.GenerateSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.NotNull;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompiledSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+
+import junit.framework.TestCase;
+
+/** The classes in this test are annotated with {@link GenerateSerializer} and processed when the tests are compiled. */
+public class SerializerProcessorTest extends TestCase {
+	public void testGeneratedSerializer () {
+		Kryo kryo = new Kryo();
+		kryo.register(Sample.class);
+		kryo.register(Base.class);
+		kryo.register(int[].class);
+		kryo.register(ArrayList.class);
+		assertTrue(kryo.getSerializer(Sample.class) instanceof CompiledSerializer);
+
+		Sample sample = newSample();
+		byte[] bytes = write(kryo, sample);
+		Sample read = (Sample)kryo.readClassAndObject(new Input(bytes));
+		assertEquals(sample, read);
+		assertEquals(0, read.cache);
+
+		// The bytes match FieldSerializer.
+		Kryo fieldKryo = new Kryo();
+		fieldKryo.register(Sample.class, new FieldSerializer(fieldKryo, Sample.class));
+		fieldKryo.register(Base.class, new FieldSerializer(fieldKryo, Base.class));
+		fieldKryo.register(int[].class);
+		fieldKryo.register(ArrayList.class);
+		assertTrue(Arrays.equals(write(fieldKryo, sample), bytes));
+		assertEquals(sample, fieldKryo.readClassAndObject(new Input(bytes)));
+	}
+
+	public void testReferences () {
+		Kryo kryo = new Kryo();
+		kryo.setRegistrationRequired(false);
+		Sample sample = newSample();
+		sample.child = sample;
+		sample.any = sample.list;
+		Sample read = (Sample)kryo.readClassAndObject(new Input(write(kryo, sample)));
+		assertSame(read, read.child);
+		assertSame(read.list, read.any);
+	}
+
+	public void testCopy () {
+		Kryo kryo = new Kryo();
+		kryo.setRegistrationRequired(false);
+		Sample sample = newSample();
+		sample.child = new Sample();
+		Sample copy = kryo.copy(sample);
+		assertEquals(sample, copy);
+		assertEquals(sample.cache, copy.cache);
+		assertNotSame(sample.values, copy.values);
+		assertNotSame(sample.child, copy.child);
+	}
+
+	public void testHiddenField () {
+		Kryo kryo = new Kryo();
+		kryo.register(Hidden.class);
+		Hidden hidden = new Hidden();
+		hidden.name = "sub";
+		((Base)hidden).name = "base";
+		byte[] bytes = write(kryo, hidden);
+
+		Hidden read = (Hidden)kryo.readClassAndObject(new Input(bytes));
+		assertEquals("sub", read.name);
+		assertEquals("base", ((Base)read).name);
+
+		Kryo fieldKryo = new Kryo();
+		fieldKryo.register(Hidden.class, new FieldSerializer(fieldKryo, Hidden.class));
+		assertTrue(Arrays.equals(write(fieldKryo, hidden), bytes));
+	}
+
+	public void testRegisterGenerated () {
+		Kryo kryo = new Kryo();
+		assertEquals(20, kryo.registerGenerated(Sample.class, 20).getId());
+		assertTrue(kryo.getSerializer(Sample.class) instanceof CompiledSerializer);
+		try {
+			kryo.registerGenerated(Base.class);
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public void testUnsupportedField () {
+		List<String> errors = compile("Invalid", "@com.esotericsoftware.kryo.GenerateSerializer public class Invalid { final int value = 1; }");
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0), errors.get(0).contains("Final fields are not supported"));
+
+		errors = compile("Unreadable", "@com.esotericsoftware.kryo.GenerateSerializer public class Unreadable { private int value; }");
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0), errors.get(0).contains("getter and setter"));
+	}
+
+	private List<String> compile (String className, final String source) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+			public CharSequence getCharContent (boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		File outputDirectory = new File(System.getProperty("java.io.tmpdir"), "kryo-processor-test");
+		outputDirectory.mkdirs();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector();
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", outputDirectory.getPath(), "-s",
+			outputDirectory.getPath(), "-processor", SerializerProcessor.class.getName());
+		compiler.getTask(null, null, diagnostics, options, null, Arrays.asList(file)).call();
+		List<String> errors = new ArrayList();
+		for (Diagnostic diagnostic : diagnostics.getDiagnostics())
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR) errors.add(diagnostic.getMessage(null));
+		return errors;
+	}
+
+	private byte[] write (Kryo kryo, Object object) {
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, object);
+		return output.toBytes();
+	}
+
+	private Sample newSample () {
+		Sample sample = new Sample();
+		sample.baseValue = -5;
+		sample.setLabel("label");
+		sample.count = 123;
+		sample.total = 123456789012L;
+		sample.ratio = 1.5f;
+		sample.weight = 2.25;
+		sample.small = 300;
+		sample.tiny = -1;
+		sample.flag = true;
+		sample.letter = 'k';
+		sample.name = "name";
+		sample.required = "required";
+		sample.any = Integer.valueOf(7);
+		sample.values = new int[] {1, 2, 3};
+		sample.list = new ArrayList();
+		sample.list.add("a");
+		sample.cache = 99;
+		sample.setSecret(3.5);
+		return sample;
+	}
+
+	static public class Base {
+		int baseValue;
+		String name;
+		private String label;
+
+		public String getLabel () {
+			return label;
+		}
+
+		public void setLabel (String label) {
+			this.label = label;
+		}
+	}
+
+	@GenerateSerializer
+	static public class Sample extends Base {
+		public int count;
+		long total;
+		float ratio;
+		double weight;
+		short small;
+		byte tiny;
+		boolean flag;
+		char letter;
+		String name;
+		@NotNull String required;
+		Object any;
+		int[] values;
+		ArrayList<String> list;
+		Sample child;
+		transient int cache;
+		private double secret;
+
+		double getSecret () {
+			return secret;
+		}
+
+		void setSecret (double secret) {
+			this.secret = secret;
+		}
+
+		public boolean equals (Object obj) {
+			if (this == obj) return true;
+			if (obj == null || getClass() != obj.getClass()) return false;
+			Sample other = (Sample)obj;
+			return baseValue == other.baseValue && eq(getLabel(), other.getLabel()) && count == other.count
+				&& total == other.total && ratio == other.ratio && weight == other.weight && small == other.small
+				&& tiny == other.tiny && flag == other.flag && letter == other.letter && eq(name, other.name)
+				&& eq(required, other.required) && eq(any, other.any) && Arrays.equals(values, other.values)
+				&& eq(list, other.list) && (child == null ? other.child == null : other.child != null) && secret == other.secret;
+		}
+
+		static private boolean eq (Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
+		}
+	}
+
+	@GenerateSerializer
+	static public class Hidden extends Base {
+		String name;
+	}
+}
@@ -56,6 +56,7 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.ClosureSerializer;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
+import com.esotericsoftware.kryo.serializers.CompiledSerializer;
 import com.esotericsoftware.kryo.serializers.DefaultArraySerializers.BooleanArraySerializer;
 import com.esotericsoftware.kryo.serializers.DefaultArraySerializers.ByteArraySerializer;
 import com.esotericsoftware.kryo.serializers.DefaultArraySerializers.CharArraySerializer;
@@ -112,6 +113,7 @@ import com.esotericsoftware.kryo.util.IdentityMap;
 import com.esotericsoftware.kryo.util.IntArray;
 import com.esotericsoftware.kryo.util.MapReferenceResolver;
 import com.esotericsoftware.kryo.util.ObjectMap;
+import com.esotericsoftware.kryo.util.SharedClassResolver;
 import com.esotericsoftware.kryo.util.Util;
 import com.esotericsoftware.reflectasm.ConstructorAccess;
 
@@ -139,6 +141,7 @@ public class Kryo {
 	private boolean autoReset = true;
 	private volatile Thread thread;
 	private ObjectMap context, graphContext;
+	private long graphGeneration;
 
 	private ReferenceResolver referenceResolver;
 	private final IntArray readReferenceIds = new IntArray(0);
@@ -240,6 +243,44 @@ public class Kryo {
 		register(void.class, new VoidSerializer());
 	}
 
+	/** Creates a new Kryo with a {@link SharedClassResolver} for the table and a {@link MapReferenceResolver}. */
+	public Kryo (RegistrationTable table) {
+		this(table, new MapReferenceResolver(), new DefaultStreamFactory());
+	}
+
+	/** Creates a new Kryo with a {@link SharedClassResolver} for the table. The default serializers and settings are copied from
+	 * the table rather than configured again, and the registrations in the table are looked up when a class is first used.
+	 * @param referenceResolver May be null to disable references. */
+	public Kryo (RegistrationTable table, ReferenceResolver referenceResolver, StreamFactory streamFactory) {
+		if (table == null) throw new IllegalArgumentException("table cannot be null.");
+
+		this.classResolver = new SharedClassResolver(table);
+		classResolver.setKryo(this);
+
+		this.streamFactory = streamFactory;
+		streamFactory.setKryo(this);
+
+		this.referenceResolver = referenceResolver;
+		if (referenceResolver != null) {
+			referenceResolver.setKryo(this);
+			references = table.references;
+		}
+
+		defaultSerializer = table.defaultSerializer;
+		defaultSerializers.addAll(table.defaultSerializers);
+		lowPriorityDefaultSerializerCount = table.lowPriorityDefaultSerializerCount;
+		nextRegisterID = table.nextRegisterID;
+		classLoader = table.classLoader;
+		strategy = table.strategy;
+		registrationRequired = table.registrationRequired;
+		warnUnregisteredClasses = table.warnUnregisteredClasses;
+		copyReferences = table.copyReferences;
+		autoReset = table.autoReset;
+		maxDepth = table.maxDepth;
+		fieldSerializerConfig = table.fieldSerializerConfig.clone();
+		taggedFieldSerializerConfig = table.taggedFieldSerializerConfig.clone();
+	}
+
 	// --- Default serializers ---
 	/** Sets the serializer factory to use when no {@link #addDefaultSerializer(Class, Class) default serializers} match an
 	 * object's type. Default is {@link ReflectionSerializerFactory} with {@link FieldSerializer}.
@@ -257,6 +298,18 @@ public class Kryo {
 		defaultSerializer = new ReflectionSerializerFactory(serializer);
 	}
 
+	SerializerFactory getDefaultSerializerFactory () {
+		return defaultSerializer;
+	}
+
+	ArrayList<DefaultSerializerEntry> getDefaultSerializerEntries () {
+		return defaultSerializers;
+	}
+
+	int getLowPriorityDefaultSerializerCount () {
+		return lowPriorityDefaultSerializerCount;
+	}
+
 	/** Instances of the specified class will use the specified serializer when {@link #register(Class)} or
 	 * {@link #register(Class, int)} are called.
 	 * @see #setDefaultSerializer(Class) */
@@ -385,6 +438,11 @@ public class Kryo {
 			DefaultSerializer defaultSerializerAnnotation = (DefaultSerializer)type.getAnnotation(DefaultSerializer.class);
 			return ReflectionSerializerFactory.makeSerializer(this, defaultSerializerAnnotation.value(), type);
 		}
+		if (type.isAnnotationPresent(GenerateSerializer.class)) {
+			Class serializerClass = getGeneratedSerializerClass(type);
+			if (serializerClass != null) return ReflectionSerializerFactory.makeSerializer(this, serializerClass, type);
+			if (DEBUG) debug("No generated serializer found, using the default serializer for class: " + className(type));
+		}
 
 		return null;
 	}
@@ -407,7 +465,9 @@ public class Kryo {
 	public Registration register (Class type) {
 		Registration registration = classResolver.getRegistration(type);
 		if (registration != null) return registration;
-		return register(type, getDefaultSerializer(type));
+		registration = register(type, getDefaultSerializer(type));
+		registration.defaultSerializer = true;
+		return registration;
 	}
 
 	/** Registers the class using the specified ID and the {@link Kryo#getDefaultSerializer(Class) default serializer}. If the
@@ -420,7 +480,50 @@ public class Kryo {
 	public Registration register (Class type, int id) {
 		Registration registration = classResolver.getRegistration(type);
 		if (registration != null) return registration;
-		return register(type, getDefaultSerializer(type), id);
+		registration = register(type, getDefaultSerializer(type), id);
+		registration.defaultSerializer = true;
+		return registration;
+	}
+
+	/** Registers the class using the lowest, next available integer ID and the serializer generated for it at compile time. If the
+	 * class is already registered, no change will be made and the existing registration will be returned.
+	 * @throws IllegalArgumentException if no serializer was generated for the class.
+	 * @see GenerateSerializer */
+	public Registration registerGenerated (Class type) {
+		Registration registration = classResolver.getRegistration(type);
+		if (registration != null) return registration;
+		return register(type, newGeneratedSerializer(type));
+	}
+
+	/** Registers the class using the specified ID and the serializer generated for it at compile time. If the class is already
+	 * registered this has no effect and the existing registration is returned.
+	 * @throws IllegalArgumentException if no serializer was generated for the class.
+	 * @see GenerateSerializer */
+	public Registration registerGenerated (Class type, int id) {
+		Registration registration = classResolver.getRegistration(type);
+		if (registration != null) return registration;
+		return register(type, newGeneratedSerializer(type), id);
+	}
+
+	/** Returns a new instance of the serializer generated at compile time for the specified class.
+	 * @throws IllegalArgumentException if no serializer was generated for the class. */
+	protected Serializer newGeneratedSerializer (Class type) {
+		Class serializerClass = getGeneratedSerializerClass(type);
+		if (serializerClass == null) {
+			throw new IllegalArgumentException("No generated serializer found for class: " + className(type)
+				+ "\nEnsure the class is annotated with @GenerateSerializer and the kryo-processor annotation processor is run.");
+		}
+		return ReflectionSerializerFactory.makeSerializer(this, serializerClass, type);
+	}
+
+	/** @return The serializer class generated at compile time for the specified class, or null if the annotation processor was
+	 *         not run for it. */
+	private Class getGeneratedSerializerClass (Class type) {
+		try {
+			return Class.forName(CompiledSerializer.getSerializerName(type.getName()), true, type.getClassLoader());
+		} catch (ClassNotFoundException ex) {
+			return null;
+		}
 	}
 
 	/** Registers the class using the lowest, next available integer ID and the specified serializer. If the class is already
@@ -478,6 +581,10 @@ public class Kryo {
 		throw new KryoException("No registration IDs are available.");
 	}
 
+	int getNextRegisterID () {
+		return nextRegisterID;
+	}
+
 	/** If the class is not registered and {@link Kryo#setRegistrationRequired(boolean)} is false, it is automatically registered
 	 * using the {@link Kryo#addDefaultSerializer(Class, Class) default serializer}.
 	 * @throws IllegalArgumentException if the class is not registered and {@link Kryo#setRegistrationRequired(boolean)} is true.
@@ -883,9 +990,11 @@ public class Kryo {
 	public void reset () {
 		depth = 0;
 		if (graphContext != null) graphContext.clear();
+		graphGeneration++;
 		classResolver.reset();
 		if (references) {
 			referenceResolver.reset();
+			readReferenceIds.clear();
 			readObject = null;
 		}
 
@@ -1084,6 +1193,10 @@ public class Kryo {
 		this.copyReferences = copyReferences;
 	}
 
+	public boolean getCopyReferences () {
+		return copyReferences;
+	}
+
 	/** The default configuration for {@link FieldSerializer} instances. Already existing serializer instances (e.g. implicitely
 	 * created for already registered classes) are not affected by this configuration. You can override the configuration for a
 	 * single {@link FieldSerializer}. */
@@ -1152,6 +1265,12 @@ public class Kryo {
 		return graphContext;
 	}
 
+	/** Returns a number that changes each time {@link #reset()} is called. Serializers can keep it to tell whether state they
+	 * stored belongs to the current object graph, without a lookup in the {@link #getGraphContext() graph context}. */
+	public long getGraphGeneration () {
+		return graphGeneration;
+	}
+
 	/** Returns the number of child objects away from the object graph root. */
 	public int getDepth () {
 		return depth;
@@ -1171,6 +1290,10 @@ public class Kryo {
 		this.autoReset = autoReset;
 	}
 
+	public boolean isAutoReset () {
+		return autoReset;
+	}
+
 	/** Sets the maxiumum depth of an object graph. This can be used to prevent malicious data from causing a stack overflow.
 	 * Default is {@link Integer#MAX_VALUE}. */
 	public void setMaxDepth (int maxDepth) {
@@ -1178,6 +1301,10 @@ public class Kryo {
 		this.maxDepth = maxDepth;
 	}
 
+	public int getMaxDepth () {
+		return maxDepth;
+	}
+
 	/** Returns true if the specified type is final. Final types can be serialized more efficiently because they are
 	 * non-polymorphic.
 	 * <p>
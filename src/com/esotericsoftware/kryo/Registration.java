@@ -31,6 +31,9 @@ public class Registration {
 	private final int id;
 	private Serializer serializer;
 	private ObjectInstantiator instantiator;
+	/** True if the serializer is the {@link Kryo#getDefaultSerializer(Class) default serializer} for the type. */
+	boolean defaultSerializer;
+	private Boolean useReferences;
 
 	public Registration (Class type, Serializer serializer, int id) {
 		if (type == null) throw new IllegalArgumentException("type cannot be null.");
@@ -57,6 +60,9 @@ public class Registration {
 	public void setSerializer (Serializer serializer) {
 		if (serializer == null) throw new IllegalArgumentException("serializer cannot be null.");
 		this.serializer = serializer;
+		defaultSerializer = false;
+		// Whether references are used may depend on the serializer, so it is decided again.
+		useReferences = null;
 		if (TRACE) trace("kryo", "Update registered serializer: " + type.getName() + " (" + serializer.getClass().getName() + ")");
 	}
 
@@ -71,6 +77,17 @@ public class Registration {
 		this.instantiator = instantiator;
 	}
 
+	/** Returns whether references are used for the type, as cached by a {@link ReferenceResolver} that decides this per type.
+	 * @return May be null if not yet decided. */
+	public Boolean getUseReferences () {
+		return useReferences;
+	}
+
+	/** @param useReferences May be null. */
+	public void setUseReferences (Boolean useReferences) {
+		this.useReferences = useReferences;
+	}
+
 	public String toString () {
 		return "[" + id + ", " + className(type) + "]";
 	}
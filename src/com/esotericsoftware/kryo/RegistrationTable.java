@@ -0,0 +1,449 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import static com.esotericsoftware.kryo.util.Util.*;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.objenesis.strategy.InstantiatorStrategy;
+
+import com.esotericsoftware.kryo.Kryo.DefaultSerializerEntry;
+import com.esotericsoftware.kryo.factories.ReflectionSerializerFactory;
+import com.esotericsoftware.kryo.factories.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldLayout;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer.CachedField;
+import com.esotericsoftware.kryo.serializers.FieldSerializerConfig;
+import com.esotericsoftware.kryo.serializers.TaggedFieldSerializerConfig;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.IntMap;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.esotericsoftware.kryo.util.SharedClassResolver;
+
+/** An immutable copy of the registrations, default serializers and settings of a configured Kryo, which is shared by any number
+ * of Kryo instances created with {@link Kryo#Kryo(RegistrationTable)}. Creating a Kryo from a table does not configure the
+ * default serializers or register the classes again, and the table's maps are shared rather than copied for each instance. The
+ * table is thread safe.
+ * <p>
+ * Serializers are not shared, because most keep state for the Kryo instance using them. Each Kryo creates the serializer for a
+ * registration the first time the class or ID is used. If the class was registered with the
+ * {@link Kryo#getDefaultSerializer(Class) default serializer}, the default serializer is created. A class registered with a
+ * serializer instance needs a {@link SerializerFactory} passed to {@link #RegistrationTable(Kryo, ObjectMap)}, unless a new
+ * instance of the serializer's class created with {@link ReflectionSerializerFactory} is configured the same as the registered
+ * instance: a {@link FieldSerializer} with the same configuration and cached fields, or another serializer with the same field
+ * values. Otherwise the table cannot be created, because a configured serializer such as a FieldSerializer with a removed field
+ * would write different bytes than its new instances.
+ * <p>
+ * The immutable per-class metadata is shared: the {@link FieldLayout} of each class registered with a FieldSerializer is copied
+ * from the Kryo, so the FieldSerializers created for the other Kryo instances use it rather than each reflecting on the class
+ * again. Each FieldSerializer still creates its own cached fields, which reference the Kryo and the serializers of its fields.
+ * Default serializers added as instances and the {@link InstantiatorStrategy} are shared by all Kryo instances using the table.
+ * <p>
+ * The table can be {@link #write(Output) written} as a snapshot, eg at build time, and {@link #read(Kryo, Input) read} at startup
+ * rather than registering the classes, which loads each class and creates its serializer. Reading a snapshot only reads the
+ * class names: a class is loaded when a Kryo first uses it, and its serializer is created for each Kryo as usual. Field layouts
+ * are not written, so a table read from a snapshot shares none and each Kryo finds the fields of a class by reflection.
+ * @see SharedClassResolver */
+public final class RegistrationTable {
+	static private final int MAGIC = 0x4B524547;
+	static private final byte VERSION = 1;
+	static private final byte DEFAULT = 0, EXPLICIT = 1, FACTORY = 2;
+	static private final Class[] primitives = {int.class, long.class, float.class, double.class, boolean.class, byte.class,
+		char.class, short.class, void.class};
+
+	final SerializerFactory defaultSerializer;
+	final ArrayList<DefaultSerializerEntry> defaultSerializers;
+	final int lowPriorityDefaultSerializerCount;
+	final int nextRegisterID;
+	final ClassLoader classLoader;
+	final InstantiatorStrategy strategy;
+	final boolean registrationRequired, warnUnregisteredClasses;
+	final boolean references, copyReferences, autoReset;
+	final int maxDepth;
+	final FieldSerializerConfig fieldSerializerConfig;
+	final TaggedFieldSerializerConfig taggedFieldSerializerConfig;
+
+	private final Entry[] entries;
+	private final IntMap<Entry> idToEntry = new IntMap();
+	/** Keyed by class name, so classes from a snapshot don't need to be loaded to be looked up. */
+	private final ObjectMap<String, Entry> classToEntry = new ObjectMap();
+	private final ObjectMap<Class, FieldLayout> fieldLayouts;
+
+	/** Copies the registrations and settings of the Kryo, which must use a {@link DefaultClassResolver}. The Kryo is not changed
+	 * and can still be used.
+	 * @throws IllegalArgumentException if a class is registered with a serializer instance that cannot be recreated.
+	 * @see #RegistrationTable(Kryo, ObjectMap) */
+	public RegistrationTable (Kryo kryo) {
+		this(kryo, entries(kryo, null), fieldLayouts(kryo));
+	}
+
+	/** Copies the registrations and settings of the Kryo, which must use a {@link DefaultClassResolver}. The Kryo is not changed
+	 * and can still be used.
+	 * @param serializerFactories Creates the serializers for classes registered with a serializer instance, which are used instead
+	 *           of the serializer's class. May be null.
+	 * @throws IllegalArgumentException if a class is registered with a serializer instance, has no serializer factory and the
+	 *            serializer cannot be recreated. */
+	public RegistrationTable (Kryo kryo, ObjectMap<Class, SerializerFactory> serializerFactories) {
+		this(kryo, entries(kryo, serializerFactories), fieldLayouts(kryo));
+	}
+
+	private RegistrationTable (Kryo kryo, Entry[] entries, ObjectMap<Class, FieldLayout> fieldLayouts) {
+		defaultSerializer = kryo.getDefaultSerializerFactory();
+		defaultSerializers = new ArrayList(kryo.getDefaultSerializerEntries());
+		lowPriorityDefaultSerializerCount = kryo.getLowPriorityDefaultSerializerCount();
+		nextRegisterID = kryo.getNextRegisterID();
+		classLoader = kryo.getClassLoader();
+		strategy = kryo.getInstantiatorStrategy();
+		registrationRequired = kryo.isRegistrationRequired();
+		warnUnregisteredClasses = kryo.isWarnUnregisteredClasses();
+		references = kryo.getReferences();
+		copyReferences = kryo.getCopyReferences();
+		autoReset = kryo.isAutoReset();
+		maxDepth = kryo.getMaxDepth();
+		fieldSerializerConfig = kryo.getFieldSerializerConfig().clone();
+		taggedFieldSerializerConfig = kryo.getTaggedFieldSerializerConfig().clone();
+
+		this.entries = entries;
+		this.fieldLayouts = fieldLayouts;
+		for (Entry entry : entries) {
+			idToEntry.put(entry.id, entry);
+			if (entry.byClass) {
+				classToEntry.put(entry.name, entry);
+				Class primitive = primitive(entry.name);
+				if (primitive != null) classToEntry.put(getWrapperClass(primitive).getName(), entry);
+			}
+		}
+	}
+
+	static private Entry[] entries (Kryo kryo, ObjectMap<Class, SerializerFactory> serializerFactories) {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		if (!(kryo.getClassResolver() instanceof DefaultClassResolver))
+			throw new IllegalArgumentException("kryo must use a DefaultClassResolver: " + kryo.getClassResolver());
+		Registration[] registrations = ((DefaultClassResolver)kryo.getClassResolver()).getRegistrations();
+		Entry[] entries = new Entry[registrations.length];
+		for (int i = 0, n = registrations.length; i < n; i++) {
+			Registration registration = registrations[i];
+			Class type = registration.getType();
+			// A class registered again with a different ID is only looked up by class using its current registration.
+			boolean byClass = kryo.getClassResolver().getRegistration(type) == registration;
+			Serializer serializer = registration.getSerializer();
+			SerializerFactory factory = serializerFactories == null ? null : serializerFactories.get(type);
+			if (factory != null)
+				entries[i] = new Entry(type, registration.getId(), byClass, null, factory);
+			else if (registration.defaultSerializer)
+				entries[i] = new Entry(type, registration.getId(), byClass, null, null);
+			else {
+				checkRecreatable(kryo, type, serializer);
+				entries[i] = new Entry(type, registration.getId(), byClass, serializer.getClass(), null);
+			}
+		}
+		return entries;
+	}
+
+	/** Returns the field layouts of the classes registered with a {@link FieldSerializer}. */
+	static private ObjectMap<Class, FieldLayout> fieldLayouts (Kryo kryo) {
+		ObjectMap<Class, FieldLayout> fieldLayouts = new ObjectMap();
+		for (Registration registration : ((DefaultClassResolver)kryo.getClassResolver()).getRegistrations()) {
+			if (!(registration.getSerializer() instanceof FieldSerializer)) continue;
+			FieldLayout layout = ((FieldSerializer)registration.getSerializer()).getFieldLayout();
+			if (layout != null && layout.getType() == registration.getType()) fieldLayouts.put(layout.getType(), layout);
+		}
+		return fieldLayouts;
+	}
+
+	/** Throws if a new instance of the serializer's class, as each Kryo using the table creates, would not be the same as the
+	 * registered instance. */
+	static private void checkRecreatable (Kryo kryo, Class type, Serializer serializer) {
+		Serializer copy;
+		try {
+			copy = ReflectionSerializerFactory.makeSerializer(kryo, serializer.getClass(), type);
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("A serializer factory is required for class " + className(type)
+				+ ", its serializer cannot be created: " + className(serializer.getClass()), ex);
+		}
+		if (!sameConfiguration(serializer, copy)) {
+			throw new IllegalArgumentException("A serializer factory is required for class " + className(type)
+				+ ", its serializer is configured differently than a new instance: " + className(serializer.getClass()));
+		}
+	}
+
+	/** Returns true if the serializers, which are the same class, are configured the same. A {@link FieldSerializer} is compared
+	 * by its configuration and cached fields, from which the rest of the state of Kryo's field serializers is derived. Other
+	 * serializers, and the fields of a FieldSerializer subclass outside of Kryo, are compared by their field values, where a field
+	 * referencing a serializer is compared the same way rather than by identity. */
+	static private boolean sameConfiguration (Serializer a, Serializer b) {
+		if (!(a instanceof FieldSerializer)) return equalFields(a, b, Object.class);
+		Class kryoClass = a.getClass();
+		while (kryoClass.getPackage() != FieldSerializer.class.getPackage())
+			kryoClass = kryoClass.getSuperclass();
+		FieldSerializer fieldSerializerA = (FieldSerializer)a, fieldSerializerB = (FieldSerializer)b;
+		return equalFields(a, b, kryoClass)
+			&& equalFields(fieldSerializerA.getFieldSerializerConfig(), fieldSerializerB.getFieldSerializerConfig(), Object.class)
+			&& sameCachedFields(fieldSerializerA.getFields(), fieldSerializerB.getFields())
+			&& sameCachedFields(fieldSerializerA.getTransientFields(), fieldSerializerB.getTransientFields());
+	}
+
+	static private boolean sameCachedFields (CachedField[] a, CachedField[] b) {
+		if (a.length != b.length) return false;
+		for (int i = 0, n = a.length; i < n; i++) {
+			CachedField fieldA = a[i], fieldB = b[i];
+			if (!fieldA.getField().equals(fieldB.getField())) return false;
+			if (fieldA.getValueClass() != fieldB.getValueClass() || fieldA.getCanBeNull() != fieldB.getCanBeNull()) return false;
+			Serializer serializerA = fieldA.getSerializer(), serializerB = fieldB.getSerializer();
+			if (serializerA == serializerB) continue;
+			if (serializerA == null || serializerB == null || serializerA.getClass() != serializerB.getClass()) return false;
+			if (!sameConfiguration(serializerA, serializerB)) return false;
+		}
+		return true;
+	}
+
+	/** Returns true if each instance field of the objects, which are the same class, is equal. Fields declared by the stop class
+	 * and its superclasses and references to the Kryo are not compared, and arrays are compared by their elements. */
+	static private boolean equalFields (Object a, Object b, Class stop) {
+		for (Class c = a.getClass(); c != stop; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) continue;
+				Object valueA, valueB;
+				try {
+					field.setAccessible(true);
+					valueA = field.get(a);
+					valueB = field.get(b);
+				} catch (Exception ex) {
+					return false;
+				}
+				if (valueA == valueB || valueA instanceof Kryo) continue;
+				if (valueA == null || valueB == null) return false;
+				if (valueA instanceof Serializer) {
+					if (valueA.getClass() != valueB.getClass() || !sameConfiguration((Serializer)valueA, (Serializer)valueB))
+						return false;
+				} else if (valueA.getClass().isArray()) {
+					if (!Arrays.deepEquals(new Object[] {valueA}, new Object[] {valueB})) return false;
+				} else if (!valueA.equals(valueB)) //
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns a new registration for the class with a new serializer for the Kryo, or null if the class is not in the table. */
+	public Registration newRegistration (Kryo kryo, Class type) {
+		Entry entry = classToEntry.get(type.getName());
+		if (entry == null) return null;
+		// A class with the same name from a different class loader is not in the table.
+		Class entryType = entry.getType(classLoader);
+		if (entryType != type && !(entryType.isPrimitive() && getWrapperClass(entryType) == type)) return null;
+		return entry.newRegistration(kryo, classLoader);
+	}
+
+	/** Returns a new registration for the ID with a new serializer for the Kryo, or null if the ID is not in the table. */
+	public Registration newRegistration (Kryo kryo, int id) {
+		Entry entry = idToEntry.get(id);
+		if (entry == null) return null;
+		return entry.newRegistration(kryo, classLoader);
+	}
+
+	/** Returns the field layout of the class if it was registered with a {@link FieldSerializer}, else null. */
+	public FieldLayout getFieldLayout (Class type) {
+		return fieldLayouts.get(type);
+	}
+
+	/** Returns the class registered with the ID, or null.
+	 * @throws KryoException if the class is from a snapshot and cannot be found. */
+	public Class getType (int id) {
+		Entry entry = idToEntry.get(id);
+		return entry == null ? null : entry.getType(classLoader);
+	}
+
+	/** Returns the registered IDs, in no particular order. */
+	public int[] getIds () {
+		int[] ids = new int[entries.length];
+		for (int i = 0, n = entries.length; i < n; i++)
+			ids[i] = entries[i].id;
+		return ids;
+	}
+
+	/** Returns the number of registrations. */
+	public int size () {
+		return entries.length;
+	}
+
+	/** Writes the registrations as a snapshot that can be read with {@link #read(Kryo, Input)}. The settings, default serializers,
+	 * serializer factories and field layouts are not written. */
+	public void write (Output output) {
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+		output.writeVarInt(entries.length, true);
+		for (Entry entry : entries) {
+			output.writeVarInt(entry.id, true);
+			output.writeString(entry.name);
+			output.writeBoolean(entry.byClass);
+			if (entry.serializerFactory != null)
+				output.writeByte(FACTORY);
+			else if (entry.serializerName != null) {
+				output.writeByte(EXPLICIT);
+				output.writeString(entry.serializerName);
+			} else
+				output.writeByte(DEFAULT);
+		}
+	}
+
+	/** Reads a snapshot written by {@link #write(Output)}. The settings and default serializers are copied from the Kryo, which
+	 * must be configured the same as the Kryo the snapshot's table was created from, but the Kryo's registrations are not used.
+	 * No serializers are created, and the registered classes are loaded using the Kryo's class loader when they are first used.
+	 * @throws KryoException if the snapshot is invalid. */
+	static public RegistrationTable read (Kryo kryo, Input input) {
+		return read(kryo, input, null);
+	}
+
+	/** Reads a snapshot written by {@link #write(Output)}.
+	 * @param serializerFactories Must have the serializer factories the snapshot's table was created with. May be null.
+	 * @throws KryoException if the snapshot is invalid, or a serializer factory is missing or its class cannot be found.
+	 * @see #read(Kryo, Input) */
+	static public RegistrationTable read (Kryo kryo, Input input, ObjectMap<Class, SerializerFactory> serializerFactories) {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		if (input.readInt() != MAGIC) throw new KryoException("Invalid registration snapshot.");
+		byte version = input.readByte();
+		if (version != VERSION) throw new KryoException("Unsupported registration snapshot version: " + version);
+		Entry[] entries = new Entry[input.readVarInt(true)];
+		for (int i = 0, n = entries.length; i < n; i++) {
+			int id = input.readVarInt(true);
+			String name = input.readString();
+			boolean byClass = input.readBoolean();
+			byte kind = input.readByte();
+			switch (kind) {
+			case DEFAULT:
+				entries[i] = new Entry(name, id, byClass, null, null);
+				break;
+			case EXPLICIT:
+				entries[i] = new Entry(name, id, byClass, input.readString(), null);
+				break;
+			case FACTORY:
+				Class type = forName(name, kryo.getClassLoader());
+				SerializerFactory factory = serializerFactories == null ? null : serializerFactories.get(type);
+				if (factory == null) throw new KryoException("No serializer factory for class: " + className(type));
+				entries[i] = new Entry(type, id, byClass, null, factory);
+				break;
+			default:
+				throw new KryoException("Invalid registration snapshot entry: " + kind);
+			}
+		}
+		return new RegistrationTable(kryo, entries, new ObjectMap());
+	}
+
+	static private Class forName (String name, ClassLoader classLoader) {
+		Class primitive = primitive(name);
+		if (primitive != null) return primitive;
+		try {
+			return Class.forName(name, false, classLoader);
+		} catch (ClassNotFoundException ex) {
+			throw new KryoException("Unable to find class: " + name, ex);
+		}
+	}
+
+	static private Class primitive (String name) {
+		for (Class type : primitives)
+			if (type.getName().equals(name)) return type;
+		return null;
+	}
+
+	static final class Entry {
+		final String name;
+		final int id;
+		/** True if the class is looked up by class using this entry. */
+		final boolean byClass;
+		/** The name of the serializer class, or null if the default serializer or a serializer factory is used. */
+		final String serializerName;
+		/** Null if the serializer is not created by a factory. */
+		final SerializerFactory serializerFactory;
+		/** Null until the class is first used, for an entry read from a snapshot. */
+		private volatile Class type, serializerClass;
+		/** The serializer class's constructor, found the first time a serializer is created. */
+		private volatile Constructor constructor;
+
+		Entry (Class type, int id, boolean byClass, Class<? extends Serializer> serializerClass,
+			SerializerFactory serializerFactory) {
+			this(type.getName(), id, byClass, serializerClass == null ? null : serializerClass.getName(), serializerFactory);
+			this.type = type;
+			this.serializerClass = serializerClass;
+		}
+
+		Entry (String name, int id, boolean byClass, String serializerName, SerializerFactory serializerFactory) {
+			this.name = name;
+			this.id = id;
+			this.byClass = byClass;
+			this.serializerName = serializerName;
+			this.serializerFactory = serializerFactory;
+		}
+
+		Class getType (ClassLoader classLoader) {
+			Class type = this.type;
+			if (type == null) this.type = type = forName(name, classLoader);
+			return type;
+		}
+
+		Registration newRegistration (Kryo kryo, ClassLoader classLoader) {
+			Class type = getType(classLoader);
+			if (serializerFactory != null) return new Registration(type, serializerFactory.makeSerializer(kryo, type), id);
+			if (serializerName != null) return new Registration(type, newSerializer(kryo, type, classLoader), id);
+			Registration registration = new Registration(type, kryo.getDefaultSerializer(type), id);
+			registration.defaultSerializer = true;
+			return registration;
+		}
+
+		/** Creates the serializer the same as {@link ReflectionSerializerFactory#makeSerializer(Kryo, Class, Class)}, but looks up
+		 * the constructor only once rather than each time, which throws an exception for each constructor that is not found. */
+		private Serializer newSerializer (Kryo kryo, Class type, ClassLoader classLoader) {
+			Constructor constructor = this.constructor;
+			if (constructor == null) {
+				Class serializerClass = this.serializerClass;
+				if (serializerClass == null) this.serializerClass = serializerClass = forName(serializerName, classLoader);
+				constructor = serializerConstructor(serializerClass);
+				if (constructor == null) return ReflectionSerializerFactory.makeSerializer(kryo, serializerClass, type);
+				this.constructor = constructor;
+			}
+			Class[] parameterTypes = constructor.getParameterTypes();
+			Object[] args = new Object[parameterTypes.length];
+			for (int i = 0; i < args.length; i++)
+				args[i] = parameterTypes[i] == Kryo.class ? kryo : type;
+			try {
+				return (Serializer)constructor.newInstance(args);
+			} catch (Exception ex) {
+				throw new IllegalArgumentException("Unable to create serializer \"" + serializerName + "\" for class: " + className(type),
+					ex);
+			}
+		}
+	}
+
+	/** Returns the constructor {@link ReflectionSerializerFactory} would use for the serializer class, or null. */
+	static private Constructor serializerConstructor (Class serializerClass) {
+		Constructor[] constructors = serializerClass.getConstructors();
+		for (Class[] parameterTypes : new Class[][] {{Kryo.class, Class.class}, {Kryo.class}, {Class.class}, {}})
+			for (Constructor constructor : constructors)
+				if (Arrays.equals(constructor.getParameterTypes(), parameterTypes)) return constructor;
+		return null;
+	}
+}
@@ -185,6 +185,24 @@ public class ByteBufferOutput extends Output {
 		return newBuffer;
 	}
 
+	/** Returns a new ByteBufferOutput that writes to a heap ByteBuffer that grows as needed, using the same byte order and integer
+	 * encoding as this output. */
+	public Output newOutput (int bufferSize) {
+		ByteBufferOutput output = new ByteBufferOutput(ByteBuffer.allocate(bufferSize), -1);
+		output.order(byteOrder);
+		output.varIntsEnabled = varIntsEnabled;
+		return output;
+	}
+
+	/** Writes the bytes between zero and {@link #position()} to the specified output. If the buffer is direct, the bytes are first
+	 * copied to a new byte array. */
+	public void writeTo (Output output) throws KryoException {
+		if (niobuffer.hasArray())
+			output.writeBytes(niobuffer.array(), niobuffer.arrayOffset(), position);
+		else
+			output.writeBytes(toBytes());
+	}
+
 	/** Sets the current position in the buffer. */
 	public void setPosition (int position) {
 		this.position = position;
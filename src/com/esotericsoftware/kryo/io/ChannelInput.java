@@ -0,0 +1,114 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/** A {@link ByteBufferInput} that fills a direct ByteBuffer from a {@link ReadableByteChannel}, such as a FileChannel or
+ * SocketChannel. The channel reads directly into the buffer, so no heap copy is made when filling.
+ * <p>
+ * The channel must be in blocking mode. To read from a non-blocking channel, pass the bytes read to
+ * {@link ResumableInput#feed(ByteBuffer)} or {@link KryoMessageReader#feed(ByteBuffer)} instead. */
+public class ChannelInput extends ByteBufferInput {
+	protected ReadableByteChannel channel;
+
+	/** Creates an uninitialized ChannelInput with a buffer size of 4096. A channel must be set before the input is used.
+	 * @see #setChannel(ReadableByteChannel) */
+	public ChannelInput () {
+		this(4096);
+	}
+
+	/** Creates an uninitialized ChannelInput. A channel must be set before the input is used.
+	 * @see #setChannel(ReadableByteChannel) */
+	public ChannelInput (int bufferSize) {
+		super(bufferSize);
+	}
+
+	/** Creates a new ChannelInput for reading from a channel with a buffer size of 4096. */
+	public ChannelInput (ReadableByteChannel channel) {
+		this(channel, 4096);
+	}
+
+	/** Creates a new ChannelInput for reading from a channel. */
+	public ChannelInput (ReadableByteChannel channel, int bufferSize) {
+		this(bufferSize);
+		if (channel == null) throw new IllegalArgumentException("channel cannot be null.");
+		checkBlocking(channel);
+		this.channel = channel;
+	}
+
+	public ReadableByteChannel getChannel () {
+		return channel;
+	}
+
+	/** Sets a new channel. The position and total are reset, discarding any buffered bytes.
+	 * @param channel May be null. Must be in blocking mode. */
+	public void setChannel (ReadableByteChannel channel) {
+		if (channel != null) checkBlocking(channel);
+		this.channel = channel;
+		limit = 0;
+		rewind();
+	}
+
+	static private void checkBlocking (ReadableByteChannel channel) {
+		if (channel instanceof SelectableChannel && !((SelectableChannel)channel).isBlocking())
+			throw new IllegalArgumentException("channel must be in blocking mode, use ResumableInput for a non-blocking channel.");
+	}
+
+	/** @throws UnsupportedOperationException ChannelInput always reads from a channel. */
+	public void setInputStream (InputStream inputStream) {
+		throw new UnsupportedOperationException("ChannelInput cannot read from an InputStream, use setChannel.");
+	}
+
+	/** Reads from the channel into the buffer, leaving the buffer's position unchanged. */
+	protected int fill (ByteBuffer buffer, int offset, int count) throws KryoException {
+		if (channel == null) return -1;
+		int position = buffer.position();
+		buffer.limit(offset + count);
+		buffer.position(offset);
+		try {
+			int read = channel.read(buffer);
+			// A blocking channel reads at least one byte. Retrying a channel that was switched to non-blocking would spin.
+			if (read == 0 && count > 0) throw new KryoException("Channel returned no bytes, it must be in blocking mode.");
+			return read;
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		} finally {
+			buffer.limit(buffer.capacity());
+			buffer.position(position);
+		}
+	}
+
+	/** Closes the channel, if any. */
+	public void close () throws KryoException {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
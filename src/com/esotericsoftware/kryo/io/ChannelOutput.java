@@ -0,0 +1,137 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/** A {@link ByteBufferOutput} that buffers data in a direct ByteBuffer and flushes to a {@link WritableByteChannel}, such as a
+ * FileChannel or SocketChannel. The buffer is passed to the channel as is, so no heap copy is made when flushing. Byte arrays at
+ * least as large as the buffer are written to the channel directly rather than through the buffer.
+ * <p>
+ * The channel must be in blocking mode. To write to a non-blocking channel, write to an {@link Output} or
+ * {@link ByteBufferOutput} instead and write its bytes to the channel when the channel is ready. */
+public class ChannelOutput extends ByteBufferOutput {
+	protected WritableByteChannel channel;
+
+	/** Creates an uninitialized ChannelOutput with a buffer size of 4096. A channel must be set before the output is used.
+	 * @see #setChannel(WritableByteChannel) */
+	public ChannelOutput () {
+		this(4096);
+	}
+
+	/** Creates an uninitialized ChannelOutput. A channel must be set before the output is used.
+	 * @see #setChannel(WritableByteChannel) */
+	public ChannelOutput (int bufferSize) {
+		super(bufferSize, bufferSize);
+	}
+
+	/** Creates a new ChannelOutput for writing to a channel with a buffer size of 4096. */
+	public ChannelOutput (WritableByteChannel channel) {
+		this(channel, 4096);
+	}
+
+	/** Creates a new ChannelOutput for writing to a channel. */
+	public ChannelOutput (WritableByteChannel channel, int bufferSize) {
+		this(bufferSize);
+		if (channel == null) throw new IllegalArgumentException("channel cannot be null.");
+		checkBlocking(channel);
+		this.channel = channel;
+	}
+
+	public WritableByteChannel getChannel () {
+		return channel;
+	}
+
+	/** Sets a new channel. The position and total are reset, discarding any buffered bytes.
+	 * @param channel May be null. Must be in blocking mode. */
+	public void setChannel (WritableByteChannel channel) {
+		if (channel != null) checkBlocking(channel);
+		this.channel = channel;
+		niobuffer.clear();
+		position = 0;
+		total = 0;
+	}
+
+	static private void checkBlocking (WritableByteChannel channel) {
+		if (channel instanceof SelectableChannel && !((SelectableChannel)channel).isBlocking())
+			throw new IllegalArgumentException("channel must be in blocking mode.");
+	}
+
+	/** @throws UnsupportedOperationException ChannelOutput always writes to a channel. */
+	public void setOutputStream (OutputStream outputStream) {
+		throw new UnsupportedOperationException("ChannelOutput cannot write to an OutputStream, use setChannel.");
+	}
+
+	/** Writes the buffered bytes to the channel, if any. */
+	public void flush () throws KryoException {
+		if (channel == null || position == 0) return;
+		niobuffer.position(0);
+		niobuffer.limit(position);
+		write(niobuffer);
+		niobuffer.clear();
+		total += position;
+		position = 0;
+	}
+
+	private void write (ByteBuffer buffer) throws KryoException {
+		try {
+			while (buffer.hasRemaining()) {
+				// A blocking channel writes at least one byte. Retrying a channel that was switched to non-blocking would spin.
+				if (channel.write(buffer) == 0) throw new KryoException("Channel wrote no bytes, it must be in blocking mode.");
+			}
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+	}
+
+	/** Returns false, the buffer is flushed to the channel as it fills. */
+	public boolean canPatch () {
+		return false;
+	}
+
+	/** Flushes any buffered bytes and closes the channel, if any. */
+	public void close () throws KryoException {
+		flush();
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/** Writes the bytes. Note the byte[] length is not written. */
+	public void writeBytes (byte[] bytes, int offset, int count) throws KryoException {
+		if (bytes == null) throw new IllegalArgumentException("bytes cannot be null.");
+		if (channel == null || count < capacity) {
+			super.writeBytes(bytes, offset, count);
+			return;
+		}
+		flush();
+		write(ByteBuffer.wrap(bytes, offset, count));
+		total += count;
+	}
+}
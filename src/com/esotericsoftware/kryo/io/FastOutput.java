@@ -70,6 +70,10 @@ public final class FastOutput extends Output {
 		super(outputStream, bufferSize);
 	}
 
+	public Output newOutput (int bufferSize) {
+		return new FastOutput(bufferSize, -1);
+	}
+
 	public int writeInt (int value, boolean optimizePositive) throws KryoException {
 		writeInt(value);
 		return 4;
@@ -21,6 +21,7 @@ package com.esotericsoftware.kryo.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import com.esotericsoftware.kryo.KryoException;
 
@@ -108,6 +109,29 @@ public class Input extends InputStream {
 		rewind();
 	}
 
+	/** Adds the remaining bytes in the ByteBuffer after the limit, discarding the bytes before the position and growing the buffer
+	 * if needed. The total is not changed. */
+	void append (ByteBuffer bytes) throws KryoException {
+		int count = bytes.remaining();
+		byte[] buffer = this.buffer;
+		int remaining = limit - position;
+		if (buffer == null || buffer.length - limit < count) {
+			if (buffer == null || buffer.length < remaining + count) {
+				long size = Math.max(remaining + (long)count, buffer == null ? 256 : buffer.length * 2L);
+				buffer = new byte[(int)Math.min(size, Util.MAX_SAFE_ARRAY_SIZE)];
+				if (buffer.length < remaining + (long)count) throw new KryoException("Too many bytes to buffer.");
+			}
+			if (this.buffer != null) System.arraycopy(this.buffer, position, buffer, 0, remaining);
+			this.buffer = buffer;
+			capacity = buffer.length;
+			total += position;
+			position = 0;
+			limit = remaining;
+		}
+		bytes.get(buffer, limit, count);
+		limit += count;
+	}
+
 	/** Returns the number of bytes read. */
 	public long total () {
 		return total + position;
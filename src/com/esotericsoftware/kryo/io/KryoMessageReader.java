@@ -0,0 +1,101 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.nio.ByteBuffer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+
+/** Reads a sequence of messages written by {@link KryoMessageWriter} from an {@link Input}.
+ * <p>
+ * {@link #read()} reads from the input's stream as needed. To avoid blocking, {@link #isMessageBuffered()} checks whether a
+ * complete message is already in the input's buffer. Without a stream, bytes received from a non-blocking source are added to
+ * the buffer with {@link #feed(ByteBuffer)}:
+ * 
+ * <pre>
+ * reader.feed(receivedBytes);
+ * while (reader.isMessageBuffered())
+ * 	handle(reader.read());
+ * </pre> */
+public class KryoMessageReader {
+	private final Kryo kryo;
+	private final Input input;
+
+	/** Creates a KryoMessageReader for messages that are added with {@link #feed(ByteBuffer)}. */
+	public KryoMessageReader (Kryo kryo) {
+		this(kryo, new Input(4096));
+	}
+
+	public KryoMessageReader (Kryo kryo, Input input) {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		if (input == null) throw new IllegalArgumentException("input cannot be null.");
+		this.kryo = kryo;
+		this.input = input;
+	}
+
+	public Input getInput () {
+		return input;
+	}
+
+	/** Reads the next message, reading from the input's stream if the message is not buffered.
+	 * @return May be null. */
+	public Object read () throws KryoException {
+		int length = input.readVarInt(true);
+		long start = input.total();
+		Object message = kryo.readClassAndObject(input);
+		long count = input.total() - start;
+		if (count != length) throw new KryoException("Message length is " + length + " bytes but " + count + " bytes were read.");
+		return message;
+	}
+
+	/** Returns true if the input's buffer contains the length and all the bytes of the next message, so {@link #read()} won't
+	 * read from the input's stream. */
+	public boolean isMessageBuffered () {
+		int position = input.position, limit = input.limit;
+		int length = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (position == limit) return false;
+			int b = get(position++);
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return limit - position >= length;
+		}
+		throw new KryoException("Malformed message length.");
+	}
+
+	private int get (int index) {
+		if (input instanceof ByteBufferInput) return ((ByteBufferInput)input).niobuffer.get(index);
+		return input.buffer[index];
+	}
+
+	/** Adds the bytes to the end of the input's buffer, growing the buffer if needed. The input must not use a ByteBuffer and
+	 * should not have a stream. */
+	public void feed (byte[] bytes, int offset, int count) {
+		if (bytes == null) throw new IllegalArgumentException("bytes cannot be null.");
+		feed(ByteBuffer.wrap(bytes, offset, count));
+	}
+
+	/** Adds the remaining bytes in the ByteBuffer to the end of the input's buffer, growing the buffer if needed. The input must
+	 * not use a ByteBuffer and should not have a stream. */
+	public void feed (ByteBuffer bytes) {
+		if (input instanceof ByteBufferInput) throw new UnsupportedOperationException("Bytes cannot be fed to a ByteBufferInput.");
+		input.append(bytes);
+	}
+}
@@ -0,0 +1,68 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+
+/** Writes a sequence of messages to an {@link Output}, each written with {@link Kryo#writeClassAndObject(Output, Object)} and
+ * preceded by its length in bytes as a varint. Each message is first written to a buffer from {@link Output#newOutput(int)}, so
+ * it has the same byte order and integer encoding as the output. The framed messages are buffered by the output, so many small
+ * messages are written to the output's stream or channel with a single write when the buffer is full or {@link #flush()} is
+ * called.
+ * <p>
+ * The messages can be read with {@link KryoMessageReader} or {@link com.esotericsoftware.kryo.pool.ParallelReader#readDelimited(Input)}. */
+public class KryoMessageWriter {
+	private final Kryo kryo;
+	private final Output output;
+	private final Output messageOutput;
+
+	public KryoMessageWriter (Kryo kryo, Output output) {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		if (output == null) throw new IllegalArgumentException("output cannot be null.");
+		this.kryo = kryo;
+		this.output = output;
+		messageOutput = output.newOutput(256);
+	}
+
+	public Output getOutput () {
+		return output;
+	}
+
+	/** Writes a message to the output's buffer.
+	 * @param message May be null. */
+	public void write (Object message) throws KryoException {
+		messageOutput.clear();
+		kryo.writeClassAndObject(messageOutput, message);
+		int length = messageOutput.position();
+		output.writeVarInt(length, true);
+		messageOutput.writeTo(output);
+	}
+
+	/** Writes the buffered messages to the output's stream or channel. */
+	public void flush () throws KryoException {
+		output.flush();
+	}
+
+	/** Flushes and closes the output. */
+	public void close () throws KryoException {
+		output.close();
+	}
+}
@@ -0,0 +1,220 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/** A {@link ByteBufferInput} that reads a file by memory mapping it. Files of any size are mapped as a sequence of read-only
+ * windows. When a value extends past the end of the current window, the next window is mapped starting at that value, so a
+ * value is never split between windows.
+ * <p>
+ * {@link #total()} is the offset in the file of the next byte to be read and {@link #seek(long)} moves to any offset, so an
+ * object can be read from the middle of a file without reading the bytes before it. {@link #position()} and
+ * {@link #setPosition(int)} refer to the current window.
+ * <p>
+ * Windows are never unmapped explicitly, because {@link #getByteBuffer()} hands out the current window and accessing an unmapped
+ * buffer crashes the JVM. A window is unmapped when it is garbage collected, so the address space of earlier windows is only
+ * released after a GC. */
+public class MappedFileInput extends ByteBufferInput {
+	private final FileChannel channel;
+	private final RandomAccessFile file;
+	private final int windowSize;
+	private final long size;
+
+	/** Creates a new MappedFileInput for reading a file with a window size of 256MB. */
+	public MappedFileInput (File file) throws KryoException {
+		this(file, 1 << 28);
+	}
+
+	/** Creates a new MappedFileInput for reading a file. The file is closed when the input is closed.
+	 * @param windowSize The maximum number of bytes mapped at once. An exception is thrown if a single value needs more than
+	 *           this many bytes. */
+	public MappedFileInput (File file, int windowSize) throws KryoException {
+		this(open(file), windowSize);
+	}
+
+	/** Creates a new MappedFileInput for reading a file with a window size of 256MB. */
+	public MappedFileInput (FileChannel channel) throws KryoException {
+		this(channel, 1 << 28);
+	}
+
+	/** Creates a new MappedFileInput for reading a file. The channel is closed when the input is closed.
+	 * @param windowSize The maximum number of bytes mapped at once. An exception is thrown if a single value needs more than
+	 *           this many bytes. */
+	public MappedFileInput (FileChannel channel, int windowSize) throws KryoException {
+		this(channel, null, windowSize);
+	}
+
+	private MappedFileInput (RandomAccessFile file, int windowSize) throws KryoException {
+		this(file.getChannel(), file, windowSize);
+	}
+
+	private MappedFileInput (FileChannel channel, RandomAccessFile file, int windowSize) throws KryoException {
+		if (channel == null) throw new IllegalArgumentException("channel cannot be null.");
+		if (windowSize < 1) throw new IllegalArgumentException("windowSize must be > 0: " + windowSize);
+		this.channel = channel;
+		this.file = file;
+		this.windowSize = windowSize;
+		try {
+			size = channel.size();
+			map(0);
+		} catch (Throwable ex) {
+			closeFile();
+			if (ex instanceof IOException) throw new KryoException(ex);
+			throw (RuntimeException)ex;
+		}
+	}
+
+	static private RandomAccessFile open (File file) throws KryoException {
+		if (file == null) throw new IllegalArgumentException("file cannot be null.");
+		try {
+			return new RandomAccessFile(file, "r");
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+	}
+
+	public FileChannel getChannel () {
+		return channel;
+	}
+
+	public int getWindowSize () {
+		return windowSize;
+	}
+
+	/** Returns the size of the file when the input was created. */
+	public long size () {
+		return size;
+	}
+
+	/** Sets the offset in the file of the next byte to be read. If the offset is outside the current window, the window starting at
+	 * the offset is mapped. */
+	public void seek (long offset) throws KryoException {
+		if (offset < 0 || offset > size) throw new IndexOutOfBoundsException("offset must be >= 0 and <= " + size + ": " + offset);
+		if (offset >= total && offset <= total + limit)
+			setPosition((int)(offset - total));
+		else
+			map(offset);
+	}
+
+	private void map (long offset) throws KryoException {
+		int count = (int)Math.min(windowSize, size - offset);
+		ByteBuffer window;
+		try {
+			window = channel.map(MapMode.READ_ONLY, offset, count);
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+		window.order(byteOrder);
+		niobuffer = window;
+		total = offset;
+		position = 0;
+		limit = count;
+		capacity = count;
+	}
+
+	/** @throws UnsupportedOperationException MappedFileInput always reads from the mapped file. */
+	public void setBuffer (ByteBuffer buffer) {
+		throw new UnsupportedOperationException("MappedFileInput cannot read from a buffer.");
+	}
+
+	/** @throws UnsupportedOperationException MappedFileInput always reads from the mapped file. */
+	public void setInputStream (InputStream inputStream) {
+		throw new UnsupportedOperationException("MappedFileInput cannot read from an InputStream.");
+	}
+
+	/** Seeks to the start of the file. */
+	public void rewind () {
+		seek(0);
+	}
+
+	public void order (ByteOrder byteOrder) {
+		super.order(byteOrder);
+		niobuffer.order(byteOrder);
+	}
+
+	protected int require (int required) throws KryoException {
+		int remaining = limit - position;
+		if (remaining >= required) return remaining;
+		if (required > windowSize)
+			throw new KryoException("Buffer too small: window size: " + windowSize + ", required: " + required);
+		map(total + position);
+		if (limit < required) throw new KryoException("Buffer underflow.");
+		return limit;
+	}
+
+	protected int optional (int optional) throws KryoException {
+		int remaining = limit - position;
+		if (remaining >= optional) return optional;
+		if (total + limit < size) {
+			map(total + position);
+			remaining = limit;
+		}
+		return remaining == 0 ? -1 : Math.min(remaining, optional);
+	}
+
+	public boolean eof () {
+		return total + position >= size;
+	}
+
+	public int available () {
+		return (int)Math.min(Integer.MAX_VALUE, size - total - position);
+	}
+
+	public void skip (int count) throws KryoException {
+		skip((long)count);
+	}
+
+	public long skip (long count) throws KryoException {
+		long offset = total + position;
+		if (count > size - offset) throw new KryoException("Buffer underflow.");
+		seek(offset + count);
+		return count;
+	}
+
+	/** Closes the file. The current window stays mapped until it is garbage collected, so a buffer returned by
+	 * {@link #getByteBuffer()} can still be read. */
+	public void close () throws KryoException {
+		closeFile();
+	}
+
+	/** Closes the file. Unlike {@link ByteBufferInput#release()}, the current window is not unmapped, see
+	 * {@link MappedFileInput}. */
+	public void release () {
+		close();
+	}
+
+	private void closeFile () {
+		try {
+			channel.close();
+			if (file != null) file.close();
+		} catch (IOException ignored) {
+		}
+	}
+}
@@ -145,6 +145,24 @@ public class Output extends OutputStream {
 		this.position = position;
 	}
 
+	/** Returns true if bytes written earlier stay in the buffer until {@link #flush()} is called, so {@link #setPosition(int)} can
+	 * be used to go back and overwrite them. This is false when the buffer is flushed to an OutputStream as it fills. */
+	public boolean canPatch () {
+		return outputStream == null;
+	}
+
+	/** Returns a new Output that writes to a byte array that grows as needed, using the same byte order and integer encoding as this
+	 * output. Bytes written to it can be copied to this output with {@link #writeTo(Output)}, eg to write them after a length that
+	 * is only known once they are written. */
+	public Output newOutput (int bufferSize) {
+		return new Output(bufferSize, -1);
+	}
+
+	/** Writes the bytes between zero and {@link #position()} to the specified output. */
+	public void writeTo (Output output) throws KryoException {
+		output.writeBytes(buffer, 0, position);
+	}
+
 	/** Returns the total number of bytes written. This may include bytes that have not been flushed. */
 	public long total () {
 		return total + position;
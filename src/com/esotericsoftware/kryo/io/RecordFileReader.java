@@ -0,0 +1,307 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.zip.CRC32;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+
+/** Reads a record file written by {@link RecordFileWriter}. The file is memory mapped using {@link MappedFileInput}. Any record
+ * can be read by index without reading the records before it, and records can be looked up by key if they were written with
+ * one. The index is read from the mapped file as needed and is never loaded into memory.
+ * <p>
+ * If the file was not closed, for example because the writer crashed, the records are scanned to build the index in a temporary
+ * file, which is deleted when the reader is closed, and any incomplete record at the end of the file is ignored.
+ * <p>
+ * A RecordFileReader is not thread safe. To read a file in parallel, each thread can use its own reader to read a range of
+ * records, starting with {@link #seek(long)}. {@link #RecordFileReader(RecordFileReader, Kryo)} creates a reader that shares the
+ * index that has already been read. */
+public class RecordFileReader {
+	private final Kryo kryo;
+	private final File file;
+	private final int windowSize;
+	private final MappedFileInput input;
+	private final CRC32 crc = new CRC32();
+	private long count, keySlots, indexOffset, dataEnd;
+	/** The file's channel, or the channel of the temporary index of a recovered file. */
+	private FileChannel indexChannel;
+	/** The index is mapped in windows that stay mapped, so looking up an offset or a key doesn't map the index again. */
+	private MappedByteBuffer[] indexWindows = new MappedByteBuffer[0];
+	/** The temporary index of a recovered file, or null. */
+	private File indexFile;
+	private RandomAccessFile indexRandomAccessFile;
+	private boolean ownsIndexFile;
+	private long next, nextOffset;
+
+	/** Creates a RecordFileReader with a window size of 256MB. */
+	public RecordFileReader (Kryo kryo, File file) throws KryoException {
+		this(kryo, file, 1 << 28);
+	}
+
+	/** @param windowSize The maximum number of bytes mapped at once. Each record must fit in a window. */
+	public RecordFileReader (Kryo kryo, File file, int windowSize) throws KryoException {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		this.kryo = kryo;
+		this.file = file;
+		this.windowSize = windowSize;
+		input = new MappedFileInput(file, windowSize);
+		indexChannel = input.getChannel();
+		try {
+			long size = input.size();
+			if (size == 0) return;
+			if (size < RecordFileWriter.HEADER_SIZE || input.readInt() != RecordFileWriter.MAGIC)
+				throw new KryoException("Not a record file.");
+			int version = input.readByte();
+			if (version != RecordFileWriter.VERSION) throw new KryoException("Unsupported record file version: " + version);
+			if (!readTrailer(size)) recover(size);
+			seek(0);
+		} catch (RuntimeException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	/** Creates a reader for the same file as the specified reader which uses its index, so the trailer is not read again and a
+	 * file that was not closed is not scanned again. The specified reader must not be closed before this reader is created. */
+	public RecordFileReader (RecordFileReader reader, Kryo kryo) throws KryoException {
+		if (reader == null) throw new IllegalArgumentException("reader cannot be null.");
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		this.kryo = kryo;
+		file = reader.file;
+		windowSize = reader.windowSize;
+		input = new MappedFileInput(file, windowSize);
+		count = reader.count;
+		keySlots = reader.keySlots;
+		indexOffset = reader.indexOffset;
+		dataEnd = reader.dataEnd;
+		indexFile = reader.indexFile;
+		try {
+			indexChannel = indexFile == null ? input.getChannel() : openIndex();
+			seek(0);
+		} catch (RuntimeException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	private boolean readTrailer (long size) {
+		long trailerOffset = size - RecordFileWriter.TRAILER_SIZE;
+		if (trailerOffset < RecordFileWriter.HEADER_SIZE) return false;
+		input.seek(trailerOffset);
+		long count = input.readLong();
+		long keySlots = input.readLong();
+		long indexOffset = input.readLong();
+		if (input.readInt() != RecordFileWriter.INDEX_MAGIC) return false;
+		if (count < 0 || keySlots < 0 || (keySlots & (keySlots - 1)) != 0 || indexOffset < RecordFileWriter.HEADER_SIZE
+			|| indexOffset > trailerOffset) return false;
+		long indexSize = trailerOffset - indexOffset;
+		if (count > indexSize / 8 || keySlots > (indexSize - count * 8) / RecordIndexWriter.SLOT_SIZE
+			|| count * 8 + keySlots * RecordIndexWriter.SLOT_SIZE != indexSize) return false;
+		this.count = count;
+		this.keySlots = keySlots;
+		this.indexOffset = indexOffset;
+		dataEnd = indexOffset;
+		return true;
+	}
+
+	/** Scans the records to build the index in a temporary file, stopping at the first record that is incomplete or fails its
+	 * checksum. */
+	private void recover (long size) {
+		RecordIndexWriter index = new RecordIndexWriter(null);
+		try {
+			long offset = RecordFileWriter.HEADER_SIZE;
+			while (size - offset >= 8) {
+				input.seek(offset);
+				int length = input.readInt();
+				int checksum = input.readInt();
+				if (length < 0 || length > size - offset - 8) break;
+				byte[] bytes = input.readBytes(length);
+				crc.reset();
+				crc.update(bytes, 0, length);
+				if ((int)crc.getValue() != checksum) break;
+				input.seek(offset + 8);
+				String key = input.readString();
+				if (key != null) index.addKey(RecordIndexWriter.hash(key), index.size());
+				index.add(offset);
+				offset += 8 + length;
+			}
+			dataEnd = offset;
+
+			indexFile = File.createTempFile("kryo", ".index");
+			indexFile.deleteOnExit();
+			ownsIndexFile = true;
+			RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+			try {
+				index.write(file.getChannel(), 0);
+			} finally {
+				file.close();
+			}
+			count = index.size();
+			keySlots = index.getKeySlots();
+			indexOffset = 0;
+			indexChannel = openIndex();
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		} finally {
+			index.close();
+		}
+	}
+
+	private FileChannel openIndex () throws KryoException {
+		try {
+			indexRandomAccessFile = new RandomAccessFile(indexFile, "r");
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+		return indexRandomAccessFile.getChannel();
+	}
+
+	/** Returns the long at the specified position in the index, which is a multiple of 8. */
+	private long readIndexLong (long position) throws KryoException {
+		int i = (int)(position / RecordIndexWriter.WINDOW_SIZE);
+		if (i >= indexWindows.length) {
+			MappedByteBuffer[] newWindows = new MappedByteBuffer[i + 1];
+			System.arraycopy(indexWindows, 0, newWindows, 0, indexWindows.length);
+			indexWindows = newWindows;
+		}
+		MappedByteBuffer window = indexWindows[i];
+		if (window == null) {
+			long windowOffset = i * (long)RecordIndexWriter.WINDOW_SIZE;
+			long indexSize = count * 8 + keySlots * RecordIndexWriter.SLOT_SIZE;
+			try {
+				window = indexChannel.map(MapMode.READ_ONLY, indexOffset + windowOffset,
+					Math.min(RecordIndexWriter.WINDOW_SIZE, indexSize - windowOffset));
+			} catch (IOException ex) {
+				throw new KryoException(ex);
+			}
+			indexWindows[i] = window;
+		}
+		return window.getLong((int)(position % RecordIndexWriter.WINDOW_SIZE));
+	}
+
+	/** Returns the number of records. */
+	public long size () {
+		return count;
+	}
+
+	/** Returns the offset in the file of the record at the specified index. */
+	public long getOffset (long index) {
+		if (index < 0 || index >= count) throw new IndexOutOfBoundsException("index must be >= 0 and < " + count + ": " + index);
+		return readIndexLong(index * 8);
+	}
+
+	/** Sets the index of the next record {@link #readNext()} will read.
+	 * @param index May be equal to {@link #size()}. */
+	public void seek (long index) {
+		if (index < 0 || index > count) throw new IndexOutOfBoundsException("index must be >= 0 and <= " + count + ": " + index);
+		next = index;
+		nextOffset = index == count ? dataEnd : getOffset(index);
+	}
+
+	/** Returns true if {@link #readNext()} has a record to read. */
+	public boolean hasNext () {
+		return next < count;
+	}
+
+	/** Returns the index of the record the next {@link #readNext()} will read. */
+	public long nextIndex () {
+		return next;
+	}
+
+	/** Reads the next record. Records that are read in order are read without using the index. */
+	public Object readNext () throws KryoException {
+		if (next >= count) throw new KryoException("No more records.");
+		input.seek(nextOffset);
+		int length = input.readInt();
+		input.skip(4);
+		input.readString(); // Key.
+		Object object = kryo.readClassAndObject(input);
+		next++;
+		nextOffset += 8 + length;
+		return object;
+	}
+
+	/** Reads the record at the specified index. */
+	public Object read (long index) throws KryoException {
+		seek(index);
+		return readNext();
+	}
+
+	/** Returns the index of the record that was written with the specified key, or -1. The key is looked up in the key table of
+	 * the index, which is not loaded into memory. */
+	public long indexOf (String key) throws KryoException {
+		if (key == null) throw new IllegalArgumentException("key cannot be null.");
+		if (keySlots == 0) return -1;
+		long hash = RecordIndexWriter.hash(key), mask = keySlots - 1, tableOffset = count * 8, found = -1;
+		for (long slot = hash & mask;; slot = (slot + 1) & mask) {
+			long slotOffset = tableOffset + slot * RecordIndexWriter.SLOT_SIZE;
+			long slotHash = readIndexLong(slotOffset), index = readIndexLong(slotOffset + 8) - 1;
+			if (index == -1) return found;
+			// A key used for more than one record finds the last of them.
+			if (slotHash == hash && index > found && key.equals(readKey(index))) found = index;
+		}
+	}
+
+	private String readKey (long index) {
+		input.seek(getOffset(index) + 8);
+		return input.readString();
+	}
+
+	/** Reads the record that was written with the specified key, or returns null if there is no such record. */
+	public Object read (String key) throws KryoException {
+		long index = indexOf(key);
+		return index == -1 ? null : read(index);
+	}
+
+	/** Adds the offsets and keys of all the records to the index, for appending. */
+	void copyIndex (RecordIndexWriter index) throws KryoException {
+		for (long i = 0; i < count; i++)
+			index.add(readIndexLong(i * 8));
+		for (long i = 0, tableOffset = count * 8; i < keySlots; i++) {
+			long slotOffset = tableOffset + i * RecordIndexWriter.SLOT_SIZE;
+			long hash = readIndexLong(slotOffset), recordIndex = readIndexLong(slotOffset + 8) - 1;
+			if (recordIndex != -1) index.addKey(hash, recordIndex);
+		}
+	}
+
+	/** Returns the offset of the end of the last record. */
+	long getDataEnd () {
+		return dataEnd;
+	}
+
+	/** Closes the file and deletes the temporary index of a recovered file. */
+	public void close () throws KryoException {
+		input.close();
+		if (indexRandomAccessFile != null) {
+			try {
+				indexRandomAccessFile.close();
+			} catch (IOException ignored) {
+			}
+		}
+		if (ownsIndexFile) indexFile.delete();
+	}
+}
@@ -0,0 +1,177 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+
+/** Appends objects as records to a file which can be read with {@link RecordFileReader}. Each record is written with
+ * {@link Kryo#writeClassAndObject(Output, Object)} and is preceded by its length, a checksum and an optional key. When the
+ * writer is closed, an index of the record offsets and keys is written at the end of the file, so a reader can find any record
+ * without reading the records before it.
+ * <p>
+ * If the file exists, the records are appended to it. If the file was not closed, any incomplete record at its end is
+ * discarded. Records are safe from a crash once {@link #sync()} or {@link #close()} returns.
+ * <p>
+ * The index is built in temporary files in the directory of the file while records are appended, and the key table is built in
+ * a memory mapping of the file when the writer is closed, so the number of records is not limited by the heap. */
+public class RecordFileWriter {
+	static final int MAGIC = 0x4B52594F; // KRYO
+	static final int INDEX_MAGIC = 0x4B494458; // KIDX
+	static final byte VERSION = 1;
+	static final int HEADER_SIZE = 5;
+	static final int TRAILER_SIZE = 28;
+
+	private final Kryo kryo;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final ChannelOutput output;
+	private final Output recordOutput = new Output(4096, -1);
+	private final CRC32 crc = new CRC32();
+	private final long start;
+	private final RecordIndexWriter index;
+
+	public RecordFileWriter (Kryo kryo, File file) throws KryoException {
+		if (kryo == null) throw new IllegalArgumentException("kryo cannot be null.");
+		if (file == null) throw new IllegalArgumentException("file cannot be null.");
+		this.kryo = kryo;
+
+		index = new RecordIndexWriter(file.getAbsoluteFile().getParentFile());
+		long start = 0;
+		try {
+			// Any existing file is validated, so a file that isn't a record file is never truncated.
+			if (file.length() > 0) {
+				RecordFileReader reader = new RecordFileReader(kryo, file);
+				try {
+					reader.copyIndex(index);
+					start = reader.getDataEnd();
+				} finally {
+					reader.close();
+				}
+			}
+			this.file = new RandomAccessFile(file, "rw");
+		} catch (IOException ex) {
+			index.close();
+			throw new KryoException(ex);
+		} catch (RuntimeException ex) {
+			index.close();
+			throw ex;
+		}
+		channel = this.file.getChannel();
+		try {
+			channel.truncate(start); // Removes the index or an incomplete record.
+			channel.position(start);
+		} catch (IOException ex) {
+			index.close();
+			close(this.file);
+			throw new KryoException(ex);
+		}
+		output = new ChannelOutput(channel, 8192);
+		if (start == 0) {
+			output.writeInt(MAGIC);
+			output.writeByte(VERSION);
+		}
+		this.start = start;
+	}
+
+	/** Returns the number of records. */
+	public long size () {
+		return index.size();
+	}
+
+	/** Appends a record without a key.
+	 * @param object May be null.
+	 * @return The index of the record. */
+	public long append (Object object) throws KryoException {
+		return append(null, object);
+	}
+
+	/** Appends a record that can be read using the key. If a key is used more than once, the last record written with it is found.
+	 * @param key May be null.
+	 * @param object May be null.
+	 * @return The index of the record. */
+	public long append (String key, Object object) throws KryoException {
+		recordOutput.clear();
+		recordOutput.writeString(key);
+		kryo.writeClassAndObject(recordOutput, object);
+		int length = recordOutput.position();
+		byte[] bytes = recordOutput.getBuffer();
+		crc.reset();
+		crc.update(bytes, 0, length);
+
+		long count = index.size();
+		index.add(start + output.total());
+		if (key != null) index.addKey(RecordIndexWriter.hash(key), count);
+		output.writeInt(length);
+		output.writeInt((int)crc.getValue());
+		output.writeBytes(bytes, 0, length);
+		return count;
+	}
+
+	/** Writes any buffered records to the file. */
+	public void flush () throws KryoException {
+		output.flush();
+	}
+
+	/** Writes any buffered records to the file and forces them to the storage device. */
+	public void sync () throws KryoException {
+		output.flush();
+		try {
+			channel.force(false);
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+	}
+
+	/** Writes the index and closes the file. */
+	public void close () throws KryoException {
+		try {
+			output.flush();
+			long indexOffset = start + output.total();
+			long end = index.write(channel, indexOffset);
+			try {
+				channel.position(end);
+			} catch (IOException ex) {
+				throw new KryoException(ex);
+			}
+			output.writeLong(index.size());
+			output.writeLong(index.getKeySlots());
+			output.writeLong(indexOffset);
+			output.writeInt(INDEX_MAGIC);
+			sync();
+		} finally {
+			index.close();
+			close(file);
+		}
+	}
+
+	static private void close (RandomAccessFile file) {
+		try {
+			file.close();
+		} catch (IOException ignored) {
+		}
+	}
+}
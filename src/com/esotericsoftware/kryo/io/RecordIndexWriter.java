@@ -0,0 +1,184 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/** Builds the index of a record file without keeping it in memory, so a file can have any number of records. The offset of each
+ * record and the hash of each key are appended to temporary files, then {@link #write(FileChannel, long)} copies the offsets to
+ * the index and builds the key table in a memory mapping of the file rather than on the heap.
+ * <p>
+ * The index is the offset of each record, 8 bytes per record, followed by the key table. The key table is a linear probing hash
+ * table with at least twice as many slots as keys. Each slot is 16 bytes, the hash of a key followed by the index of its record
+ * plus one, or 0 if the slot is empty. A key used for more than one record has a slot for each record, and the record with the
+ * highest index is the one found. */
+class RecordIndexWriter {
+	static final int SLOT_SIZE = 16;
+	/** The number of bytes of the index mapped at once, a multiple of the slot size. */
+	static final int WINDOW_SIZE = 1 << 27;
+
+	private final File offsetsFile, keysFile;
+	private final Output offsets, keys;
+	private long count, keyCount;
+
+	/** @param directory The directory for the temporary files, or null for the default temporary directory. */
+	RecordIndexWriter (File directory) throws KryoException {
+		File offsetsFile = null, keysFile = null;
+		Output offsets = null, keys = null;
+		try {
+			offsetsFile = File.createTempFile("kryo", ".offsets", directory);
+			offsetsFile.deleteOnExit();
+			offsets = new Output(new FileOutputStream(offsetsFile), 65536);
+			keysFile = File.createTempFile("kryo", ".keys", directory);
+			keysFile.deleteOnExit();
+			keys = new Output(new FileOutputStream(keysFile), 65536);
+		} catch (IOException ex) {
+			if (offsets != null) offsets.close();
+			if (offsetsFile != null) offsetsFile.delete();
+			if (keysFile != null) keysFile.delete();
+			throw new KryoException(ex);
+		}
+		this.offsetsFile = offsetsFile;
+		this.keysFile = keysFile;
+		this.offsets = offsets;
+		this.keys = keys;
+	}
+
+	/** Adds the offset of the next record. */
+	void add (long offset) throws KryoException {
+		offsets.writeLong(offset);
+		count++;
+	}
+
+	/** Adds a key for the record at the specified index.
+	 * @param hash See {@link #hash(String)}. */
+	void addKey (long hash, long index) throws KryoException {
+		keys.writeLong(hash);
+		keys.writeLong(index);
+		keyCount++;
+	}
+
+	/** Returns the number of records. */
+	long size () {
+		return count;
+	}
+
+	/** Returns the number of slots in the key table, 0 if there are no keys or a power of two. */
+	long getKeySlots () {
+		return keySlots(keyCount);
+	}
+
+	static long keySlots (long keyCount) {
+		if (keyCount == 0) return 0;
+		long slots = 2;
+		while (slots < keyCount * 2)
+			slots <<= 1;
+		return slots;
+	}
+
+	/** Writes the index to the channel, which must be writable, starting at the specified position.
+	 * @return The position after the index. */
+	long write (FileChannel channel, long position) throws KryoException {
+		offsets.close();
+		keys.close();
+		try {
+			FileInputStream offsetsStream = new FileInputStream(offsetsFile);
+			try {
+				FileChannel offsetsChannel = offsetsStream.getChannel();
+				for (long copied = 0, length = count * 8; copied < length;) {
+					long n = channel.transferFrom(offsetsChannel, position + copied, length - copied);
+					if (n <= 0) throw new KryoException("Unable to copy the record offsets.");
+					copied += n;
+				}
+			} finally {
+				offsetsStream.close();
+			}
+
+			long tableOffset = position + count * 8, slots = getKeySlots(), tableSize = slots * SLOT_SIZE;
+			MappedByteBuffer[] windows = new MappedByteBuffer[(int)((tableSize + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+			for (int i = 0; i < windows.length; i++) {
+				long windowOffset = i * (long)WINDOW_SIZE;
+				int size = (int)Math.min(WINDOW_SIZE, tableSize - windowOffset);
+				MappedByteBuffer window = channel.map(MapMode.READ_WRITE, tableOffset + windowOffset, size);
+				// The contents of a region that extends the file are not specified.
+				for (int p = 0; p < size; p += 8)
+					window.putLong(p, 0);
+				windows[i] = window;
+			}
+			Input keysInput = new Input(new FileInputStream(keysFile), 65536);
+			try {
+				long mask = slots - 1;
+				for (long i = 0; i < keyCount; i++) {
+					long hash = keysInput.readLong(), index = keysInput.readLong();
+					for (long slot = hash & mask;; slot = (slot + 1) & mask) {
+						long slotOffset = slot * SLOT_SIZE;
+						MappedByteBuffer window = windows[(int)(slotOffset / WINDOW_SIZE)];
+						int p = (int)(slotOffset % WINDOW_SIZE);
+						if (window.getLong(p + 8) == 0) {
+							window.putLong(p, hash);
+							window.putLong(p + 8, index + 1);
+							break;
+						}
+					}
+				}
+			} finally {
+				keysInput.close();
+			}
+			for (int i = 0; i < windows.length; i++)
+				windows[i].force();
+			return tableOffset + tableSize;
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+	}
+
+	/** Deletes the temporary files. */
+	void close () {
+		close(offsets);
+		close(keys);
+		offsetsFile.delete();
+		keysFile.delete();
+	}
+
+	static private void close (Output output) {
+		try {
+			output.close();
+		} catch (KryoException ignored) {
+		}
+	}
+
+	/** Returns a 64 bit hash of the key, which is stored in the key table. */
+	static long hash (String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0, n = key.length(); i < n; i++)
+			hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		return hash ^ (hash >>> 33);
+	}
+}
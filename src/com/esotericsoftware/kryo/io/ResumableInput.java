@@ -0,0 +1,98 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+
+/** An Input that is given bytes as they are received, for example from a non-blocking channel, and reads an object only once all
+ * its bytes have been received. {@link #tryReadClassAndObject(Kryo)} either reads the object or, if it needs bytes that have not
+ * been received yet, returns {@link #INCOMPLETE} and restores the input to where the object starts, so the read can be attempted
+ * again after more bytes are added with {@link #feed(ByteBuffer)}. This allows objects to be read on an event loop thread, with
+ * no thread waiting for bytes.
+ * <p>
+ * The Kryo instance must use {@link Kryo#setAutoReset(boolean) auto reset}, so an incomplete read leaves no references or class
+ * names behind. Serializers should not have side effects other than creating the objects they read, as an object may be read
+ * more than once. */
+public class ResumableInput extends Input {
+	/** Returned by {@link #tryReadClassAndObject(Kryo)} when more bytes are needed. */
+	static public final Object INCOMPLETE = new Object();
+
+	private boolean underflow;
+
+	/** Creates a ResumableInput with an initial buffer size of 256. */
+	public ResumableInput () {
+		this(256);
+	}
+
+	/** @param bufferSize The initial size of the buffer. The buffer grows as needed to hold the bytes of an object. */
+	public ResumableInput (int bufferSize) {
+		super(bufferSize);
+	}
+
+	/** @throws UnsupportedOperationException ResumableInput is only given bytes with {@link #feed(ByteBuffer)}. */
+	public void setInputStream (InputStream inputStream) {
+		throw new UnsupportedOperationException("ResumableInput cannot read from an InputStream, use feed.");
+	}
+
+	/** Adds the remaining bytes in the ByteBuffer to the bytes that have not been read. */
+	public void feed (ByteBuffer bytes) throws KryoException {
+		if (bytes == null) throw new IllegalArgumentException("bytes cannot be null.");
+		append(bytes);
+	}
+
+	/** Adds the bytes to the bytes that have not been read. */
+	public void feed (byte[] bytes, int offset, int count) throws KryoException {
+		if (bytes == null) throw new IllegalArgumentException("bytes cannot be null.");
+		append(ByteBuffer.wrap(bytes, offset, count));
+	}
+
+	/** Reads an object written with {@link Kryo#writeClassAndObject(Output, Object)} if all its bytes have been received.
+	 * @return The object, which may be null, or {@link #INCOMPLETE} if more bytes are needed. In that case the position is
+	 *         restored to the start of the object. */
+	public Object tryReadClassAndObject (Kryo kryo) throws KryoException {
+		if (!kryo.isAutoReset()) throw new IllegalStateException("Kryo auto reset must be enabled.");
+		int start = position;
+		underflow = false;
+		try {
+			return kryo.readClassAndObject(this);
+		} catch (RuntimeException ex) {
+			if (!underflow) throw ex;
+			position = start;
+			return INCOMPLETE;
+		}
+	}
+
+	/** Throws an exception without compacting the buffer if not enough bytes have been received, so the position can be restored. */
+	protected int require (int required) throws KryoException {
+		int remaining = limit - position;
+		if (remaining >= required) return remaining;
+		underflow = true;
+		throw new KryoException("Buffer underflow.");
+	}
+
+	protected int fill (byte[] buffer, int offset, int count) throws KryoException {
+		underflow = true;
+		return -1;
+	}
+}
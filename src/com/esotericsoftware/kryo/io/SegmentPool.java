@@ -0,0 +1,70 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A thread safe pool of fixed size byte arrays, used as segments by {@link SegmentedOutput}. Sharing a pool between outputs
+ * avoids allocating new segments for every message. */
+public class SegmentPool {
+	private final int segmentSize, maxFree;
+	private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue();
+	private final AtomicInteger freeCount = new AtomicInteger();
+
+	/** @param segmentSize The size of each segment. Must be at least the largest number of bytes an Output requires at once.
+	 * @param maxFree The maximum number of free segments kept by the pool. Segments freed beyond this are left to the garbage
+	 *           collector. */
+	public SegmentPool (int segmentSize, int maxFree) {
+		if (segmentSize < 16) throw new IllegalArgumentException("segmentSize must be >= 16: " + segmentSize);
+		if (maxFree < 0) throw new IllegalArgumentException("maxFree must be >= 0: " + maxFree);
+		this.segmentSize = segmentSize;
+		this.maxFree = maxFree;
+	}
+
+	/** Returns a free segment, or a new one if none are free. */
+	public byte[] obtain () {
+		byte[] segment = free.poll();
+		if (segment == null) return new byte[segmentSize];
+		freeCount.decrementAndGet();
+		return segment;
+	}
+
+	/** Returns a segment to the pool. The segment must not be used afterward. */
+	public void free (byte[] segment) {
+		if (segment == null) throw new IllegalArgumentException("segment cannot be null.");
+		if (segment.length != segmentSize)
+			throw new IllegalArgumentException("segment has length: " + segment.length + ", expected: " + segmentSize);
+		if (freeCount.incrementAndGet() > maxFree) {
+			freeCount.decrementAndGet();
+			return;
+		}
+		free.offer(segment);
+	}
+
+	public int getSegmentSize () {
+		return segmentSize;
+	}
+
+	/** Returns the number of free segments in the pool. */
+	public int getFree () {
+		return freeCount.get();
+	}
+}
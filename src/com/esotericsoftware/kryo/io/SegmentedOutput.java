@@ -0,0 +1,200 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/** An Output that writes to a list of fixed size segments obtained from a {@link SegmentPool}, rather than growing and copying a
+ * single buffer. When a segment is full, writing continues in a new segment. The data can be written with a single gathering
+ * write using {@link #getByteBuffers()} or {@link #writeTo(GatheringByteChannel)}, so large messages never need a contiguous
+ * array.
+ * <p>
+ * {@link #position()} and {@link #setPosition(int)} refer to the current segment. A value that does not fit in the space left in
+ * the current segment is written to the next segment, so the segments may not be completely filled. */
+public class SegmentedOutput extends Output {
+	static private final byte[] empty = {};
+
+	private final SegmentPool pool;
+	private byte[][] segments = new byte[8][];
+	private int[] lengths = new int[8];
+	private int segmentCount;
+
+	/** Creates a SegmentedOutput with its own pool of segments, which are reused after {@link #clear()}. */
+	public SegmentedOutput (int segmentSize) {
+		this(new SegmentPool(segmentSize, 64));
+	}
+
+	/** Creates a SegmentedOutput that obtains segments from the specified pool, which may be shared with other outputs. */
+	public SegmentedOutput (SegmentPool pool) {
+		if (pool == null) throw new IllegalArgumentException("pool cannot be null.");
+		this.pool = pool;
+		maxCapacity = pool.getSegmentSize();
+		addSegment();
+	}
+
+	public SegmentPool getPool () {
+		return pool;
+	}
+
+	/** @throws UnsupportedOperationException SegmentedOutput always writes to segments. */
+	public void setOutputStream (OutputStream outputStream) {
+		throw new UnsupportedOperationException("SegmentedOutput cannot write to an OutputStream, use writeTo.");
+	}
+
+	/** @throws UnsupportedOperationException SegmentedOutput always writes to segments. */
+	public void setBuffer (byte[] buffer, int maxBufferSize) {
+		throw new UnsupportedOperationException("SegmentedOutput cannot write to a buffer.");
+	}
+
+	/** Returns false, a position can't refer to bytes in an earlier segment. */
+	public boolean canPatch () {
+		return false;
+	}
+
+	protected boolean require (int required) throws KryoException {
+		if (capacity - position >= required) return false;
+		if (required > maxCapacity)
+			throw new KryoException("Buffer overflow. Segment size: " + maxCapacity + ", required: " + required);
+		if (segmentCount == 0) throw new KryoException("SegmentedOutput is closed, clear must be called before writing.");
+		lengths[segmentCount - 1] = position;
+		total += position;
+		addSegment();
+		return true;
+	}
+
+	private void addSegment () {
+		if (segmentCount == segments.length) {
+			byte[][] newSegments = new byte[segmentCount << 1][];
+			System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+			segments = newSegments;
+			int[] newLengths = new int[segmentCount << 1];
+			System.arraycopy(lengths, 0, newLengths, 0, segmentCount);
+			lengths = newLengths;
+		}
+		buffer = pool.obtain();
+		segments[segmentCount++] = buffer;
+		capacity = buffer.length;
+		position = 0;
+	}
+
+	/** Returns the number of segments that have been written to. */
+	public int getSegmentCount () {
+		return segmentCount;
+	}
+
+	/** Returns the segment at the specified index. The bytes between zero and {@link #getSegmentLength(int)} are the data. */
+	public byte[] getSegment (int index) {
+		if (index >= segmentCount) throw new IndexOutOfBoundsException("index must be < " + segmentCount + ": " + index);
+		return segments[index];
+	}
+
+	/** Returns the number of bytes written to the segment at the specified index. */
+	public int getSegmentLength (int index) {
+		if (index >= segmentCount) throw new IndexOutOfBoundsException("index must be < " + segmentCount + ": " + index);
+		return index == segmentCount - 1 ? position : lengths[index];
+	}
+
+	/** Returns a ByteBuffer wrapping the data in each segment. The buffers share the segments and are only valid until the output
+	 * is cleared or closed. */
+	public ByteBuffer[] getByteBuffers () {
+		ByteBuffer[] buffers = new ByteBuffer[segmentCount];
+		for (int i = 0; i < segmentCount; i++)
+			buffers[i] = ByteBuffer.wrap(segments[i], 0, getSegmentLength(i));
+		return buffers;
+	}
+
+	/** Returns a new byte array containing all the bytes written. */
+	public byte[] toBytes () {
+		long total = total();
+		if (total > Util.MAX_SAFE_ARRAY_SIZE) throw new KryoException("Too many bytes for a byte array: " + total);
+		byte[] bytes = new byte[(int)total];
+		for (int i = 0, offset = 0; i < segmentCount; i++) {
+			int length = getSegmentLength(i);
+			System.arraycopy(segments[i], 0, bytes, offset, length);
+			offset += length;
+		}
+		return bytes;
+	}
+
+	/** Writes all the bytes written to the channel using gathering writes.
+	 * @return The number of bytes written. */
+	public long writeTo (GatheringByteChannel channel) throws KryoException {
+		ByteBuffer[] buffers = getByteBuffers();
+		long total = total(), written = 0;
+		try {
+			while (written < total)
+				written += channel.write(buffers);
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+		return written;
+	}
+
+	/** Writes all the bytes written to the specified output. */
+	public void writeTo (Output output) throws KryoException {
+		for (int i = 0; i < segmentCount; i++)
+			output.writeBytes(segments[i], 0, getSegmentLength(i));
+	}
+
+	/** Writes all the bytes written to the stream. */
+	public void writeTo (OutputStream outputStream) throws KryoException {
+		try {
+			for (int i = 0; i < segmentCount; i++)
+				outputStream.write(segments[i], 0, getSegmentLength(i));
+		} catch (IOException ex) {
+			throw new KryoException(ex);
+		}
+	}
+
+	/** Sets the position and total to zero and returns all segments but the first to the pool. */
+	public void clear () {
+		for (int i = 1; i < segmentCount; i++) {
+			pool.free(segments[i]);
+			segments[i] = null;
+		}
+		position = 0;
+		total = 0;
+		if (segmentCount == 0)
+			addSegment();
+		else {
+			segmentCount = 1;
+			buffer = segments[0];
+			capacity = buffer.length;
+		}
+	}
+
+	/** Returns all segments to the pool. {@link #clear()} must be called before the output is written to again. */
+	public void close () throws KryoException {
+		for (int i = 0; i < segmentCount; i++) {
+			pool.free(segments[i]);
+			segments[i] = null;
+		}
+		segmentCount = 0;
+		buffer = empty;
+		capacity = 0;
+		position = 0;
+		total = 0;
+	}
+}
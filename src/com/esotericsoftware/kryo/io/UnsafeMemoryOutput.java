@@ -103,6 +103,15 @@ public final class UnsafeMemoryOutput extends ByteBufferOutput {
 		bufaddress = ((DirectBuffer)super.niobuffer).address();
 	}
 
+	/** Returns a new ByteBufferOutput that writes to a heap ByteBuffer that grows as needed, using the native byte order and the
+	 * same integer encoding as this output. */
+	public Output newOutput (int bufferSize) {
+		ByteBufferOutput output = new ByteBufferOutput(ByteBuffer.allocate(bufferSize), -1);
+		output.order(nativeOrder);
+		output.varIntsEnabled = varIntsEnabled;
+		return output;
+	}
+
 	/** Writes a 4 byte int. */
 	final public void writeInt (int value) throws KryoException {
 		require(4);
@@ -397,11 +406,12 @@ public final class UnsafeMemoryOutput extends ByteBufferOutput {
 	}
 
 	/*** Output count bytes from a memory region starting at the given #{offset} inside the in-memory representation of obj object.
+	 * For arrays the offset is relative to the first element.
 	 * @param obj
 	 * @param offset
 	 * @param count */
 	final public void writeBytes (Object obj, long offset, long count) throws KryoException {
-		writeBytes(obj, byteArrayBaseOffset, offset, count);
+		writeBytes(obj, obj.getClass().isArray() ? byteArrayBaseOffset : 0, offset, count);
 	}
 
 	/*** Output count bytes from a memory region starting at the given #{offset} inside the in-memory representation of obj object.
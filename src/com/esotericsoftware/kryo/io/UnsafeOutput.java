@@ -91,6 +91,12 @@ public final class UnsafeOutput extends Output {
 		super(outputStream, bufferSize);
 	}
 
+	public Output newOutput (int bufferSize) {
+		UnsafeOutput output = new UnsafeOutput(bufferSize, -1);
+		output.supportVarInts = supportVarInts;
+		return output;
+	}
+
 	/** Writes a 4 byte int. */
 	final public void writeInt (int value) throws KryoException {
 		require(4);
@@ -0,0 +1,173 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.esotericsoftware.kryo.Kryo;
+
+/** A {@link KryoPool} that limits the number of {@link Kryo} instances that can be borrowed at the same time. When the maximum
+ * number are borrowed, {@link #borrow()} waits until one is released, so many threads (eg virtual threads) share a small number
+ * of instances rather than each creating its own. Waiting threads are parked rather than blocked in a monitor. There is no fast
+ * path per carrier thread or core, every borrow and release goes through the queue.
+ * <p>
+ * The borrowed instances are tracked, so releasing an instance that was not borrowed from this pool, or releasing it twice,
+ * throws an exception rather than allowing more instances to be borrowed than the maximum.
+ * <p>
+ * Counters are kept for monitoring the pool, see {@link #getCreatedCount()}, {@link #getWaitCount()} and
+ * {@link #getTimeoutCount()}. Can be built using {@link KryoPool.Builder#maxSize(int)}. */
+public class BoundedKryoPool implements KryoPool {
+
+	private final KryoFactory factory;
+	private final Queue<Kryo> queue;
+	private final int maxSize;
+	private final Semaphore permits;
+	private final Set<Kryo> borrowed = Collections.newSetFromMap(new ConcurrentHashMap<Kryo, Boolean>());
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicLong borrows = new AtomicLong(), waits = new AtomicLong(), timeouts = new AtomicLong();
+
+	public BoundedKryoPool (KryoFactory factory, int maxSize) {
+		this(factory, new ConcurrentLinkedQueue<Kryo>(), maxSize);
+	}
+
+	/** @param queue Holds the instances that are not borrowed, must be thread safe. */
+	public BoundedKryoPool (KryoFactory factory, Queue<Kryo> queue, int maxSize) {
+		if (factory == null) throw new IllegalArgumentException("factory must not be null");
+		if (queue == null) throw new IllegalArgumentException("queue must not be null");
+		if (maxSize < 1) throw new IllegalArgumentException("maxSize must be > 0: " + maxSize);
+		this.factory = factory;
+		this.queue = queue;
+		this.maxSize = maxSize;
+		permits = new Semaphore(maxSize);
+	}
+
+	/** Takes a {@link Kryo} instance from the pool or creates a new one if the pool is empty, waiting if the maximum number of
+	 * instances are borrowed. */
+	public Kryo borrow () {
+		if (!permits.tryAcquire()) {
+			waits.incrementAndGet();
+			permits.acquireUninterruptibly();
+		}
+		return take();
+	}
+
+	/** Like {@link #borrow()}, but waits no longer than the specified time.
+	 * @return null if the time elapsed before an instance was released. */
+	public Kryo borrow (long timeout, TimeUnit unit) throws InterruptedException {
+		if (!permits.tryAcquire()) {
+			waits.incrementAndGet();
+			if (!permits.tryAcquire(timeout, unit)) {
+				timeouts.incrementAndGet();
+				return null;
+			}
+		}
+		return take();
+	}
+
+	private Kryo take () {
+		borrows.incrementAndGet();
+		Kryo kryo = queue.poll();
+		if (kryo == null) {
+			try {
+				kryo = factory.create();
+			} catch (RuntimeException ex) {
+				permits.release();
+				throw ex;
+			}
+			created.incrementAndGet();
+		}
+		borrowed.add(kryo);
+		return kryo;
+	}
+
+	/** Returns an instance to the pool.
+	 * @throws IllegalArgumentException if the instance is not currently borrowed from this pool. */
+	public void release (Kryo kryo) {
+		if (!borrowed.remove(kryo)) throw new IllegalArgumentException("kryo is not borrowed from this pool: " + kryo);
+		queue.offer(kryo);
+		permits.release();
+	}
+
+	/** Returns true if the instance was borrowed from this pool and has not been released. */
+	public boolean isBorrowed (Kryo kryo) {
+		return borrowed.contains(kryo);
+	}
+
+	public <T> T run (KryoCallback<T> callback) {
+		Kryo kryo = borrow();
+		try {
+			return callback.execute(kryo);
+		} finally {
+			release(kryo);
+		}
+	}
+
+	/** Returns the maximum number of instances that can be borrowed at the same time. */
+	public int getMaxSize () {
+		return maxSize;
+	}
+
+	/** Returns the number of instances that are currently borrowed. */
+	public int getBorrowedCount () {
+		return maxSize - permits.availablePermits();
+	}
+
+	/** Returns the number of instances in the pool that are not borrowed. */
+	public int getIdleCount () {
+		return queue.size();
+	}
+
+	/** Returns the number of instances the factory has created. */
+	public int getCreatedCount () {
+		return created.get();
+	}
+
+	/** Returns the number of times an instance was borrowed. */
+	public long getBorrowCount () {
+		return borrows.get();
+	}
+
+	/** Returns the number of times a borrow had to wait for an instance to be released. */
+	public long getWaitCount () {
+		return waits.get();
+	}
+
+	/** Returns the number of times a borrow with a timeout returned null. */
+	public long getTimeoutCount () {
+		return timeouts.get();
+	}
+
+	/** Returns the number of threads waiting to borrow an instance. This is an estimate. */
+	public int getWaitingCount () {
+		return permits.getQueueLength();
+	}
+
+	public void clear () {
+		queue.clear();
+	}
+}
@@ -0,0 +1,172 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** A thread safe pool of byte arrays and direct {@link ByteBuffer}s, so buffers for {@link com.esotericsoftware.kryo.io.Input}
+ * and {@link com.esotericsoftware.kryo.io.Output} can be reused rather than allocated for each message. Buffers are kept in size
+ * classes that are powers of two between the minimum and maximum buffer size. A buffer is taken from the smallest class that is
+ * large enough, so it may be larger than requested. Buffers larger than the maximum buffer size are never pooled, so a buffer
+ * that grew large is dropped on release rather than kept. At most maxBuffersPerSize buffers are kept in each class.
+ * @see PooledStreamFactory */
+public class BufferPool {
+
+	private final int minBufferSize, maxBufferSize, maxBuffersPerSize;
+	private final int minShift;
+	private final Queue<byte[]>[] arrays;
+	private final Queue<ByteBuffer>[] directBuffers;
+	private final AtomicIntegerArray arrayCounts, directCounts;
+
+	/** Creates a pool with a minimum buffer size of 256, a maximum buffer size of 1MB and at most 32 buffers of each size. */
+	public BufferPool () {
+		this(256, 1024 * 1024, 32);
+	}
+
+	/** @param minBufferSize The smallest buffer that is handed out, rounded up to a power of two.
+	 * @param maxBufferSize The largest buffer that is pooled, rounded up to a power of two.
+	 * @param maxBuffersPerSize The maximum number of byte arrays and of direct buffers kept for each size. */
+	public BufferPool (int minBufferSize, int maxBufferSize, int maxBuffersPerSize) {
+		if (minBufferSize < 1) throw new IllegalArgumentException("minBufferSize must be > 0: " + minBufferSize);
+		if (maxBufferSize < minBufferSize)
+			throw new IllegalArgumentException("maxBufferSize cannot be < minBufferSize: " + maxBufferSize);
+		if (maxBufferSize > 1 << 30) throw new IllegalArgumentException("maxBufferSize cannot be > 2^30: " + maxBufferSize);
+		if (maxBuffersPerSize < 0) throw new IllegalArgumentException("maxBuffersPerSize cannot be < 0: " + maxBuffersPerSize);
+		minShift = 32 - Integer.numberOfLeadingZeros(minBufferSize - 1);
+		this.minBufferSize = 1 << minShift;
+		int maxShift = 32 - Integer.numberOfLeadingZeros(maxBufferSize - 1);
+		this.maxBufferSize = 1 << maxShift;
+		this.maxBuffersPerSize = maxBuffersPerSize;
+		int sizes = maxShift - minShift + 1;
+		arrays = new Queue[sizes];
+		directBuffers = new Queue[sizes];
+		for (int i = 0; i < sizes; i++) {
+			arrays[i] = new ConcurrentLinkedQueue();
+			directBuffers[i] = new ConcurrentLinkedQueue();
+		}
+		arrayCounts = new AtomicIntegerArray(sizes);
+		directCounts = new AtomicIntegerArray(sizes);
+	}
+
+	/** Returns a byte array with a length of at least the specified size. The contents of the array are undefined. */
+	public byte[] acquire (int size) {
+		if (size < 0) throw new IllegalArgumentException("size cannot be < 0: " + size);
+		if (size > maxBufferSize) return new byte[size];
+		int index = indexFor(size);
+		byte[] buffer = arrays[index].poll();
+		if (buffer == null) return new byte[minBufferSize << index];
+		arrayCounts.decrementAndGet(index);
+		return buffer;
+	}
+
+	/** Returns the byte array to the pool. It is dropped if it is larger than the maximum buffer size, smaller than the minimum
+	 * buffer size, or if enough arrays of its size are already pooled. The array must not be used after it is released. */
+	public void release (byte[] buffer) {
+		if (buffer == null) throw new IllegalArgumentException("buffer cannot be null.");
+		int index = indexOf(buffer.length);
+		if (index == -1) return;
+		if (arrayCounts.incrementAndGet(index) > maxBuffersPerSize) {
+			arrayCounts.decrementAndGet(index);
+			return;
+		}
+		arrays[index].offer(buffer);
+	}
+
+	/** Returns a cleared direct buffer with a capacity of at least the specified size and big endian byte order. The contents of
+	 * the buffer are undefined. */
+	public ByteBuffer acquireDirect (int size) {
+		if (size < 0) throw new IllegalArgumentException("size cannot be < 0: " + size);
+		if (size > maxBufferSize) return ByteBuffer.allocateDirect(size);
+		int index = indexFor(size);
+		ByteBuffer buffer = directBuffers[index].poll();
+		if (buffer == null) return ByteBuffer.allocateDirect(minBufferSize << index);
+		directCounts.decrementAndGet(index);
+		buffer.clear();
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		return buffer;
+	}
+
+	/** Returns the direct buffer to the pool. It is dropped if it is not direct, is read only, is larger than the maximum buffer
+	 * size, smaller than the minimum buffer size, or if enough buffers of its size are already pooled. The buffer must not be
+	 * used after it is released. */
+	public void releaseDirect (ByteBuffer buffer) {
+		if (buffer == null) throw new IllegalArgumentException("buffer cannot be null.");
+		if (!buffer.isDirect() || buffer.isReadOnly()) return;
+		int index = indexOf(buffer.capacity());
+		if (index == -1) return;
+		if (directCounts.incrementAndGet(index) > maxBuffersPerSize) {
+			directCounts.decrementAndGet(index);
+			return;
+		}
+		directBuffers[index].offer(buffer);
+	}
+
+	/** Returns the index of the smallest size class that can hold the size. */
+	private int indexFor (int size) {
+		if (size <= minBufferSize) return 0;
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - minShift;
+	}
+
+	/** Returns the index of the largest size class that a buffer with the capacity can be used for, or -1. */
+	private int indexOf (int capacity) {
+		if (capacity < minBufferSize || capacity > maxBufferSize) return -1;
+		return 31 - Integer.numberOfLeadingZeros(capacity) - minShift;
+	}
+
+	/** Drops all pooled buffers. */
+	public void clear () {
+		for (int i = 0, n = arrays.length; i < n; i++) {
+			while (arrays[i].poll() != null)
+				arrayCounts.decrementAndGet(i);
+			while (directBuffers[i].poll() != null)
+				directCounts.decrementAndGet(i);
+		}
+	}
+
+	/** Returns the number of byte arrays currently pooled. */
+	public int getPooledCount () {
+		int count = 0;
+		for (int i = 0, n = arrays.length; i < n; i++)
+			count += arrays[i].size();
+		return count;
+	}
+
+	/** Returns the number of direct buffers currently pooled. */
+	public int getPooledDirectCount () {
+		int count = 0;
+		for (int i = 0, n = directBuffers.length; i < n; i++)
+			count += directBuffers[i].size();
+		return count;
+	}
+
+	/** Returns the smallest buffer size that is handed out. */
+	public int getMinBufferSize () {
+		return minBufferSize;
+	}
+
+	/** Returns the largest buffer size that is pooled. */
+	public int getMaxBufferSize () {
+		return maxBufferSize;
+	}
+}
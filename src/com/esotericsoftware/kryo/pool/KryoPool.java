@@ -74,6 +74,9 @@ public interface KryoPool {
 		private final KryoFactory factory;
 		private Queue<Kryo> queue = new ConcurrentLinkedQueue<Kryo>();
 		private boolean softReferences;
+		private boolean striped;
+		private int maxSize;
+		private BufferPool bufferPool;
 
 		public Builder (KryoFactory factory) {
 			if (factory == null) {
@@ -98,15 +101,59 @@ public interface KryoPool {
 			return this;
 		}
 
+		/** Put a slot per stripe in front of the queue, selected by thread id, so a thread usually gets back the kryo instance it
+		 * released last with a single CAS and threads don't contend on the queue (by default disabled). */
+		public Builder striped () {
+			striped = true;
+			return this;
+		}
+
+		/** Limit the number of kryo instances that can be borrowed at the same time, a {@link BoundedKryoPool} is built (by default
+		 * there's no limit). */
+		public Builder maxSize (int maxSize) {
+			if (maxSize < 1) {
+				throw new IllegalArgumentException("maxSize must be > 0");
+			}
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/** Give each kryo instance created by the factory a {@link PooledStreamFactory} that takes buffers from the buffer pool, so
+		 * {@link PooledStreamFactory#run(KryoPool, KryoStreamCallback)} reuses an Input and Output for each instance (by default
+		 * disabled). */
+		public Builder bufferPool (BufferPool bufferPool) {
+			if (bufferPool == null) {
+				throw new IllegalArgumentException("bufferPool must not be null");
+			}
+			this.bufferPool = bufferPool;
+			return this;
+		}
+
 		/** Build the pool. */
 		public KryoPool build () {
-			Queue<Kryo> q = softReferences ? new SoftReferenceQueue(queue) : queue;
+			KryoFactory factory = this.factory;
+			if (bufferPool != null) {
+				final KryoFactory kryoFactory = factory;
+				final BufferPool bufferPool = this.bufferPool;
+				factory = new KryoFactory() {
+					public Kryo create () {
+						Kryo kryo = kryoFactory.create();
+						kryo.setStreamFactory(new PooledStreamFactory(bufferPool, kryo.getStreamFactory()));
+						return kryo;
+					}
+				};
+			}
+			Queue q = striped ? new StripedQueue(queue) : queue;
+			if (softReferences) q = new SoftReferenceQueue(q);
+			if (maxSize > 0) return new BoundedKryoPool(factory, q, maxSize);
 			return new KryoPoolQueueImpl(factory, q);
 		}
 
 		@Override
 		public String toString () {
-			return getClass().getName() + "[queue.class=" + queue.getClass() + ", softReferences=" + softReferences + "]";
+			return getClass().getName() + "[queue.class=" + queue.getClass() + ", softReferences=" + softReferences
+				+ (striped ? ", striped" : "") + (maxSize > 0 ? ", maxSize=" + maxSize : "")
+				+ (bufferPool != null ? ", bufferPool" : "") + "]";
 		}
 	}
 
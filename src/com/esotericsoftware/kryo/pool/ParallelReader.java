@@ -0,0 +1,229 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.RecordFileReader;
+
+/** Deserializes independent records in parallel using a {@link ForkJoinPool}. The records are split into batches and each batch
+ * is read with a {@link Kryo} instance from a {@link KryoPool}. The results are returned in the order of the records.
+ * <p>
+ * Records can be read from a record file written by {@link com.esotericsoftware.kryo.io.RecordFileWriter} or from a length
+ * delimited stream, see {@link #readDelimited(Input)}. */
+public class ParallelReader {
+	private final KryoPool pool;
+	private final ForkJoinPool forkJoinPool;
+	private int batchSize = 1024;
+	private int maxPendingBatches;
+
+	public ParallelReader (KryoPool pool, ForkJoinPool forkJoinPool) {
+		if (pool == null) throw new IllegalArgumentException("pool cannot be null.");
+		if (forkJoinPool == null) throw new IllegalArgumentException("forkJoinPool cannot be null.");
+		this.pool = pool;
+		this.forkJoinPool = forkJoinPool;
+		maxPendingBatches = forkJoinPool.getParallelism() * 2;
+	}
+
+	/** Sets the maximum number of records read by a single task. Default is 1024. */
+	public void setBatchSize (int batchSize) {
+		if (batchSize < 1) throw new IllegalArgumentException("batchSize must be > 0: " + batchSize);
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize () {
+		return batchSize;
+	}
+
+	/** Sets the maximum number of batches {@link #readDelimited(Input)} has submitted that are not yet deserialized. When the
+	 * limit is reached, the next batch is not read from the input until the oldest batch is done, which bounds the bytes held in
+	 * memory. Default is twice the parallelism of the ForkJoinPool. */
+	public void setMaxPendingBatches (int maxPendingBatches) {
+		if (maxPendingBatches < 1) throw new IllegalArgumentException("maxPendingBatches must be > 0: " + maxPendingBatches);
+		this.maxPendingBatches = maxPendingBatches;
+	}
+
+	public int getMaxPendingBatches () {
+		return maxPendingBatches;
+	}
+
+	/** Reads all the records in a record file. Each task reads its records using its own {@link RecordFileReader}. */
+	public List<Object> read (File file) throws KryoException {
+		// The Kryo is only needed to open the index, so it is released before the tasks borrow from a possibly bounded pool.
+		Kryo kryo = pool.borrow();
+		RecordFileReader reader;
+		try {
+			reader = new RecordFileReader(kryo, file);
+		} finally {
+			pool.release(kryo);
+		}
+		try {
+			return read(reader, 0, reader.size());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Reads the records in a record file from start, inclusive, to end, exclusive. The specified reader is used for its index,
+	 * each task reads its records using its own {@link RecordFileReader}. */
+	public List<Object> read (RecordFileReader reader, long start, long end) throws KryoException {
+		if (start < 0 || start > end || end > reader.size())
+			throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", size: " + reader.size());
+		if (end - start > Integer.MAX_VALUE) throw new KryoException("Too many records: " + (end - start));
+		Object[] results = new Object[(int)(end - start)];
+		invoke(new RecordFileBatch(reader, start, results), results.length);
+		return Arrays.asList(results);
+	}
+
+	/** Reads all the records from the input until the end of the input is reached. Each record is its length in bytes, written
+	 * with {@link com.esotericsoftware.kryo.io.Output#writeVarInt(int, boolean)} with optimizePositive true, followed by an
+	 * object written with {@link Kryo#writeClassAndObject(com.esotericsoftware.kryo.io.Output, Object)}, as written by
+	 * {@link com.esotericsoftware.kryo.io.KryoMessageWriter}. The bytes of the records are read on the calling thread in batches
+	 * of the {@link #setBatchSize(int) batch size}. Each batch is deserialized by a task as soon as it is read, while the next
+	 * batch is read, and at most {@link #setMaxPendingBatches(int) max pending batches} are submitted at once. */
+	public List<Object> readDelimited (Input input) throws KryoException {
+		ArrayList<Object> results = new ArrayList();
+		ArrayDeque<ForkJoinTask> pending = new ArrayDeque();
+		ArrayDeque<Object[]> pendingResults = new ArrayDeque();
+		try {
+			while (!input.eof()) {
+				ArrayList<byte[]> records = new ArrayList(batchSize);
+				while (records.size() < batchSize && !input.eof())
+					records.add(input.readBytes(input.readVarInt(true)));
+				if (pending.size() == maxPendingBatches) {
+					pending.removeFirst().join();
+					results.addAll(Arrays.asList(pendingResults.removeFirst()));
+				}
+				Object[] batchResults = new Object[records.size()];
+				pending.addLast(forkJoinPool.submit(new ReadTask(new BytesBatch(records, batchResults), pool, batchSize, 0,
+					batchResults.length)));
+				pendingResults.addLast(batchResults);
+			}
+			while (!pending.isEmpty()) {
+				pending.removeFirst().join();
+				results.addAll(Arrays.asList(pendingResults.removeFirst()));
+			}
+		} finally {
+			for (ForkJoinTask task : pending)
+				task.cancel(false);
+		}
+		return results;
+	}
+
+	/** Deserializes records that were each written with
+	 * {@link Kryo#writeClassAndObject(com.esotericsoftware.kryo.io.Output, Object)}. */
+	public List<Object> read (List<byte[]> records) throws KryoException {
+		Object[] results = new Object[records.size()];
+		invoke(new BytesBatch(records, results), results.length);
+		return Arrays.asList(results);
+	}
+
+	private void invoke (Batch batch, int count) {
+		forkJoinPool.invoke(new ReadTask(batch, pool, batchSize, 0, count));
+	}
+
+	/** Reads the records from start, inclusive, to end, exclusive, into the results. */
+	static private interface Batch {
+		public void read (Kryo kryo, int start, int end);
+	}
+
+	static private class RecordFileBatch implements Batch {
+		private final RecordFileReader reader;
+		private final long offset;
+		private final Object[] results;
+
+		RecordFileBatch (RecordFileReader reader, long offset, Object[] results) {
+			this.reader = reader;
+			this.offset = offset;
+			this.results = results;
+		}
+
+		public void read (Kryo kryo, int start, int end) {
+			RecordFileReader batchReader = new RecordFileReader(reader, kryo);
+			try {
+				batchReader.seek(offset + start);
+				for (int i = start; i < end; i++)
+					results[i] = batchReader.readNext();
+			} finally {
+				batchReader.close();
+			}
+		}
+	}
+
+	static private class BytesBatch implements Batch {
+		private final List<byte[]> records;
+		private final Object[] results;
+
+		BytesBatch (List<byte[]> records, Object[] results) {
+			this.records = records;
+			this.results = results;
+		}
+
+		public void read (Kryo kryo, int start, int end) {
+			Input input = new Input();
+			for (int i = start; i < end; i++) {
+				input.setBuffer(records.get(i));
+				results[i] = kryo.readClassAndObject(input);
+			}
+		}
+	}
+
+	/** Splits a range of records in half until it is no larger than the batch size, then reads the records with a pooled Kryo. A
+	 * Kryo is only held while reading a batch, never while waiting for other tasks. */
+	static private class ReadTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Batch batch;
+		private final KryoPool pool;
+		private final int batchSize, start, end;
+
+		ReadTask (Batch batch, KryoPool pool, int batchSize, int start, int end) {
+			this.batch = batch;
+			this.pool = pool;
+			this.batchSize = batchSize;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute () {
+			if (end - start <= batchSize) {
+				Kryo kryo = pool.borrow();
+				try {
+					batch.read(kryo, start, end);
+				} finally {
+					pool.release(kryo);
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new ReadTask(batch, pool, batchSize, start, middle), new ReadTask(batch, pool, batchSize, middle, end));
+		}
+	}
+}
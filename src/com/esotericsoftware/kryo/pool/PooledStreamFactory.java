@@ -0,0 +1,282 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.StreamFactory;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultStreamFactory;
+
+/** StreamFactory which provides Inputs and Outputs whose buffers are taken from a {@link BufferPool}. The buffers are returned
+ * to the pool with {@link #release(Input)} and {@link #release(Output)}. Inputs and Outputs for a given byte array are created
+ * by the delegate factory as usual.
+ * <p>
+ * Pooled Inputs and Outputs are created uninitialized by the delegate and then given a buffer. When the delegate creates a
+ * {@link ByteBufferInput} or {@link ByteBufferOutput}, it is given a pooled direct ByteBuffer, otherwise a pooled byte array.
+ * <p>
+ * The factory also holds an Input and Output that are reused by {@link #run(KryoPool, KryoStreamCallback)}. After each run the
+ * Output's buffer is kept if it is no larger than the {@link #setTrimSize(int) trim size}, otherwise it is returned to the
+ * buffer pool and replaced with one of {@link #DEFAULT_BUFFER_SIZE}, so a single large message does not pin a large buffer. An
+ * instance must only be used by one Kryo instance. Can be set for pooled Kryo instances using
+ * {@link KryoPool.Builder#bufferPool(BufferPool)}. */
+public class PooledStreamFactory implements StreamFactory {
+	/** The buffer size used for Inputs and Outputs created for an InputStream or OutputStream without a size, and for the reused
+	 * Input and Output. */
+	static public final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private final BufferPool bufferPool;
+	private final StreamFactory delegate;
+	private int trimSize = 64 * 1024;
+	private Input input;
+	private Output output;
+	private byte[] inputBuffer;
+	private ByteBuffer inputByteBuffer;
+
+	/** Creates Inputs and Outputs using a {@link DefaultStreamFactory}. */
+	public PooledStreamFactory (BufferPool bufferPool) {
+		this(bufferPool, new DefaultStreamFactory());
+	}
+
+	/** @param delegate Creates the Inputs and Outputs, which are given pooled buffers. */
+	public PooledStreamFactory (BufferPool bufferPool, StreamFactory delegate) {
+		if (bufferPool == null) throw new IllegalArgumentException("bufferPool cannot be null.");
+		if (delegate == null) throw new IllegalArgumentException("delegate cannot be null.");
+		this.bufferPool = bufferPool;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Input getInput () {
+		return delegate.getInput();
+	}
+
+	/** Creates an Input with a pooled buffer, which may be larger than the buffer size. */
+	@Override
+	public Input getInput (int bufferSize) {
+		Input input = delegate.getInput();
+		if (input instanceof ByteBufferInput) {
+			ByteBuffer buffer = bufferPool.acquireDirect(bufferSize);
+			buffer.limit(0);
+			((ByteBufferInput)input).setBuffer(buffer);
+		} else
+			input.setBuffer(bufferPool.acquire(bufferSize), 0, 0);
+		return input;
+	}
+
+	@Override
+	public Input getInput (byte[] buffer) {
+		return delegate.getInput(buffer);
+	}
+
+	@Override
+	public Input getInput (byte[] buffer, int offset, int count) {
+		return delegate.getInput(buffer, offset, count);
+	}
+
+	@Override
+	public Input getInput (InputStream inputStream) {
+		return getInput(inputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Creates an Input with a pooled buffer, which may be larger than the buffer size. */
+	@Override
+	public Input getInput (InputStream inputStream, int bufferSize) {
+		Input input = getInput(bufferSize);
+		input.setInputStream(inputStream);
+		return input;
+	}
+
+	@Override
+	public Output getOutput () {
+		return delegate.getOutput();
+	}
+
+	/** Creates an Output with a pooled buffer that does not grow. The pooled buffer may be larger than the buffer size, as the
+	 * buffer pool rounds sizes up, and the Output can hold as many bytes as the pooled buffer. */
+	@Override
+	public Output getOutput (int bufferSize) {
+		Output output = delegate.getOutput();
+		if (output instanceof ByteBufferOutput) {
+			ByteBuffer buffer = bufferPool.acquireDirect(bufferSize);
+			((ByteBufferOutput)output).setBuffer(buffer, buffer.capacity());
+		} else {
+			byte[] buffer = bufferPool.acquire(bufferSize);
+			output.setBuffer(buffer, buffer.length);
+		}
+		return output;
+	}
+
+	/** Creates an Output with a pooled buffer, which may be larger than the buffer size. If the pooled buffer would be larger than
+	 * the maxBufferSize, the Output is created by the delegate without a pooled buffer. */
+	@Override
+	public Output getOutput (int bufferSize, int maxBufferSize) {
+		Output output = delegate.getOutput();
+		if (output instanceof ByteBufferOutput) {
+			ByteBuffer buffer = bufferPool.acquireDirect(bufferSize);
+			if (maxBufferSize != -1 && buffer.capacity() > maxBufferSize) {
+				bufferPool.releaseDirect(buffer);
+				return delegate.getOutput(bufferSize, maxBufferSize);
+			}
+			((ByteBufferOutput)output).setBuffer(buffer, maxBufferSize);
+			return output;
+		}
+		byte[] buffer = bufferPool.acquire(bufferSize);
+		if (maxBufferSize != -1 && buffer.length > maxBufferSize) {
+			bufferPool.release(buffer);
+			return delegate.getOutput(bufferSize, maxBufferSize);
+		}
+		output.setBuffer(buffer, maxBufferSize);
+		return output;
+	}
+
+	@Override
+	public Output getOutput (byte[] buffer) {
+		return delegate.getOutput(buffer);
+	}
+
+	@Override
+	public Output getOutput (byte[] buffer, int maxBufferSize) {
+		return delegate.getOutput(buffer, maxBufferSize);
+	}
+
+	@Override
+	public Output getOutput (OutputStream outputStream) {
+		return getOutput(outputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/** Creates an Output with a pooled buffer, which may be larger than the buffer size. */
+	@Override
+	public Output getOutput (OutputStream outputStream, int bufferSize) {
+		Output output = getOutput(bufferSize, -1);
+		output.setOutputStream(outputStream);
+		return output;
+	}
+
+	/** Returns the Input's buffer to the buffer pool. The Input must have been created with a pooled buffer by this factory, its
+	 * buffer must not have been replaced, and it must not be used afterward. */
+	public void release (Input input) {
+		if (input instanceof ByteBufferInput)
+			bufferPool.releaseDirect(((ByteBufferInput)input).getByteBuffer());
+		else
+			bufferPool.release(input.getBuffer());
+	}
+
+	/** Returns the Output's buffer to the buffer pool. The Output must have been created with a pooled buffer by this factory, its
+	 * buffer must not have been replaced other than by the Output growing it, and it must not be used afterward. When the Output
+	 * grows, it replaces the pooled buffer with a new, larger one and the pooled buffer is left to the garbage collector, so only
+	 * the larger buffer is returned to the pool. An Output created with a maximum buffer size no larger than the pooled buffer,
+	 * such as one from {@link #getOutput(int)}, never grows. */
+	public void release (Output output) {
+		if (output instanceof ByteBufferOutput)
+			bufferPool.releaseDirect(((ByteBufferOutput)output).getByteBuffer());
+		else
+			bufferPool.release(output.getBuffer());
+	}
+
+	/** Borrows a kryo instance from the pool and runs the callback with it and an Input and Output. If the instance uses a
+	 * PooledStreamFactory, eg when the pool was built with a {@link KryoPool.Builder#bufferPool(BufferPool) buffer pool}, the
+	 * factory's reused Input and Output are provided, otherwise a new Input and Output are created. */
+	static public <T> T run (KryoPool pool, KryoStreamCallback<T> callback) {
+		Kryo kryo = pool.borrow();
+		try {
+			StreamFactory streamFactory = kryo.getStreamFactory();
+			if (streamFactory instanceof PooledStreamFactory) return ((PooledStreamFactory)streamFactory).run(kryo, callback);
+			return callback.execute(kryo, streamFactory.getInput(DEFAULT_BUFFER_SIZE),
+				streamFactory.getOutput(DEFAULT_BUFFER_SIZE, -1));
+		} finally {
+			pool.release(kryo);
+		}
+	}
+
+	/** Runs the callback with the reused Input and Output, which are reset afterward. */
+	<T> T run (Kryo kryo, KryoStreamCallback<T> callback) {
+		if (input == null) {
+			input = getInput(DEFAULT_BUFFER_SIZE);
+			if (input instanceof ByteBufferInput)
+				inputByteBuffer = ((ByteBufferInput)input).getByteBuffer();
+			else
+				inputBuffer = input.getBuffer();
+			output = getOutput(DEFAULT_BUFFER_SIZE, -1);
+		}
+		try {
+			return callback.execute(kryo, input, output);
+		} finally {
+			// Restore the Input's buffer, which the callback may have replaced with the bytes to read.
+			if (inputByteBuffer != null) {
+				inputByteBuffer.clear();
+				inputByteBuffer.limit(0);
+				((ByteBufferInput)input).setBuffer(inputByteBuffer);
+			} else
+				input.setBuffer(inputBuffer, 0, 0);
+			if (output instanceof ByteBufferOutput)
+				trimDirect((ByteBufferOutput)output);
+			else
+				trim(output);
+		}
+	}
+
+	private void trim (Output output) {
+		byte[] buffer = output.getBuffer();
+		if (buffer.length > trimSize) {
+			bufferPool.release(buffer);
+			buffer = bufferPool.acquire(DEFAULT_BUFFER_SIZE);
+		}
+		output.setBuffer(buffer, -1);
+	}
+
+	private void trimDirect (ByteBufferOutput output) {
+		ByteBuffer buffer = output.getByteBuffer();
+		if (buffer.capacity() > trimSize) {
+			bufferPool.releaseDirect(buffer);
+			buffer = bufferPool.acquireDirect(DEFAULT_BUFFER_SIZE);
+		} else
+			buffer.clear();
+		output.setBuffer(buffer, -1);
+	}
+
+	/** Returns the largest buffer that the reused Output keeps after a run. */
+	public int getTrimSize () {
+		return trimSize;
+	}
+
+	/** Sets the largest buffer that the reused Output keeps after a run. Larger buffers are returned to the buffer pool (default
+	 * 65536). */
+	public void setTrimSize (int trimSize) {
+		if (trimSize < 0) throw new IllegalArgumentException("trimSize cannot be < 0: " + trimSize);
+		this.trimSize = trimSize;
+	}
+
+	public BufferPool getBufferPool () {
+		return bufferPool;
+	}
+
+	@Override
+	public void setKryo (Kryo kryo) {
+		delegate.setKryo(kryo);
+	}
+
+}
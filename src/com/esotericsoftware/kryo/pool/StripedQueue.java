@@ -0,0 +1,153 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** A queue with a slot per stripe in front of a shared delegate queue. Each thread uses the slot selected by its thread id, so
+ * a thread that releases and then borrows gets the same instance back with a single CAS and threads on different stripes don't
+ * contend. Slots are not tied to cores or carrier threads, so short lived virtual threads land on slots at random. When the
+ * slot is empty or taken, the delegate is used. Methods that look at all elements check the slots and then
+ * the delegate, and {@link #iterator()} iterates over a snapshot.
+ *
+ * @param <E> Kryo, or a reference to Kryo when combined with soft references. */
+class StripedQueue<E> extends AbstractQueue<E> {
+
+	private final Queue<E> delegate;
+	private final AtomicReferenceArray<E> slots;
+	private final int mask;
+
+	/** Uses a stripe count of twice the number of processors, rounded up to a power of two. */
+	public StripedQueue (Queue<E> delegate) {
+		this(delegate, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	public StripedQueue (Queue<E> delegate, int stripes) {
+		if (stripes < 1) throw new IllegalArgumentException("stripes must be > 0: " + stripes);
+		this.delegate = delegate;
+		int size = Integer.highestOneBit(stripes);
+		if (size < stripes) size <<= 1;
+		slots = new AtomicReferenceArray(size);
+		mask = size - 1;
+	}
+
+	private int index () {
+		long id = Thread.currentThread().getId();
+		int hash = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	public E poll () {
+		int index = index();
+		E e = slots.get(index);
+		if (e != null && slots.compareAndSet(index, e, null)) return e;
+		return delegate.poll();
+	}
+
+	public boolean offer (E e) {
+		int index = index();
+		if (slots.get(index) == null && slots.compareAndSet(index, null, e)) return true;
+		return delegate.offer(e);
+	}
+
+	public boolean add (E e) {
+		return offer(e);
+	}
+
+	public int size () {
+		int size = delegate.size();
+		for (int i = 0, n = slots.length(); i < n; i++)
+			if (slots.get(i) != null) size++;
+		return size;
+	}
+
+	public boolean isEmpty () {
+		return size() == 0;
+	}
+
+	public void clear () {
+		for (int i = 0, n = slots.length(); i < n; i++)
+			slots.set(i, null);
+		delegate.clear();
+	}
+
+	@Override
+	public String toString () {
+		return getClass().getSimpleName() + "[stripes=" + slots.length() + ", delegate=" + delegate + "]";
+	}
+
+	public E peek () {
+		E e = slots.get(index());
+		if (e != null) return e;
+		e = delegate.peek();
+		for (int i = 0, n = slots.length(); e == null && i < n; i++)
+			e = slots.get(i);
+		return e;
+	}
+
+	public boolean contains (Object o) {
+		if (o == null) return false;
+		for (int i = 0, n = slots.length(); i < n; i++)
+			if (o.equals(slots.get(i))) return true;
+		return delegate.contains(o);
+	}
+
+	public boolean remove (Object o) {
+		if (o == null) return false;
+		for (int i = 0, n = slots.length(); i < n; i++) {
+			E e = slots.get(i);
+			if (o.equals(e) && slots.compareAndSet(i, e, null)) return true;
+		}
+		return delegate.remove(o);
+	}
+
+	/** Returns an iterator over a snapshot of the slots and the delegate. Removing through the iterator removes the element
+	 * from the queue if it is still there. */
+	public Iterator<E> iterator () {
+		ArrayList<E> snapshot = new ArrayList(slots.length());
+		for (int i = 0, n = slots.length(); i < n; i++) {
+			E e = slots.get(i);
+			if (e != null) snapshot.add(e);
+		}
+		snapshot.addAll(delegate);
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+			private E last;
+
+			public boolean hasNext () {
+				return iterator.hasNext();
+			}
+
+			public E next () {
+				return last = iterator.next();
+			}
+
+			public void remove () {
+				if (last == null) throw new IllegalStateException();
+				StripedQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+}
@@ -39,9 +39,9 @@ import com.esotericsoftware.kryo.io.Output;
  * @author Nathan Sweet <misc@n4te.com> */
 public class CollectionSerializer extends Serializer<Collection> {
 	private boolean elementsCanBeNull = true;
-	private Serializer serializer;
-	private Class elementClass;
-	private Class genericType;
+	Serializer serializer;
+	Class elementClass;
+	Class genericType;
 
 	public CollectionSerializer () {
 	}
@@ -87,16 +87,20 @@ public class CollectionSerializer extends Serializer<Collection> {
 			if (serializer == null) serializer = kryo.getSerializer(genericType);
 			genericType = null;
 		}
+		writeElements(kryo, output, collection, serializer);
+	}
+
+	void writeElements (Kryo kryo, Output output, Iterable elements, Serializer serializer) {
 		if (serializer != null) {
 			if (elementsCanBeNull) {
-				for (Object element : collection)
+				for (Object element : elements)
 					kryo.writeObjectOrNull(output, element, serializer);
 			} else {
-				for (Object element : collection)
+				for (Object element : elements)
 					kryo.writeObject(output, element, serializer);
 			}
 		} else {
-			for (Object element : collection)
+			for (Object element : elements)
 				kryo.writeClassAndObject(output, element);
 		}
 	}
@@ -121,6 +125,11 @@ public class CollectionSerializer extends Serializer<Collection> {
 			}
 			genericType = null;
 		}
+		readElements(kryo, input, collection, length, elementClass, serializer);
+		return collection;
+	}
+
+	void readElements (Kryo kryo, Input input, Collection collection, int length, Class elementClass, Serializer serializer) {
 		if (serializer != null) {
 			if (elementsCanBeNull) {
 				for (int i = 0; i < length; i++)
@@ -133,7 +142,6 @@ public class CollectionSerializer extends Serializer<Collection> {
 			for (int i = 0; i < length; i++)
 				collection.add(kryo.readClassAndObject(input));
 		}
-		return collection;
 	}
 
 	/** Used by {@link #copy(Kryo, Collection)} to create the new object. This can be overridden to customize object creation, eg
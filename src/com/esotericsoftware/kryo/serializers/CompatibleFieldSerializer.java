@@ -21,19 +21,27 @@ package com.esotericsoftware.kryo.serializers;
 
 import static com.esotericsoftware.minlog.Log.*;
 
+import java.util.Arrays;
+
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.InputChunked;
 import com.esotericsoftware.kryo.io.Output;
-import com.esotericsoftware.kryo.io.OutputChunked;
+import com.esotericsoftware.kryo.util.IntMap;
 import com.esotericsoftware.kryo.util.ObjectMap;
 
 /** Serializes objects using direct field assignment, providing both forward and backward compatibility. This means fields can be
  * added or removed without invalidating previously serialized bytes. Changing the type of a field is not supported. Like
  * {@link FieldSerializer}, it can serialize most classes without needing annotations. The forward and backward compatibility
  * comes at a cost: the first time the class is encountered in the serialized bytes, a simple schema is written containing the
- * field name strings. Also, during serialization and deserialization buffers are allocated to perform chunked encoding. This is
- * what enables CompatibleFieldSerializer to skip bytes for fields it does not know about.
+ * field name strings. Also, during serialization and deserialization chunked encoding is performed. This is what enables
+ * CompatibleFieldSerializer to skip bytes for fields it does not know about. The buffers used for chunked encoding are allocated
+ * the first time they are needed and reused by the serializer afterward, one for each level of nesting of objects using the
+ * serializer. Chunked encoding can be replaced by a length prefix, see {@link #setChunkedEncoding(boolean)}.
+ * <p>
+ * When a {@link SchemaStore} is set with {@link #setSchemaStore(Kryo, SchemaStore)}, each schema is written once for the
+ * lifetime of the store and later object graphs write only its id. This suits a connection or stream that sends many small
+ * object graphs. The writer and the reader must both use a schema store.
  * <p>
  * Removing fields when {@link Kryo#setReferences(boolean) references} are enabled can cause compatibility issues. See
  * <a href="https://github.com/EsotericSoftware/kryo/issues/286#issuecomment-74870545">here</a>.
@@ -45,8 +53,21 @@ public class CompatibleFieldSerializer<T> extends FieldSerializer<T> {
 	/* For object with more than BINARY_SEARCH_THRESHOLD fields, use binary search instead of iterative search */
 	private static final int THRESHOLD_BINARY_SEARCH = 32;
 
+	private SkippableFields skippableFields;
+	private CachedField[] writeSchemaFields, readSchemaFields;
+	private Schema writeSchema;
+	private ObjectMap<Schema, CachedField[]> resolvedSchemas;
+
 	public CompatibleFieldSerializer (Kryo kryo, Class type) {
 		super(kryo, type);
+		skippableFields = new SkippableFields(config.isChunkedEncoding());
+	}
+
+	/** Controls how field data is written so it can be skipped when reading. See
+	 * {@link FieldSerializerConfig#setChunkedEncoding(boolean)}. */
+	public void setChunkedEncoding (boolean chunkedEncoding) {
+		config.setChunkedEncoding(chunkedEncoding);
+		skippableFields = new SkippableFields(chunkedEncoding);
 	}
 
 	public void write (Kryo kryo, Output output, T object) {
@@ -54,16 +75,22 @@ public class CompatibleFieldSerializer<T> extends FieldSerializer<T> {
 		ObjectMap context = kryo.getGraphContext();
 		if (!context.containsKey(this)) {
 			context.put(this, null);
-			if (TRACE) trace("kryo", "Write " + fields.length + " field names.");
-			output.writeVarInt(fields.length, true);
-			for (int i = 0, n = fields.length; i < n; i++)
-				output.writeString(getCachedFieldName(fields[i]));
+			SchemaStore schemaStore = getSchemaStore(kryo);
+			if (schemaStore != null)
+				writeSchemaId(schemaStore, output, fields);
+			else
+				writeFieldNames(output, fields);
 		}
 
-		OutputChunked outputChunked = new OutputChunked(output, 1024);
-		for (int i = 0, n = fields.length; i < n; i++) {
-			fields[i].write(outputChunked, object);
-			outputChunked.endChunks();
+		SkippableFields skippableFields = this.skippableFields;
+		skippableFields.beginWrite(output);
+		try {
+			for (int i = 0, n = fields.length; i < n; i++) {
+				fields[i].write(skippableFields.writeFieldStart(), object);
+				skippableFields.writeFieldEnd();
+			}
+		} finally {
+			skippableFields.endWrite();
 		}
 	}
 
@@ -73,78 +100,263 @@ public class CompatibleFieldSerializer<T> extends FieldSerializer<T> {
 		ObjectMap context = kryo.getGraphContext();
 		CachedField[] fields = (CachedField[])context.get(this);
 		if (fields == null) {
-			int length = input.readVarInt(true);
-			if (TRACE) trace("kryo", "Read " + length + " field names.");
-			String[] names = new String[length];
-			for (int i = 0; i < length; i++)
-				names[i] = input.readString();
-
-			fields = new CachedField[length];
-			CachedField[] allFields = getFields();
-
-			if (length < THRESHOLD_BINARY_SEARCH) {
-				outer:
-				for (int i = 0; i < length; i++) {
-					String schemaName = names[i];
-					for (int ii = 0, nn = allFields.length; ii < nn; ii++) {
-						if (getCachedFieldName(allFields[ii]).equals(schemaName)) {
-							fields[i] = allFields[ii];
-							continue outer;
-						}
+			SchemaStore schemaStore = getSchemaStore(kryo);
+			if (schemaStore != null)
+				fields = readSchemaId(schemaStore, input);
+			else
+				fields = resolveFields(readFieldNames(input));
+			context.put(this, fields);
+		}
+
+		SkippableFields skippableFields = this.skippableFields;
+		skippableFields.beginRead(input);
+		try {
+			boolean hasGenerics = getGenerics() != null;
+			for (int i = 0, n = fields.length; i < n; i++) {
+				CachedField cachedField = fields[i];
+				if (cachedField != null && hasGenerics) {
+					// Generic type used to instantiate this field could have
+					// been changed in the meantime. Therefore take the most
+					// up-to-date definition of a field
+					cachedField = getField(getCachedFieldName(cachedField));
+				}
+				if (cachedField == null) {
+					if (TRACE) trace("kryo", "Skip obsolete field.");
+					skippableFields.skipField();
+					continue;
+				}
+				cachedField.read(skippableFields.readFieldStart(), object);
+				skippableFields.readFieldEnd();
+			}
+		} finally {
+			skippableFields.endRead();
+		}
+		return object;
+	}
+
+	private void writeFieldNames (Output output, CachedField[] fields) {
+		if (TRACE) trace("kryo", "Write " + fields.length + " field names.");
+		output.writeVarInt(fields.length, true);
+		for (int i = 0, n = fields.length; i < n; i++)
+			output.writeString(getCachedFieldName(fields[i]));
+	}
+
+	private String[] readFieldNames (Input input) {
+		int length = input.readVarInt(true);
+		if (TRACE) trace("kryo", "Read " + length + " field names.");
+		String[] names = new String[length];
+		for (int i = 0; i < length; i++)
+			names[i] = input.readString();
+		return names;
+	}
+
+	/** Returns the cached field for each name, or null for names of fields this serializer does not have. */
+	private CachedField[] resolveFields (String[] names) {
+		int length = names.length;
+		CachedField[] fields = new CachedField[length];
+		CachedField[] allFields = getFields();
+
+		if (length < THRESHOLD_BINARY_SEARCH) {
+			outer:
+			for (int i = 0; i < length; i++) {
+				String schemaName = names[i];
+				for (int ii = 0, nn = allFields.length; ii < nn; ii++) {
+					if (getCachedFieldName(allFields[ii]).equals(schemaName)) {
+						fields[i] = allFields[ii];
+						continue outer;
 					}
-					if (TRACE) trace("kryo", "Ignore obsolete field: " + schemaName);
 				}
-			} else {
-				// binary search for schemaName
-				int low, mid, high;
-				int compare;
-				int maxFieldLength = allFields.length;
-				outerBinarySearch:
-				for (int i = 0; i < length; i++) {
-					String schemaName = names[i];
-
-					low = 0;
-					high = maxFieldLength - 1;
-
-					while (low <= high) {
-						mid = (low + high) >>> 1;
-						String midVal = getCachedFieldName(allFields[mid]);
-						compare = schemaName.compareTo(midVal);
-
-						if (compare < 0) {
-							high = mid - 1;
-						} else if (compare > 0) {
-							low = mid + 1;
-						} else {
-							fields[i] = allFields[mid];
-							continue outerBinarySearch;
-						}
+				if (TRACE) trace("kryo", "Ignore obsolete field: " + schemaName);
+			}
+		} else {
+			// binary search for schemaName
+			int low, mid, high;
+			int compare;
+			int maxFieldLength = allFields.length;
+			outerBinarySearch:
+			for (int i = 0; i < length; i++) {
+				String schemaName = names[i];
+
+				low = 0;
+				high = maxFieldLength - 1;
+
+				while (low <= high) {
+					mid = (low + high) >>> 1;
+					String midVal = getCachedFieldName(allFields[mid]);
+					compare = schemaName.compareTo(midVal);
+
+					if (compare < 0) {
+						high = mid - 1;
+					} else if (compare > 0) {
+						low = mid + 1;
+					} else {
+						fields[i] = allFields[mid];
+						continue outerBinarySearch;
 					}
-					if (TRACE) trace("kryo", "Ignore obsolete field: " + schemaName);
 				}
+				if (TRACE) trace("kryo", "Ignore obsolete field: " + schemaName);
 			}
+		}
+		return fields;
+	}
 
-			context.put(this, fields);
+	/** Writes the id of the schema for the fields, followed by the field names if the schema has not been written before. */
+	private void writeSchemaId (SchemaStore schemaStore, Output output, CachedField[] fields) {
+		if (writeSchemaFields != fields) {
+			String[] names = new String[fields.length];
+			for (int i = 0, n = fields.length; i < n; i++)
+				names[i] = getCachedFieldName(fields[i]);
+			writeSchema = new Schema(getType().getName(), names);
+			writeSchemaFields = fields;
+		}
+		int id = schemaStore.getWriteId(writeSchema);
+		if (id != -1) {
+			if (TRACE) trace("kryo", "Write schema id: " + id);
+			output.writeVarInt(id << 1, true);
+			return;
 		}
+		id = schemaStore.addWriteSchema(writeSchema);
+		if (TRACE) trace("kryo", "Write new schema id: " + id);
+		output.writeVarInt(id << 1 | 1, true);
+		writeFieldNames(output, fields);
+	}
 
-		InputChunked inputChunked = new InputChunked(input, 1024);
-		boolean hasGenerics = getGenerics() != null;
-		for (int i = 0, n = fields.length; i < n; i++) {
-			CachedField cachedField = fields[i];
-			if (cachedField != null && hasGenerics) {
-				// Generic type used to instantiate this field could have
-				// been changed in the meantime. Therefore take the most
-				// up-to-date definition of a field
-				cachedField = getField(getCachedFieldName(cachedField));
-			}
-			if (cachedField == null) {
-				if (TRACE) trace("kryo", "Skip obsolete field.");
-				inputChunked.nextChunks();
-				continue;
-			}
-			cachedField.read(inputChunked, object);
-			inputChunked.nextChunks();
+	private CachedField[] readSchemaId (SchemaStore schemaStore, Input input) {
+		int value = input.readVarInt(true);
+		int id = value >>> 1;
+		Schema schema;
+		if ((value & 1) != 0) {
+			if (TRACE) trace("kryo", "Read new schema id: " + id);
+			schema = new Schema(getType().getName(), readFieldNames(input));
+			schemaStore.putReadSchema(id, schema);
+		} else {
+			if (TRACE) trace("kryo", "Read schema id: " + id);
+			schema = schemaStore.getReadSchema(id);
+			if (schema == null) throw new KryoException("Unknown schema id: " + id + " (" + getType().getName() + ")");
+			if (!schema.typeName.equals(getType().getName()))
+				throw new KryoException("Schema id " + id + " is for class " + schema.typeName + ", not: " + getType().getName());
+		}
+		// Resolving the field names is done once per schema, as long as the fields of this serializer don't change. Schemas are
+		// compared by value, so a schema read again in a new session does not add another entry.
+		CachedField[] allFields = getFields();
+		if (readSchemaFields != allFields) {
+			resolvedSchemas = new ObjectMap();
+			readSchemaFields = allFields;
+		}
+		CachedField[] fields = resolvedSchemas.get(schema);
+		if (fields == null) {
+			fields = resolveFields(schema.fieldNames);
+			resolvedSchemas.put(schema, fields);
+		}
+		return fields;
+	}
+
+	/** Sets the schema store used by all CompatibleFieldSerializers for the specified Kryo instance. It is kept in
+	 * {@link Kryo#getContext()}, so it is not cleared when an object graph is complete.
+	 * <p>
+	 * A schema id is assigned as soon as an object using the schema is written. If writing an object graph fails, or the written
+	 * bytes are discarded instead of being sent to the peer, the peer may later receive ids it has never seen. In that case the
+	 * store must be cleared (or replaced) on both sides, as if a new session was started.
+	 * @param schemaStore May be null to write the field names for every object graph (default). */
+	static public void setSchemaStore (Kryo kryo, SchemaStore schemaStore) {
+		if (schemaStore == null)
+			kryo.getContext().remove(SchemaStore.class);
+		else
+			kryo.getContext().put(SchemaStore.class, schemaStore);
+	}
+
+	/** @return May be null. */
+	static public SchemaStore getSchemaStore (Kryo kryo) {
+		return (SchemaStore)kryo.getContext().get(SchemaStore.class);
+	}
+
+	/** The field names for a class, as written by CompatibleFieldSerializer. */
+	static public final class Schema {
+		final String typeName;
+		final String[] fieldNames;
+		private final int hashCode;
+
+		public Schema (String typeName, String[] fieldNames) {
+			if (typeName == null) throw new IllegalArgumentException("typeName cannot be null.");
+			if (fieldNames == null) throw new IllegalArgumentException("fieldNames cannot be null.");
+			this.typeName = typeName;
+			this.fieldNames = fieldNames;
+			hashCode = 31 * typeName.hashCode() + Arrays.hashCode(fieldNames);
+		}
+
+		public String getTypeName () {
+			return typeName;
+		}
+
+		public String[] getFieldNames () {
+			return fieldNames;
+		}
+
+		public int hashCode () {
+			return hashCode;
+		}
+
+		public boolean equals (Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Schema)) return false;
+			Schema other = (Schema)obj;
+			return hashCode == other.hashCode && typeName.equals(other.typeName) && Arrays.equals(fieldNames, other.fieldNames);
+		}
+
+		public String toString () {
+			return typeName + Arrays.toString(fieldNames);
+		}
+	}
+
+	/** Assigns ids to schemas so each schema is only written once. Ids written by the local side and ids read from the remote side
+	 * are separate. A store can be prepopulated with the same schemas on both sides so no field names are ever written.
+	 * @see SessionSchemaStore */
+	static public interface SchemaStore {
+		/** @return The id for a schema that was written before, or -1. */
+		public int getWriteId (Schema schema);
+
+		/** Assigns an id to a schema that is about to be written for the first time. The id is used for all following writes, even
+		 * if the object graph being written is never received by the peer.
+		 * @return A positive id or 0. */
+		public int addWriteSchema (Schema schema);
+
+		/** @return The schema that was read for the id, or null. */
+		public Schema getReadSchema (int id);
+
+		public void putReadSchema (int id, Schema schema);
+	}
+
+	/** A SchemaStore that is populated as schemas are written and read. It should be {@link #clear() cleared} or replaced when a
+	 * new connection or stream is started, so the peer does not receive ids it has never seen. It must also be cleared on both
+	 * sides after a write fails or its bytes are discarded, since schemas written by that graph are remembered as sent. */
+	static public class SessionSchemaStore implements SchemaStore {
+		private final ObjectMap<Schema, Integer> writeIds = new ObjectMap();
+		private final IntMap<Schema> readSchemas = new IntMap();
+		private int nextWriteId;
+
+		public int getWriteId (Schema schema) {
+			Integer id = writeIds.get(schema);
+			return id == null ? -1 : id;
+		}
+
+		public int addWriteSchema (Schema schema) {
+			int id = nextWriteId++;
+			writeIds.put(schema, id);
+			return id;
+		}
+
+		public Schema getReadSchema (int id) {
+			return readSchemas.get(id);
+		}
+
+		public void putReadSchema (int id, Schema schema) {
+			readSchemas.put(id, schema);
+		}
+
+		public void clear () {
+			writeIds.clear();
+			readSchemas.clear();
+			nextWriteId = 0;
 		}
-		return object;
 	}
 }
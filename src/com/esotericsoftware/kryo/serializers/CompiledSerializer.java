@@ -0,0 +1,126 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import com.esotericsoftware.kryo.GenerateSerializer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Base class for serializers generated at compile time by the kryo-processor annotation processor for classes annotated with
+ * {@link GenerateSerializer}. Generated serializers read and write primitive fields inline and use an {@link ObjectFieldCodec}
+ * for other fields, in the same format as {@link FieldSerializer} with its default configuration.
+ * @see Kryo#registerGenerated(Class) */
+public abstract class CompiledSerializer<T> extends Serializer<T> {
+	/** Returns the name of the serializer class generated for the class with the specified name. The serializer is in the same
+	 * package, so it can access package private fields. */
+	static public String getSerializerName (String className) {
+		int index = className.lastIndexOf('.');
+		return className.substring(0, index + 1) + className.substring(index + 1).replace('$', '_') + "KryoSerializer";
+	}
+
+	/** Reads and writes a field that is not a primitive the same way {@link FieldSerializer} does. */
+	static public final class ObjectFieldCodec {
+		private final Class type;
+		private final String name;
+		private final Class valueClass;
+		private final boolean canBeNull, stringField;
+		private Serializer serializer;
+
+		/** @param type The class declaring the field.
+		 * @param fieldType The declared type of the field. */
+		public ObjectFieldCodec (Kryo kryo, Class type, String name, Class fieldType, boolean canBeNull) {
+			this.type = type;
+			this.name = name;
+			this.canBeNull = canBeNull;
+			// Always use the same serializer for this field if the field's class is final.
+			valueClass = kryo.isFinal(fieldType) ? fieldType : null;
+			stringField = fieldType == String.class
+				&& (!kryo.getReferences() || !kryo.getReferenceResolver().useReferences(String.class));
+		}
+
+		public void write (Kryo kryo, Output output, Object value) {
+			if (stringField) {
+				output.writeString((String)value);
+				return;
+			}
+			try {
+				Serializer serializer = this.serializer;
+				if (valueClass == null) {
+					// The concrete type of the field is unknown, write the class first.
+					if (value == null) {
+						kryo.writeClass(output, null);
+						return;
+					}
+					Registration registration = kryo.writeClass(output, value.getClass());
+					serializer = registration.getSerializer();
+					serializer.setGenerics(kryo, null);
+					kryo.writeObject(output, value, serializer);
+				} else {
+					// The concrete type of the field is known, always use the same serializer.
+					if (serializer == null) this.serializer = serializer = kryo.getSerializer(valueClass);
+					serializer.setGenerics(kryo, null);
+					if (canBeNull)
+						kryo.writeObjectOrNull(output, value, serializer);
+					else {
+						if (value == null)
+							throw new KryoException("Field value is null but canBeNull is false: " + name + " (" + type.getName() + ")");
+						kryo.writeObject(output, value, serializer);
+					}
+				}
+			} catch (KryoException ex) {
+				ex.addTrace(name + " (" + type.getName() + ")");
+				throw ex;
+			} catch (RuntimeException runtimeEx) {
+				KryoException ex = new KryoException(runtimeEx);
+				ex.addTrace(name + " (" + type.getName() + ")");
+				throw ex;
+			}
+		}
+
+		public Object read (Kryo kryo, Input input) {
+			if (stringField) return input.readString();
+			try {
+				if (valueClass == null) {
+					Registration registration = kryo.readClass(input);
+					if (registration == null) return null;
+					Serializer serializer = registration.getSerializer();
+					serializer.setGenerics(kryo, null);
+					return kryo.readObject(input, registration.getType(), serializer);
+				}
+				Serializer serializer = this.serializer;
+				if (serializer == null) this.serializer = serializer = kryo.getSerializer(valueClass);
+				serializer.setGenerics(kryo, null);
+				if (canBeNull) return kryo.readObjectOrNull(input, valueClass, serializer);
+				return kryo.readObject(input, valueClass, serializer);
+			} catch (KryoException ex) {
+				ex.addTrace(name + " (" + type.getName() + ")");
+				throw ex;
+			} catch (RuntimeException runtimeEx) {
+				KryoException ex = new KryoException(runtimeEx);
+				ex.addTrace(name + " (" + type.getName() + ")");
+				throw ex;
+			}
+		}
+	}
+}
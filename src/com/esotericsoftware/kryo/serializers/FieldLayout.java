@@ -0,0 +1,151 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.AccessControlException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.esotericsoftware.kryo.RegistrationTable;
+import com.esotericsoftware.kryo.serializers.FieldSerializer.Optional;
+import com.esotericsoftware.kryo.util.IntArray;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.esotericsoftware.kryo.util.Util;
+import com.esotericsoftware.reflectasm.FieldAccess;
+
+/** The fields of a class that a {@link FieldSerializer} can serialize, found by reflection: the non-static fields of the class
+ * and its superclasses that are accessible and not excluded by the configuration, in the order the serializer processes them.
+ * A layout does not depend on a Kryo instance and is immutable, so the serializers of many Kryo instances can use the same
+ * layout rather than each reflecting on the class again, see {@link RegistrationTable}. Fields with an {@link Optional}
+ * annotation are included and excluded by each serializer, because that depends on the
+ * {@link com.esotericsoftware.kryo.Kryo#getContext() context} of its Kryo.
+ * @see FieldSerializer#getFieldLayout() */
+public final class FieldLayout {
+	final Class type;
+	final boolean setFieldsAsAccessible, ignoreSyntheticFields, useMemRegions, useAsm;
+	final Field[] fields;
+	/** The value of each field's {@link Optional} annotation, or null. */
+	final String[] optional;
+	/** True for each field that can be accessed with ReflectASM. */
+	final boolean[] asm;
+	/** Null if ReflectASM is not used. */
+	final FieldAccess access;
+
+	/** Finds the fields of the class with the settings of the configuration that affect which fields are used. */
+	public FieldLayout (Class type, FieldSerializerConfig config) {
+		if (type == null) throw new IllegalArgumentException("type cannot be null.");
+		if (config == null) throw new IllegalArgumentException("config cannot be null.");
+		this.type = type;
+		setFieldsAsAccessible = config.isSetFieldsAsAccessible();
+		ignoreSyntheticFields = config.isIgnoreSyntheticFields();
+		useMemRegions = useMemRegions(config);
+		useAsm = config.isUseAsm();
+
+		// Collect all fields.
+		List<Field> allFields = new ArrayList();
+		if (!type.isInterface()) {
+			for (Class nextClass = type; nextClass != Object.class; nextClass = nextClass.getSuperclass()) {
+				for (Field field : nextClass.getDeclaredFields())
+					if (!Modifier.isStatic(field.getModifiers())) allFields.add(field);
+			}
+		}
+
+		// Sort fields by their offsets.
+		if (useMemRegions) {
+			try {
+				allFields = Arrays.asList((Field[])FieldSerializer.sortFieldsByOffsetMethod.invoke(null, allFields));
+			} catch (Exception e) {
+				throw new RuntimeException("Cannot invoke UnsafeUtil.sortFieldsByOffset()", e);
+			}
+		}
+
+		ArrayList<Field> fields = new ArrayList(allFields.size());
+		for (int i = 0, n = allFields.size(); i < n; i++) {
+			Field field = allFields.get(i);
+			if (field.isSynthetic() && ignoreSyntheticFields) continue;
+			if (!field.isAccessible()) {
+				if (!setFieldsAsAccessible) continue;
+				try {
+					field.setAccessible(true);
+				} catch (AccessControlException ex) {
+					continue;
+				}
+			}
+			fields.add(field);
+		}
+		this.fields = fields.toArray(new Field[fields.size()]);
+
+		optional = new String[this.fields.length];
+		asm = new boolean[this.fields.length];
+		boolean anyAsm = false;
+		for (int i = 0, n = this.fields.length; i < n; i++) {
+			Field field = this.fields[i];
+			Optional annotation = field.getAnnotation(Optional.class);
+			if (annotation != null) optional[i] = annotation.value();
+			// BOZO - Must be public?
+			int modifiers = field.getModifiers();
+			asm[i] = !Modifier.isFinal(modifiers) && Modifier.isPublic(modifiers)
+				&& Modifier.isPublic(field.getType().getModifiers());
+			anyAsm |= asm[i];
+		}
+
+		// Use ReflectASM for any public fields.
+		FieldAccess access = null;
+		if (useAsm && !Util.IS_ANDROID && Modifier.isPublic(type.getModifiers()) && anyAsm) {
+			try {
+				access = FieldAccess.get(type);
+			} catch (RuntimeException ignored) {
+			}
+		}
+		this.access = access;
+	}
+
+	static boolean useMemRegions (FieldSerializerConfig config) {
+		return config.isUseMemRegions() && !config.isUseAsm() && FieldSerializer.unsafeAvailable;
+	}
+
+	/** Returns true if the layout was found with the same settings as the configuration has for the settings that affect which
+	 * fields are used. */
+	public boolean matches (FieldSerializerConfig config) {
+		return setFieldsAsAccessible == config.isSetFieldsAsAccessible() && ignoreSyntheticFields == config.isIgnoreSyntheticFields()
+			&& useMemRegions == useMemRegions(config) && useAsm == config.isUseAsm();
+	}
+
+	/** Returns the transient or non-transient fields, excluding fields with an {@link Optional} annotation whose value is not a key
+	 * in the context. For each field, 1 is added to useAsm if the field can be accessed with ReflectASM, else 0. */
+	List<Field> getFields (boolean transientFields, ObjectMap context, IntArray useAsm) {
+		List<Field> result = new ArrayList(fields.length);
+		for (int i = 0, n = fields.length; i < n; i++) {
+			Field field = fields[i];
+			if (Modifier.isTransient(field.getModifiers()) != transientFields) continue;
+			if (optional[i] != null && !context.containsKey(optional[i])) continue;
+			result.add(field);
+			useAsm.add(asm[i] ? 1 : 0);
+		}
+		return result;
+	}
+
+	public Class getType () {
+		return type;
+	}
+}
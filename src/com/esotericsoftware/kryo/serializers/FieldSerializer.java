@@ -27,10 +27,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
-import java.security.AccessControlException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -38,14 +36,16 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 
+import com.esotericsoftware.kryo.ClassResolver;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.NotNull;
+import com.esotericsoftware.kryo.RegistrationTable;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.util.IntArray;
 import com.esotericsoftware.kryo.util.ObjectMap;
-import com.esotericsoftware.kryo.util.Util;
+import com.esotericsoftware.kryo.util.SharedClassResolver;
 import com.esotericsoftware.reflectasm.FieldAccess;
 
 // BOZO - Make primitive serialization with ReflectASM configurable?
@@ -74,6 +74,7 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 	private CachedField[] fields = new CachedField[0];
 	private CachedField[] transientFields = new CachedField[0];
 	protected HashSet<CachedField> removedFields = new HashSet();
+	private FieldLayout layout;
 	Object access;
 	private FieldSerializerUnsafeUtil unsafeUtil;
 
@@ -89,16 +90,6 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 	/** If set, this serializer tries to use a variable length encoding for int and long fields */
 	private boolean varIntsEnabled;
 
-	/** If set, adjacent primitive fields are written in bulk This flag may only work with Oracle JVMs, because they layout
-	 * primitive fields in memory in such a way that primitive fields are grouped together. This option has effect only when used
-	 * with Unsafe-based FieldSerializer.
-	 * <p>
-	 * FIXME: Not all versions of Sun/Oracle JDK properly work with this option. Disable it for now. Later add dynamic checks to
-	 * see if this feature is supported by a current JDK version.
-	 * </p>
-	*/
-	private boolean useMemRegions = false;
-
 	private boolean hasObjectFields = false;
 
 	static CachedFieldFactory asmFieldFactory;
@@ -185,45 +176,15 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 		IntArray useAsm = new IntArray();
 
 		if (!minorRebuild) {
-			// Collect all fields.
-			List<Field> allFields = new ArrayList();
-			Class nextClass = type;
-			while (nextClass != Object.class) {
-				Field[] declaredFields = nextClass.getDeclaredFields();
-				if (declaredFields != null) {
-					for (Field f : declaredFields) {
-						if (Modifier.isStatic(f.getModifiers())) continue;
-						allFields.add(f);
-					}
-				}
-				nextClass = nextClass.getSuperclass();
-			}
-
+			layout = findFieldLayout();
 			ObjectMap context = kryo.getContext();
-
-			// Sort fields by their offsets
-			if (useMemRegions && !config.isUseAsm() && unsafeAvailable) {
-				try {
-					Field[] allFieldsArray = (Field[])sortFieldsByOffsetMethod.invoke(null, allFields);
-					allFields = Arrays.asList(allFieldsArray);
-				} catch (Exception e) {
-					throw new RuntimeException("Cannot invoke UnsafeUtil.sortFieldsByOffset()", e);
-				}
-			}
-
-			// TODO: useAsm is modified as a side effect, this should be pulled out of buildValidFields
 			// Build a list of valid non-transient fields
-			validFields = buildValidFields(false, allFields, context, useAsm);
+			validFields = layout.getFields(false, context, useAsm);
 			// Build a list of valid transient fields
-			validTransientFields = buildValidFields(true, allFields, context, useAsm);
+			validTransientFields = layout.getFields(true, context, useAsm);
 
 			// Use ReflectASM for any public fields.
-			if (config.isUseAsm() && !Util.IS_ANDROID && Modifier.isPublic(type.getModifiers()) && useAsm.indexOf(1) != -1) {
-				try {
-					access = FieldAccess.get(type);
-				} catch (RuntimeException ignored) {
-				}
-			}
+			access = useAsm.indexOf(1) != -1 ? layout.access : null;
 		} else {
 			// It is a minor rebuild
 			validFields = buildValidFieldsFromCachedFields(fields, useAsm);
@@ -257,6 +218,18 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 		annotationsUtil.processAnnotatedFields(this);
 	}
 
+	/** Returns the layout the cached fields are built from: the current layout if it is still valid for the configuration, else a
+	 * layout from the {@link RegistrationTable} if the Kryo uses one, else a new layout. */
+	private FieldLayout findFieldLayout () {
+		if (layout != null && layout.matches(config)) return layout;
+		ClassResolver classResolver = kryo.getClassResolver();
+		if (classResolver instanceof SharedClassResolver) {
+			FieldLayout layout = ((SharedClassResolver)classResolver).getTable().getFieldLayout(type);
+			if (layout != null && layout.matches(config)) return layout;
+		}
+		return new FieldLayout(type, config);
+	}
+
 	private List<Field> buildValidFieldsFromCachedFields (CachedField[] cachedFields, IntArray useAsm) {
 		ArrayList<Field> fields = new ArrayList<Field>(cachedFields.length);
 		for (CachedField f : cachedFields) {
@@ -266,42 +239,9 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 		return fields;
 	}
 
-	private List<Field> buildValidFields (boolean transientFields, List<Field> allFields, ObjectMap context, IntArray useAsm) {
-		List<Field> result = new ArrayList(allFields.size());
-
-		for (int i = 0, n = allFields.size(); i < n; i++) {
-			Field field = allFields.get(i);
-
-			int modifiers = field.getModifiers();
-			if (Modifier.isTransient(modifiers) != transientFields) continue;
-			if (Modifier.isStatic(modifiers)) continue;
-			if (field.isSynthetic() && config.isIgnoreSyntheticFields()) continue;
-
-			if (!field.isAccessible()) {
-				if (!config.isSetFieldsAsAccessible()) continue;
-				try {
-					field.setAccessible(true);
-				} catch (AccessControlException ex) {
-					continue;
-				}
-			}
-
-			Optional optional = field.getAnnotation(Optional.class);
-			if (optional != null && !context.containsKey(optional.value())) continue;
-
-			result.add(field);
-
-			// BOZO - Must be public?
-			useAsm
-				.add(!Modifier.isFinal(modifiers) && Modifier.isPublic(modifiers) && Modifier.isPublic(field.getType().getModifiers())
-					? 1 : 0);
-		}
-		return result;
-	}
-
 	private void createCachedFields (IntArray useAsm, List<Field> validFields, List<CachedField> cachedFields, int baseIndex) {
 
-		if (config.isUseAsm() || !useMemRegions) {
+		if (!getUseMemRegions()) {
 			for (int i = 0, n = validFields.size(); i < n; i++) {
 				Field field = validFields.get(i);
 				int accessIndex = -1;
@@ -629,6 +569,13 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 		throw new IllegalArgumentException("Field \"" + removeField + "\" not found on class: " + type.getName());
 	}
 
+	/** Returns the fields found by reflection that the {@link #getFields() cached fields} are built from. The layout does not
+	 * depend on the Kryo and can be shared with the serializers of other Kryo instances.
+	 * @return May be null if the class is an interface. */
+	public FieldLayout getFieldLayout () {
+		return layout;
+	}
+
 	/** Get all fields controlled by this FieldSerializer
 	 * @return all fields controlled by this FieldSerializer */
 	public CachedField[] getFields () {
@@ -649,12 +596,28 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 		return kryo;
 	}
 
+	/** Returns the configuration of this serializer. Changing it does not rebuild the {@link #getFields() cached fields}, so the
+	 * setters of this serializer should be used instead. */
+	public FieldSerializerConfig getFieldSerializerConfig () {
+		return config;
+	}
+
 	public boolean getUseAsmEnabled () {
 		return config.isUseAsm();
 	}
 
+	/** Returns true if adjacent primitive fields are copied as blocks of memory.
+	 * @see FieldSerializerConfig#setUseMemRegions(boolean) */
 	public boolean getUseMemRegions () {
-		return useMemRegions;
+		return config.isUseMemRegions() && !config.isUseAsm() && unsafeAvailable;
+	}
+
+	/** Controls whether adjacent primitive fields are copied as blocks of memory. Calling this method resets the
+	 * {@link #getFields() cached fields}.
+	 * @see FieldSerializerConfig#setUseMemRegions(boolean) */
+	public void setUseMemRegions (boolean useMemRegions) {
+		config.setUseMemRegions(useMemRegions);
+		rebuildCachedFields();
 	}
 
 	public boolean getCopyTransient () {
@@ -725,10 +688,19 @@ public class FieldSerializer<T> extends Serializer<T> implements Comparator<Fiel
 			return this.serializer;
 		}
 
+		/** Returns the class set with {@link #setClass(Class)}, or null if the class is written with each value. */
+		public Class getValueClass () {
+			return valueClass;
+		}
+
 		public void setCanBeNull (boolean canBeNull) {
 			this.canBeNull = canBeNull;
 		}
 
+		public boolean getCanBeNull () {
+			return canBeNull;
+		}
+
 		public Field getField () {
 			return field;
 		}
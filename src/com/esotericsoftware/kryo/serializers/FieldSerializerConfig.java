@@ -39,6 +39,10 @@ public class FieldSerializerConfig implements Cloneable {
 	private boolean serializeTransient = false;
 	/** Try to optimize handling of generics for smaller size */
 	private boolean optimizedGenerics = false;
+	/** If set, skippable field data is written with chunked encoding rather than a length prefix */
+	private boolean chunkedEncoding = true;
+	/** If set, adjacent primitive fields are copied as blocks of memory with the Unsafe-based backend */
+	private boolean useMemRegions = false;
 
 	private FieldSerializer.CachedFieldNameStrategy cachedFieldNameStrategy = FieldSerializer.CachedFieldNameStrategy.DEFAULT;
 
@@ -48,7 +52,7 @@ public class FieldSerializerConfig implements Cloneable {
 	}
 
 	@Override
-	protected FieldSerializerConfig clone () {
+	public FieldSerializerConfig clone () {
 		// clone is ok here as we have only primitive fields
 		try {
 			return (FieldSerializerConfig)super.clone();
@@ -110,6 +114,37 @@ public class FieldSerializerConfig implements Cloneable {
 		if (TRACE) trace("kryo.FieldSerializerConfig", "setOptimizedGenerics: " + setOptimizedGenerics);
 	}
 
+	/** Controls how {@link CompatibleFieldSerializer} and annexed {@link TaggedFieldSerializer} fields are written so they can be
+	 * skipped when reading.
+	 * <p>
+	 * <strong>Important:</strong> This setting changes the serialized representation, so that data can be deserialized only if
+	 * this setting is the same as it was for serialization.
+	 * </p>
+	 * @param chunkedEncoding If true, field data is copied through a buffer and written in chunks (default). If false, a 4 byte
+	 *           length is reserved before the field data and patched after the field is written, which avoids the copy and allows
+	 *           unknown fields to be skipped at once. When the Output has an OutputStream or is a
+	 *           {@link com.esotericsoftware.kryo.io.SegmentedOutput}, fields still fall back to chunked encoding because the length
+	 *           can no longer be patched once bytes have been flushed or moved to another segment. */
+	public void setChunkedEncoding (boolean chunkedEncoding) {
+		this.chunkedEncoding = chunkedEncoding;
+		if (TRACE) trace("kryo.FieldSerializerConfig", "setChunkedEncoding: " + chunkedEncoding);
+	}
+
+	/** Controls whether adjacent primitive fields are copied as blocks of memory when the Unsafe-based backend is used. The JVM
+	 * usually lays out the primitive fields declared by a class contiguously, so each block is read and written a long at a time
+	 * instead of one field at a time, on all streams.
+	 * <p>
+	 * <strong>Important:</strong> The blocks contain the in-memory representation of the fields, so data can be deserialized only
+	 * by a JVM with the same field layout and byte order. A layout fingerprint is written before the first occurrence of each
+	 * block in an object graph and a KryoException is thrown when reading data written with a different layout.
+	 * </p>
+	 * @param useMemRegions If true, primitive fields are copied in blocks. If false, each field is read and written separately
+	 *           (default). Has no effect when ASM is used. */
+	public void setUseMemRegions (boolean useMemRegions) {
+		this.useMemRegions = useMemRegions;
+		if (TRACE) trace("kryo.FieldSerializerConfig", "setUseMemRegions: " + useMemRegions);
+	}
+
 	/** If false, when {@link Kryo#copy(Object)} is called all transient fields that are accessible will be ignored from being
 	 * copied. This has to be set before registering classes with kryo for it to be used by all field serializers. If transient
 	 * fields has to be copied for specific classes then use {@link FieldSerializer#setCopyTransient(boolean)}. Default is true. */
@@ -147,6 +182,14 @@ public class FieldSerializerConfig implements Cloneable {
 		return optimizedGenerics;
 	}
 
+	public boolean isChunkedEncoding () {
+		return chunkedEncoding;
+	}
+
+	public boolean isUseMemRegions () {
+		return useMemRegions;
+	}
+
 	public boolean isCopyTransient () {
 		return copyTransient;
 	}
@@ -23,6 +23,7 @@ import static com.esotericsoftware.kryo.util.UnsafeUtil.*;
 import static com.esotericsoftware.minlog.Log.*;
 
 import java.lang.reflect.Field;
+import java.nio.ByteOrder;
 import java.util.List;
 
 import com.esotericsoftware.kryo.serializers.FieldSerializer.CachedField;
@@ -41,80 +42,63 @@ final class FieldSerializerUnsafeUtilImpl implements FieldSerializerUnsafeUtil {
 
 	public void createUnsafeCacheFieldsAndRegions (List<Field> validFields, List<CachedField> cachedFields, int baseIndex,
 		IntArray useAsm) {
-		// Find adjacent fields of primitive types
-		long startPrimitives = 0;
-		long endPrimitives = 0;
-		boolean lastWasPrimitive = false;
-		int primitiveLength = 0;
-		int lastAccessIndex = -1;
-		Field lastField = null;
-		long fieldOffset = -1;
-		long fieldEndOffset = -1;
-		long lastFieldEndOffset = -1;
-
+		// Fields are sorted by offset. Find runs of primitive fields with no other fields or gaps between them.
+		int regionStart = -1;
+		long regionEnd = -1;
 		for (int i = 0, n = validFields.size(); i < n; i++) {
 			Field field = validFields.get(i);
-
-			int accessIndex = -1;
-			if (serializer.access != null && useAsm.get(baseIndex + i) == 1)
-				accessIndex = ((FieldAccess)serializer.access).getIndex(field.getName());
-
-			fieldOffset = unsafe().objectFieldOffset(field);
-			fieldEndOffset = fieldOffset + fieldSizeOf(field.getType());
-
-			if (!field.getType().isPrimitive() && lastWasPrimitive) {
-				// This is not a primitive field. Therefore, it marks
-				// the end of a region of primitive fields
-				endPrimitives = lastFieldEndOffset;
-				lastWasPrimitive = false;
-				if (primitiveLength > 1) {
-					if (TRACE) trace("kryo",
-						"Class " + serializer.getType().getName() + ". Found a set of consecutive primitive fields. Number of fields = "
-							+ primitiveLength + ". Byte length = " + (endPrimitives - startPrimitives) + " Start offset = "
-							+ startPrimitives + " endOffset=" + endPrimitives);
-					// TODO: register a region instead of a field
-					CachedField cf = new UnsafeRegionField(startPrimitives, (endPrimitives - startPrimitives));
-					cf.field = lastField;
-					cachedFields.add(cf);
-				} else {
-					if (lastField != null)
-						cachedFields.add(serializer.newCachedField(lastField, cachedFields.size(), lastAccessIndex));
+			long fieldOffset = unsafe().objectFieldOffset(field);
+			if (field.getType().isPrimitive()) {
+				if (regionStart != -1 && fieldOffset == regionEnd) {
+					regionEnd += fieldSizeOf(field.getType());
+					continue;
 				}
-				cachedFields.add(serializer.newCachedField(field, cachedFields.size(), accessIndex));
-			} else if (!field.getType().isPrimitive()) {
-				cachedFields.add(serializer.newCachedField(field, cachedFields.size(), accessIndex));
-			} else if (!lastWasPrimitive) {
-				// If previous field was non primitive, it marks a start
-				// of a region of primitive fields
-				startPrimitives = fieldOffset;
-				lastWasPrimitive = true;
-				primitiveLength = 1;
-			} else {
-				primitiveLength++;
+				if (regionStart != -1) addRegion(validFields, regionStart, i, cachedFields, baseIndex, useAsm);
+				regionStart = i;
+				regionEnd = fieldOffset + fieldSizeOf(field.getType());
+				continue;
 			}
+			if (regionStart != -1) addRegion(validFields, regionStart, i, cachedFields, baseIndex, useAsm);
+			regionStart = -1;
+			cachedFields.add(serializer.newCachedField(field, cachedFields.size(), accessIndex(field, baseIndex + i, useAsm)));
+		}
+		if (regionStart != -1) addRegion(validFields, regionStart, validFields.size(), cachedFields, baseIndex, useAsm);
+	}
 
-			lastAccessIndex = accessIndex;
-			lastField = field;
-			lastFieldEndOffset = fieldEndOffset;
+	/** Adds a region for the adjacent primitive fields from start (inclusive) to end (exclusive), or a regular cached field if
+	 * there is only one. */
+	private void addRegion (List<Field> validFields, int start, int end, List<CachedField> cachedFields, int baseIndex,
+		IntArray useAsm) {
+		Field first = validFields.get(start);
+		if (end - start == 1) {
+			cachedFields.add(serializer.newCachedField(first, cachedFields.size(), accessIndex(first, baseIndex + start, useAsm)));
+			return;
 		}
+		Field[] fields = validFields.subList(start, end).toArray(new Field[end - start]);
+		Field last = fields[fields.length - 1];
+		long offset = unsafe().objectFieldOffset(first);
+		long len = unsafe().objectFieldOffset(last) + fieldSizeOf(last.getType()) - offset;
+		if (TRACE) trace("kryo", "Class " + serializer.getType().getName() + ". Found a set of consecutive primitive fields. Number of fields = "
+			+ fields.length + ". Byte length = " + len + " Start offset = " + offset + " endOffset=" + (offset + len));
+		CachedField cf = new UnsafeRegionField(serializer.kryo, offset, len, layoutFingerprint(fields, len));
+		cf.field = first;
+		cachedFields.add(cf);
+	}
 
-		if (!serializer.getUseAsmEnabled() && serializer.getUseMemRegions() && lastWasPrimitive) {
-			endPrimitives = lastFieldEndOffset;
-			if (primitiveLength > 1) {
-				if (TRACE) {
-					trace("kryo",
-						"Class " + serializer.getType().getName() + ". Found a set of consecutive primitive fields. Number of fields = "
-							+ primitiveLength + ". Byte length = " + (endPrimitives - startPrimitives) + " Start offset = "
-							+ startPrimitives + " endOffset=" + endPrimitives);
-				}
-				// register a region instead of a field
-				CachedField cf = new UnsafeRegionField(startPrimitives, (endPrimitives - startPrimitives));
-				cf.field = lastField;
-				cachedFields.add(cf);
-			} else {
-				if (lastField != null) cachedFields.add(serializer.newCachedField(lastField, cachedFields.size(), lastAccessIndex));
-			}
+	private int accessIndex (Field field, int index, IntArray useAsm) {
+		if (serializer.access != null && useAsm.get(index) == 1) return ((FieldAccess)serializer.access).getIndex(field.getName());
+		return -1;
+	}
+
+	/** Returns a hash of the names, types and offsets of the fields in a region and the native byte order. */
+	private int layoutFingerprint (Field[] fields, long len) {
+		int hash = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 2;
+		for (Field field : fields) {
+			hash = hash * 31 + field.getName().hashCode();
+			hash = hash * 31 + field.getType().getName().hashCode();
+			hash = hash * 31 + (int)unsafe().objectFieldOffset(field);
 		}
+		return hash * 31 + (int)len;
 	}
 
 	/** Returns the in-memory size of a field which has a given class */
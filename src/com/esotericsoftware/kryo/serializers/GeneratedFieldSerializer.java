@@ -0,0 +1,391 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import static com.esotericsoftware.minlog.Log.*;
+import static org.objectweb.asm.Opcodes.*;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmBooleanField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmByteField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmCharField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmDoubleField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmFloatField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmIntField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmLongField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmShortField;
+import com.esotericsoftware.kryo.serializers.AsmCacheFields.AsmStringField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectBooleanField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectByteField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectCharField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectDoubleField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectFloatField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectIntField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectLongField;
+import com.esotericsoftware.kryo.serializers.ObjectField.ObjectShortField;
+
+/** A FieldSerializer that generates a class with straight-line bytecode to read and write the fields of its type. Primitive and
+ * String fields that can be accessed directly are read and written inline with the same encoding FieldSerializer uses, so the
+ * serialized bytes are identical. All other fields are delegated to their {@link CachedField}. This avoids a virtual call per
+ * field and gives the JIT a monomorphic method for each type.
+ * <p>
+ * The generated class is defined in the class loader of the type when possible, so all non-private fields can be accessed.
+ * Otherwise only public fields of public classes are accessed directly. Final fields are written inline but read through their
+ * CachedField. Generated classes are shared by all serializers for the same type and fields. If no field can be accessed
+ * directly or {@link FieldSerializerConfig#setOptimizedGenerics(boolean) optimized generics} are enabled, this serializer
+ * behaves like FieldSerializer.
+ * @see FieldSerializer */
+public class GeneratedFieldSerializer<T> extends FieldSerializer<T> {
+	static private final WeakHashMap<Class, HashMap<String, WeakReference<Class>>> codecClasses = new WeakHashMap();
+	static private final WeakHashMap<ClassLoader, WeakReference<CodecClassLoader>> codecClassLoaders = new WeakHashMap();
+	static private Method defineClassMethod;
+	static private boolean defineClassFailed;
+	static private int nextCodecId;
+
+	private CachedField[] codecFields;
+	private FieldCodec codec;
+
+	public GeneratedFieldSerializer (Kryo kryo, Class type) {
+		super(kryo, type);
+		updateCodec();
+	}
+
+	public void write (Kryo kryo, Output output, T object) {
+		CachedField[] fields = getFields();
+		if (fields != codecFields) updateCodec();
+		FieldCodec codec = this.codec;
+		if (codec == null || config.isOptimizedGenerics()) {
+			super.write(kryo, output, object);
+			return;
+		}
+		codec.write(output, object, fields);
+		if (config.isSerializeTransient()) {
+			CachedField[] transientFields = getTransientFields();
+			for (int i = 0, n = transientFields.length; i < n; i++)
+				transientFields[i].write(output, object);
+		}
+	}
+
+	public T read (Kryo kryo, Input input, Class<T> type) {
+		CachedField[] fields = getFields();
+		if (fields != codecFields) updateCodec();
+		FieldCodec codec = this.codec;
+		if (codec == null || config.isOptimizedGenerics()) return super.read(kryo, input, type);
+		T object = create(kryo, input, type);
+		kryo.reference(object);
+		codec.read(input, object, fields);
+		if (config.isSerializeTransient()) {
+			CachedField[] transientFields = getTransientFields();
+			for (int i = 0, n = transientFields.length; i < n; i++)
+				transientFields[i].read(input, object);
+		}
+		return object;
+	}
+
+	/** Returns true if a class was generated for the current fields. */
+	public boolean isGenerated () {
+		if (getFields() != codecFields) updateCodec();
+		return codec != null;
+	}
+
+	private void updateCodec () {
+		CachedField[] fields = getFields();
+		codecFields = fields;
+		codec = null;
+		if (config.isOptimizedGenerics()) return;
+		try {
+			codec = newCodec(getType(), fields);
+		} catch (Exception ex) {
+			if (DEBUG) debug("kryo", "Unable to generate field codec for class: " + getType().getName(), ex);
+		} catch (LinkageError ex) {
+			if (DEBUG) debug("kryo", "Unable to generate field codec for class: " + getType().getName(), ex);
+		}
+	}
+
+	static private FieldCodec newCodec (Class type, CachedField[] fields) throws Exception {
+		ClassLoader loader = type.getClassLoader();
+		if (loader == null || type.getName().startsWith("java.")) return null;
+		synchronized (codecClasses) {
+			boolean sameLoader = canDefineClass(loader);
+			boolean[] inlineWrite = new boolean[fields.length], inlineRead = new boolean[fields.length];
+			StringBuilder layout = new StringBuilder(sameLoader ? "L" : "P");
+			boolean inline = false;
+			for (int i = 0, n = fields.length; i < n; i++) {
+				CachedField cachedField = fields[i];
+				Field field = cachedField.field;
+				if (isInlineType(cachedField) && isAccessible(type, field, sameLoader)) {
+					inline = inlineWrite[i] = true;
+					inlineRead[i] = !Modifier.isFinal(field.getModifiers());
+					layout.append(inlineRead[i] ? 'B' : 'W').append(field.getDeclaringClass().getName()).append('.')
+						.append(field.getName()).append(cachedField.varIntsEnabled ? '+' : '-');
+				}
+				layout.append(',');
+			}
+			if (!inline) return null;
+
+			HashMap<String, WeakReference<Class>> classes = codecClasses.get(type);
+			if (classes == null) codecClasses.put(type, classes = new HashMap());
+			WeakReference<Class> reference = classes.get(layout.toString());
+			Class codecClass = reference == null ? null : reference.get();
+			if (codecClass == null) {
+				String className = type.getName() + "KryoCodec" + nextCodecId++;
+				byte[] bytes = generate(className.replace('.', '/'), type, fields, inlineWrite, inlineRead);
+				if (sameLoader)
+					codecClass = (Class)defineClassMethod.invoke(loader, className, bytes, 0, bytes.length, type.getProtectionDomain());
+				else
+					codecClass = codecClassLoader(loader).define(className, bytes);
+				classes.put(layout.toString(), new WeakReference(codecClass));
+				if (TRACE) trace("kryo", "Generated field codec: " + className + " " + layout);
+			}
+			return (FieldCodec)codecClass.newInstance();
+		}
+	}
+
+	/** Returns true for fields that are encoded the same way by all the primitive and String CachedField implementations. */
+	static private boolean isInlineType (CachedField cachedField) {
+		Class c = cachedField.getClass();
+		if (c == AsmStringField.class) return true;
+		if (c == AsmIntField.class || c == AsmLongField.class || c == AsmFloatField.class || c == AsmDoubleField.class
+			|| c == AsmShortField.class || c == AsmByteField.class || c == AsmBooleanField.class || c == AsmCharField.class)
+			return true;
+		if (c == ObjectIntField.class || c == ObjectLongField.class || c == ObjectFloatField.class || c == ObjectDoubleField.class
+			|| c == ObjectShortField.class || c == ObjectByteField.class || c == ObjectBooleanField.class
+			|| c == ObjectCharField.class) return true;
+		// The Unsafe fields are loaded by name so Unsafe is not a dependency.
+		String name = c.getName();
+		return name.startsWith("com.esotericsoftware.kryo.serializers.UnsafeCacheFields$Unsafe")
+			&& !name.endsWith("ObjectField") && !name.endsWith("RegionField");
+	}
+
+	static private boolean isAccessible (Class type, Field field, boolean sameLoader) {
+		Class declaringClass = field.getDeclaringClass();
+		int modifiers = field.getModifiers();
+		if (Modifier.isPrivate(modifiers)) return false;
+		if (!sameLoader) {
+			return Modifier.isPublic(type.getModifiers()) && Modifier.isPublic(declaringClass.getModifiers())
+				&& Modifier.isPublic(modifiers);
+		}
+		// The generated class is in the package of the type.
+		if (Modifier.isPrivate(type.getModifiers())) return false;
+		if (Modifier.isPublic(declaringClass.getModifiers()) && Modifier.isPublic(modifiers)) return true;
+		return declaringClass.getClassLoader() == type.getClassLoader() && packageName(declaringClass).equals(packageName(type))
+			&& !Modifier.isPrivate(declaringClass.getModifiers());
+	}
+
+	static private String packageName (Class type) {
+		String name = type.getName();
+		int index = name.lastIndexOf('.');
+		return index == -1 ? "" : name.substring(0, index);
+	}
+
+	/** Returns true if generated classes can be defined in the specified class loader, which allows access to package private
+	 * fields. */
+	static private boolean canDefineClass (ClassLoader loader) {
+		if (defineClassMethod == null && !defineClassFailed) {
+			try {
+				Method method = ClassLoader.class.getDeclaredMethod("defineClass",
+					new Class[] {String.class, byte[].class, int.class, int.class, ProtectionDomain.class});
+				method.setAccessible(true);
+				defineClassMethod = method;
+			} catch (Exception ex) {
+				if (TRACE) trace("kryo", "Unable to access ClassLoader#defineClass, only public fields will be generated.");
+				defineClassFailed = true;
+			}
+		}
+		if (defineClassMethod == null) return false;
+		try {
+			return Class.forName(FieldCodec.class.getName(), false, loader) == FieldCodec.class;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+	static private CodecClassLoader codecClassLoader (ClassLoader parent) {
+		WeakReference<CodecClassLoader> reference = codecClassLoaders.get(parent);
+		CodecClassLoader loader = reference == null ? null : reference.get();
+		if (loader == null) {
+			loader = new CodecClassLoader(parent);
+			codecClassLoaders.put(parent, new WeakReference(loader));
+		}
+		return loader;
+	}
+
+	static private byte[] generate (String className, Class type, CachedField[] fields, boolean[] inlineWrite,
+		boolean[] inlineRead) {
+		String codecName = Type.getInternalName(FieldCodec.class);
+		String typeName = Type.getInternalName(type);
+		String outputName = Type.getInternalName(Output.class);
+		String inputName = Type.getInternalName(Input.class);
+		String cachedFieldName = Type.getInternalName(CachedField.class);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className, null, codecName, null);
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, codecName, "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// Locals: 0 this, 1 output, 2 object, 3 fields, 4 typed object.
+		mv = cw.visitMethod(ACC_PUBLIC, "write", "(L" + outputName + ";Ljava/lang/Object;[L" + cachedFieldName + ";)V", null,
+			null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitTypeInsn(CHECKCAST, typeName);
+		mv.visitVarInsn(ASTORE, 4);
+		for (int i = 0, n = fields.length; i < n; i++) {
+			CachedField cachedField = fields[i];
+			if (!inlineWrite[i]) {
+				mv.visitVarInsn(ALOAD, 3);
+				pushInt(mv, i);
+				mv.visitInsn(AALOAD);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitVarInsn(ALOAD, 2);
+				mv.visitMethodInsn(INVOKEVIRTUAL, cachedFieldName, "write", "(L" + outputName + ";Ljava/lang/Object;)V", false);
+				continue;
+			}
+			Field field = cachedField.field;
+			Class fieldType = field.getType();
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitVarInsn(ALOAD, 4);
+			mv.visitFieldInsn(GETFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+				Type.getDescriptor(fieldType));
+			String descriptor = Type.getDescriptor(fieldType);
+			boolean returnsInt = false;
+			if ((fieldType == int.class || fieldType == long.class) && cachedField.varIntsEnabled) {
+				mv.visitInsn(ICONST_0); // optimizePositive
+				descriptor += "Z";
+				returnsInt = true;
+			} else if (fieldType == short.class)
+				descriptor = "I";
+			mv.visitMethodInsn(INVOKEVIRTUAL, outputName, "write" + methodSuffix(fieldType), "(" + descriptor + ")"
+				+ (returnsInt ? "I" : "V"), false);
+			if (returnsInt) mv.visitInsn(POP);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC, "read", "(L" + inputName + ";Ljava/lang/Object;[L" + cachedFieldName + ";)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 2);
+		mv.visitTypeInsn(CHECKCAST, typeName);
+		mv.visitVarInsn(ASTORE, 4);
+		for (int i = 0, n = fields.length; i < n; i++) {
+			CachedField cachedField = fields[i];
+			if (!inlineRead[i]) {
+				mv.visitVarInsn(ALOAD, 3);
+				pushInt(mv, i);
+				mv.visitInsn(AALOAD);
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitVarInsn(ALOAD, 2);
+				mv.visitMethodInsn(INVOKEVIRTUAL, cachedFieldName, "read", "(L" + inputName + ";Ljava/lang/Object;)V", false);
+				continue;
+			}
+			Field field = cachedField.field;
+			Class fieldType = field.getType();
+			String descriptor = Type.getDescriptor(fieldType);
+			mv.visitVarInsn(ALOAD, 4);
+			mv.visitVarInsn(ALOAD, 1);
+			String parameters = "";
+			if ((fieldType == int.class || fieldType == long.class) && cachedField.varIntsEnabled) {
+				mv.visitInsn(ICONST_0); // optimizePositive
+				parameters = "Z";
+			}
+			mv.visitMethodInsn(INVOKEVIRTUAL, inputName, "read" + methodSuffix(fieldType), "(" + parameters + ")" + descriptor,
+				false);
+			mv.visitFieldInsn(PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), descriptor);
+		}
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	static private String methodSuffix (Class type) {
+		if (type == int.class) return "Int";
+		if (type == long.class) return "Long";
+		if (type == float.class) return "Float";
+		if (type == double.class) return "Double";
+		if (type == short.class) return "Short";
+		if (type == byte.class) return "Byte";
+		if (type == boolean.class) return "Boolean";
+		if (type == char.class) return "Char";
+		if (type == String.class) return "String";
+		throw new IllegalArgumentException("Unsupported field type: " + type.getName());
+	}
+
+	static private void pushInt (MethodVisitor mv, int value) {
+		if (value <= 5)
+			mv.visitInsn(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE)
+			mv.visitIntInsn(BIPUSH, value);
+		else if (value <= Short.MAX_VALUE)
+			mv.visitIntInsn(SIPUSH, value);
+		else
+			mv.visitLdcInsn(value);
+	}
+
+	/** Reads and writes the fields of an object. Subclasses are generated by {@link GeneratedFieldSerializer}. */
+	static public abstract class FieldCodec {
+		abstract public void write (Output output, Object object, CachedField[] fields);
+
+		abstract public void read (Input input, Object object, CachedField[] fields);
+	}
+
+	/** Defines generated classes when they can't be defined in the class loader of the type. Kryo classes are loaded from the
+	 * class loader that loaded Kryo, in case the parent can't see them. */
+	static private class CodecClassLoader extends ClassLoader {
+		CodecClassLoader (ClassLoader parent) {
+			super(parent);
+		}
+
+		protected Class<?> loadClass (String name, boolean resolve) throws ClassNotFoundException {
+			if (name.startsWith("com.esotericsoftware.kryo.")) {
+				ClassLoader kryoLoader = GeneratedFieldSerializer.class.getClassLoader();
+				if (kryoLoader != null) return kryoLoader.loadClass(name);
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		Class<?> define (String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length, GeneratedFieldSerializer.class.getProtectionDomain());
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.BoundedKryoPool;
+import com.esotericsoftware.kryo.pool.KryoPool;
+
+/** A {@link CollectionSerializer} that splits large collections into segments which are serialized and deserialized in
+ * parallel using a {@link ForkJoinPool} and {@link Kryo} instances from a {@link KryoPool}. The pooled Kryo instances must be
+ * configured the same way as the Kryo instance that uses this serializer.
+ * <p>
+ * After the size of the collection, the number of segments is written. Collections with no more elements than the segment size
+ * are written with zero segments, followed by the elements as {@link CollectionSerializer} writes them. Otherwise a table with the
+ * number of elements and bytes in each segment is written, followed by the segments.
+ * <p>
+ * Each segment is a separate object graph, so references are only tracked within a segment and an element must not reference
+ * the collection or objects outside its segment. Elements in segments are written with the pooled Kryo's serializer for the
+ * element class, rather than the serializer set with {@link #setElementClass(Class, Serializer)}, since serializers may not be
+ * thread safe.
+ * <p>
+ * The calling thread holds its Kryo while waiting for the segments, so with a {@link BoundedKryoPool} the calling Kryo must not be
+ * borrowed from the same pool, or the segments could wait forever for an instance. This is checked and a KryoException is thrown
+ * instead. The same applies to nested collections that are large enough to be split, since they are written by pooled Kryo
+ * instances. */
+public class ParallelCollectionSerializer extends CollectionSerializer {
+	private final KryoPool pool;
+	private final ForkJoinPool forkJoinPool;
+	private int segmentSize = 65536;
+
+	public ParallelCollectionSerializer (KryoPool pool, ForkJoinPool forkJoinPool) {
+		if (pool == null) throw new IllegalArgumentException("pool cannot be null.");
+		if (forkJoinPool == null) throw new IllegalArgumentException("forkJoinPool cannot be null.");
+		this.pool = pool;
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/** Sets the maximum number of elements in a segment. Collections with more elements than this are split into segments.
+	 * Default is 65536. This can differ between the writer and reader. */
+	public void setSegmentSize (int segmentSize) {
+		if (segmentSize < 1) throw new IllegalArgumentException("segmentSize must be > 0: " + segmentSize);
+		this.segmentSize = segmentSize;
+	}
+
+	public int getSegmentSize () {
+		return segmentSize;
+	}
+
+	public void write (Kryo kryo, Output output, Collection collection) {
+		int length = collection.size();
+		if (length <= segmentSize) {
+			output.writeVarInt(length, true);
+			output.writeVarInt(0, true);
+			Serializer serializer = this.serializer;
+			if (genericType != null) {
+				if (serializer == null) serializer = kryo.getSerializer(genericType);
+				genericType = null;
+			}
+			writeElements(kryo, output, collection, serializer);
+			return;
+		}
+
+		checkPool(kryo);
+		final Class segmentClass = segmentClass();
+		final Object[] elements = collection.toArray();
+		int segmentCount = (length + segmentSize - 1) / segmentSize;
+		ArrayList<Callable<byte[]>> tasks = new ArrayList(segmentCount);
+		for (int start = 0; start < length; start += segmentSize) {
+			final int segmentStart = start, segmentEnd = Math.min(start + segmentSize, length);
+			tasks.add(new Callable<byte[]>() {
+				public byte[] call () {
+					Kryo kryo = pool.borrow();
+					boolean autoReset = kryo.isAutoReset();
+					kryo.setAutoReset(false);
+					try {
+						Output output = new Output(4096, -1);
+						Serializer serializer = segmentClass == null ? null : kryo.getSerializer(segmentClass);
+						writeElements(kryo, output, Arrays.asList(elements).subList(segmentStart, segmentEnd), serializer);
+						return output.toBytes();
+					} finally {
+						kryo.reset();
+						kryo.setAutoReset(autoReset);
+						pool.release(kryo);
+					}
+				}
+			});
+		}
+		List<byte[]> segments = invokeAll(tasks);
+
+		output.writeVarInt(length, true);
+		output.writeVarInt(segmentCount, true);
+		for (int i = 0; i < segmentCount; i++) {
+			output.writeVarInt(Math.min(segmentSize, length - i * segmentSize), true);
+			output.writeVarInt(segments.get(i).length, true);
+		}
+		for (byte[] segment : segments)
+			output.writeBytes(segment);
+	}
+
+	public Collection read (Kryo kryo, Input input, Class<Collection> type) {
+		Collection collection = create(kryo, input, type);
+		kryo.reference(collection);
+		int length = input.readVarInt(true);
+		if (collection instanceof ArrayList) ((ArrayList)collection).ensureCapacity(length);
+		int segmentCount = input.readVarInt(true);
+		if (segmentCount == 0) {
+			Class elementClass = this.elementClass;
+			Serializer serializer = this.serializer;
+			if (genericType != null) {
+				if (serializer == null) {
+					elementClass = genericType;
+					serializer = kryo.getSerializer(genericType);
+				}
+				genericType = null;
+			}
+			readElements(kryo, input, collection, length, elementClass, serializer);
+			return collection;
+		}
+
+		checkPool(kryo);
+		final Class segmentClass = segmentClass();
+		int[] counts = new int[segmentCount];
+		int[] sizes = new int[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			counts[i] = input.readVarInt(true);
+			sizes[i] = input.readVarInt(true);
+		}
+		ArrayList<Callable<ArrayList>> tasks = new ArrayList(segmentCount);
+		for (int i = 0; i < segmentCount; i++) {
+			final byte[] segment = input.readBytes(sizes[i]);
+			final int count = counts[i];
+			tasks.add(new Callable<ArrayList>() {
+				public ArrayList call () {
+					Kryo kryo = pool.borrow();
+					boolean autoReset = kryo.isAutoReset();
+					kryo.setAutoReset(false);
+					try {
+						ArrayList elements = new ArrayList(count);
+						Serializer serializer = segmentClass == null ? null : kryo.getSerializer(segmentClass);
+						readElements(kryo, new Input(segment), elements, count, segmentClass, serializer);
+						return elements;
+					} finally {
+						kryo.reset();
+						kryo.setAutoReset(autoReset);
+						pool.release(kryo);
+					}
+				}
+			});
+		}
+		for (ArrayList elements : invokeAll(tasks))
+			collection.addAll(elements);
+		return collection;
+	}
+
+	private void checkPool (Kryo kryo) {
+		if (pool instanceof BoundedKryoPool && ((BoundedKryoPool)pool).isBorrowed(kryo)) {
+			throw new KryoException(
+				"The Kryo instance using ParallelCollectionSerializer must not be borrowed from the bounded pool used for the segments.");
+		}
+	}
+
+	/** Returns the class of the elements if they are all written with the same serializer, or null. */
+	private Class segmentClass () {
+		Class segmentClass = serializer != null ? elementClass : genericType;
+		genericType = null;
+		return segmentClass;
+	}
+
+	private <T> List<T> invokeAll (List<Callable<T>> tasks) {
+		ArrayList<T> results = new ArrayList(tasks.size());
+		try {
+			for (Future<T> future : forkJoinPool.invokeAll(tasks))
+				results.add(future.get());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new KryoException(ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof KryoException) throw (KryoException)cause;
+			throw new KryoException(cause);
+		}
+		return results;
+	}
+}
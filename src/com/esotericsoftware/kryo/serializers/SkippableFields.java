@@ -0,0 +1,191 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import static com.esotericsoftware.minlog.Log.*;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.InputChunked;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.OutputChunked;
+
+/** Writes and reads field data that can be skipped by a reader that does not know the field, as used by
+ * {@link CompatibleFieldSerializer} and annexed {@link TaggedFieldSerializer} fields.
+ * <p>
+ * With chunked encoding, field data is written through an {@link OutputChunked}. Otherwise a 4 byte length slot is reserved in
+ * the output, the field is written directly and the length is patched afterward, so skipping a field is a single
+ * {@link Input#skip(int)}. Patching requires the written bytes to still be in the buffer, so when the output can't
+ * {@link Output#canPatch() patch} (eg it flushes to an OutputStream or channel) a length of -1 is written and the field falls back
+ * to chunked encoding.
+ * <p>
+ * Objects using a serializer can be nested (eg a tree of nodes), so state is kept for each level of nesting. Calls must be paired:
+ * {@link #beginWrite(Output)} then {@link #writeFieldStart()} and {@link #writeFieldEnd()} for each field, then
+ * {@link #endWrite()} in a finally block. Reading is the same. */
+class SkippableFields {
+	static private final int CHUNK_SIZE = 1024;
+
+	private final boolean chunkedEncoding;
+	private WriteState[] writeStack = new WriteState[2];
+	private ReadState[] readStack = new ReadState[2];
+	private int writeDepth, readDepth;
+
+	SkippableFields (boolean chunkedEncoding) {
+		this.chunkedEncoding = chunkedEncoding;
+	}
+
+	public boolean isChunkedEncoding () {
+		return chunkedEncoding;
+	}
+
+	public void beginWrite (Output output) {
+		if (writeDepth == writeStack.length) {
+			WriteState[] newStack = new WriteState[writeDepth << 1];
+			System.arraycopy(writeStack, 0, newStack, 0, writeDepth);
+			writeStack = newStack;
+		}
+		WriteState state = writeStack[writeDepth];
+		if (state == null) writeStack[writeDepth] = state = new WriteState();
+		state.output = output;
+		// The length can't be patched once the bytes before it were flushed or moved to another segment.
+		state.chunked = chunkedEncoding || !output.canPatch();
+		writeDepth++;
+	}
+
+	/** Returns the Output the field data must be written to. */
+	public Output writeFieldStart () {
+		WriteState state = writeStack[writeDepth - 1];
+		Output output = state.output;
+		if (state.chunked) {
+			if (!chunkedEncoding) output.writeInt(-1);
+			OutputChunked outputChunked = state.outputChunked;
+			if (outputChunked == null) state.outputChunked = outputChunked = new OutputChunked(CHUNK_SIZE);
+			outputChunked.setOutputStream(output);
+			return outputChunked;
+		}
+		state.lengthPosition = output.position();
+		output.writeInt(0);
+		return output;
+	}
+
+	public void writeFieldEnd () {
+		WriteState state = writeStack[writeDepth - 1];
+		if (state.chunked) {
+			state.outputChunked.endChunks();
+			return;
+		}
+		Output output = state.output;
+		int end = output.position();
+		int length = end - state.lengthPosition - 4;
+		if (TRACE) trace("kryo", "Write field length: " + length);
+		output.setPosition(state.lengthPosition);
+		output.writeInt(length);
+		output.setPosition(end);
+	}
+
+	public void endWrite () {
+		WriteState state = writeStack[--writeDepth];
+		state.output = null; // Don't retain the output.
+		if (state.outputChunked != null) state.outputChunked.setOutputStream(null);
+	}
+
+	public void beginRead (Input input) {
+		if (readDepth == readStack.length) {
+			ReadState[] newStack = new ReadState[readDepth << 1];
+			System.arraycopy(readStack, 0, newStack, 0, readDepth);
+			readStack = newStack;
+		}
+		ReadState state = readStack[readDepth];
+		if (state == null) readStack[readDepth] = state = new ReadState();
+		state.input = input;
+		readDepth++;
+	}
+
+	/** Returns the Input the field data must be read from. */
+	public Input readFieldStart () {
+		ReadState state = readStack[readDepth - 1];
+		Input input = state.input;
+		if (!chunkedEncoding) {
+			int length = input.readInt();
+			if (length != -1) {
+				if (length < 0) throw new KryoException("Invalid field length: " + length);
+				state.chunked = false;
+				state.fieldEnd = input.total() + length;
+				return input;
+			}
+		}
+		state.chunked = true;
+		return inputChunked(state);
+	}
+
+	public void readFieldEnd () {
+		ReadState state = readStack[readDepth - 1];
+		if (state.chunked) {
+			state.inputChunked.nextChunks();
+			return;
+		}
+		long remaining = state.fieldEnd - state.input.total();
+		if (remaining < 0) throw new KryoException("Field data exceeds its length by " + -remaining + " bytes.");
+		if (remaining > 0) state.input.skip((int)remaining);
+	}
+
+	/** Skips the data of a field that is not known to the reader. */
+	public void skipField () {
+		ReadState state = readStack[readDepth - 1];
+		Input input = state.input;
+		if (!chunkedEncoding) {
+			int length = input.readInt();
+			if (length != -1) {
+				if (length < 0) throw new KryoException("Invalid field length: " + length);
+				if (TRACE) trace("kryo", "Skip field: " + length);
+				input.skip(length);
+				return;
+			}
+		}
+		inputChunked(state).nextChunks();
+	}
+
+	public void endRead () {
+		ReadState state = readStack[--readDepth];
+		state.input = null; // Don't retain the input.
+		if (state.inputChunked != null) state.inputChunked.setInputStream(null);
+	}
+
+	private InputChunked inputChunked (ReadState state) {
+		InputChunked inputChunked = state.inputChunked;
+		if (inputChunked == null) state.inputChunked = inputChunked = new InputChunked(CHUNK_SIZE);
+		if (inputChunked.getInputStream() != state.input) inputChunked.setInputStream(state.input);
+		return inputChunked;
+	}
+
+	static private class WriteState {
+		Output output;
+		OutputChunked outputChunked;
+		boolean chunked;
+		int lengthPosition;
+	}
+
+	static private class ReadState {
+		Input input;
+		InputChunked inputChunked;
+		boolean chunked;
+		long fieldEnd;
+	}
+}
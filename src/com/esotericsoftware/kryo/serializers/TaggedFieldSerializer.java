@@ -32,9 +32,7 @@ import java.util.Comparator;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.InputChunked;
 import com.esotericsoftware.kryo.io.Output;
-import com.esotericsoftware.kryo.io.OutputChunked;
 
 /** Serializes objects using direct field assignment for fields that have a <code>@Tag(int)</code> annotation. This provides
  * backward compatibility so new fields can be added. TaggedFieldSerializer has two advantages over {@link VersionFieldSerializer}
@@ -48,8 +46,9 @@ import com.esotericsoftware.kryo.io.OutputChunked;
  * Forward compatibility is optionally supported by enabling {@link #setSkipUnknownTags(boolean)}, which allows it to
  * skip reading unknown tagged fields, which are presumably new fields added in future versions of an application. The
  * data is only forward compatible if the newly added fields are tagged with {@link TaggedFieldSerializer.Tag#annexed()}
- * set true, which comes with the cost of chunked encoding. When annexed fields are encountered during the read or write
- * process of an object, a buffer is allocated to perform the chunked encoding.
+ * set true, which comes with the cost of chunked encoding. The buffers used for chunked encoding are allocated the first time
+ * annexed fields are encountered and reused afterward. Chunked encoding can be replaced by a length prefix, see
+ * {@link #setChunkedEncoding(boolean)}.
  * <p>
  * Tag values must be entirely unique, even among a class and its superclass(es). An IllegalArgumentException will be
  * thrown by {@link Kryo#register(Class)} (and its overloads) if duplicate Tag values are encountered.
@@ -60,9 +59,20 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 	private int writeFieldCount;
 	private boolean[] deprecated;
 	private boolean[] annexed;
+	/** False if no field is annexed, so objects are written and read without {@link SkippableFields}. */
+	private boolean hasAnnexed;
+	private SkippableFields skippableFields;
 
 	public TaggedFieldSerializer (Kryo kryo, Class type) {
 		super(kryo, type, null, kryo.getTaggedFieldSerializerConfig().clone());
+		skippableFields = new SkippableFields(config.isChunkedEncoding());
+	}
+
+	/** Controls how annexed field data is written so it can be skipped when reading. See
+	 * {@link FieldSerializerConfig#setChunkedEncoding(boolean)}. */
+	public void setChunkedEncoding (boolean chunkedEncoding) {
+		config.setChunkedEncoding(chunkedEncoding);
+		skippableFields = new SkippableFields(chunkedEncoding);
 	}
 
 	/** Set whether TaggedFieldSerializer should attempt to skip reading the data of unknown tags, rather than throwing a
@@ -104,6 +114,7 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 		tags = new int[fields.length];
 		deprecated = new boolean[fields.length];
 		annexed = new boolean[fields.length];
+		hasAnnexed = false;
 		writeFieldCount = fields.length;
 
 		Arrays.sort(fields, TAGGED_VALUE_COMPARATOR); // fields are sorted to easily check for reused tag values
@@ -116,8 +127,10 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 				deprecated[i] = true;
 				writeFieldCount--;
 			}
-			if (field.getAnnotation(Tag.class).annexed())
+			if (field.getAnnotation(Tag.class).annexed()) {
 				annexed[i] = true;
+				hasAnnexed = true;
+			}
 		}
 
 		this.removedFields.clear();
@@ -137,18 +150,21 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 		CachedField[] fields = getFields();
 		output.writeVarInt(writeFieldCount, true); // Can be used for null.
 
-		OutputChunked outputChunked = null; // only instantiate if needed
-		for (int i = 0, n = fields.length; i < n; i++) {
-			if (deprecated[i]) continue;
-			output.writeVarInt(tags[i], true);
-			if (annexed[i]){
-				if (outputChunked == null)
-					outputChunked = new OutputChunked(output, 1024);
-				fields[i].write(outputChunked, object);
-				outputChunked.endChunks();
-			} else {
-				fields[i].write(output, object);
+		SkippableFields skippableFields = hasAnnexed ? this.skippableFields : null;
+		if (skippableFields != null) skippableFields.beginWrite(output);
+		try {
+			for (int i = 0, n = fields.length; i < n; i++) {
+				if (deprecated[i]) continue;
+				output.writeVarInt(tags[i], true);
+				if (annexed[i]) {
+					fields[i].write(skippableFields.writeFieldStart(), object);
+					skippableFields.writeFieldEnd();
+				} else {
+					fields[i].write(output, object);
+				}
 			}
+		} finally {
+			if (skippableFields != null) skippableFields.endWrite();
 		}
 	}
 
@@ -157,35 +173,39 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 		kryo.reference(object);
 		int fieldCount = input.readVarInt(true);
 		int[] tags = this.tags;
-		InputChunked inputChunked = null; // only instantiate if needed
 		CachedField[] fields = getFields();
-		for (int i = 0, n = fieldCount; i < n; i++) {
-			int tag = input.readVarInt(true);
-
-			CachedField cachedField = null;
-			boolean isAnnexed = false;
-			for (int ii = 0, nn = tags.length; ii < nn; ii++) {
-				if (tags[ii] == tag) {
-					cachedField = fields[ii];
-					isAnnexed = annexed[ii];
-					break;
+		// Unknown tags are skipped as annexed fields, even if this class has none.
+		SkippableFields skippableFields = hasAnnexed || isSkipUnknownTags() ? this.skippableFields : null;
+		if (skippableFields != null) skippableFields.beginRead(input);
+		try {
+			for (int i = 0, n = fieldCount; i < n; i++) {
+				int tag = input.readVarInt(true);
+
+				CachedField cachedField = null;
+				boolean isAnnexed = false;
+				for (int ii = 0, nn = tags.length; ii < nn; ii++) {
+					if (tags[ii] == tag) {
+						cachedField = fields[ii];
+						isAnnexed = annexed[ii];
+						break;
+					}
+				}
+				if (cachedField == null) {
+					if (isSkipUnknownTags()) {
+						skippableFields.skipField(); // assume future annexed field and skip
+						if (TRACE) trace(String.format("Unknown field tag: %d (%s) encountered. Assuming a future annexed " +
+										"tag and skipping.", tag, getType().getName()));
+					} else
+						throw new KryoException("Unknown field tag: " + tag + " (" + getType().getName() + ")");
+				} else if (isAnnexed){
+					cachedField.read(skippableFields.readFieldStart(), object);
+					skippableFields.readFieldEnd();
+				} else {
+					cachedField.read(input, object);
 				}
 			}
-			if (cachedField == null) {
-				if (isSkipUnknownTags()) {
-					if (inputChunked == null) inputChunked = new InputChunked(input, 1024);
-					inputChunked.nextChunks(); // assume future annexed field and skip
-					if (TRACE) trace(String.format("Unknown field tag: %d (%s) encountered. Assuming a future annexed " +
-									"tag with chunked encoding and skipping.", tag, getType().getName()));
-				} else
-					throw new KryoException("Unknown field tag: " + tag + " (" + getType().getName() + ")");
-			} else if (isAnnexed){
-				if (inputChunked == null) inputChunked = new InputChunked(input, 1024);
-				cachedField.read(inputChunked, object);
-				inputChunked.nextChunks();
-			} else {
-				cachedField.read(input, object);
-			}
+		} finally {
+			if (skippableFields != null) skippableFields.endRead();
 		}
 		return object;
 	}
@@ -201,7 +221,7 @@ public class TaggedFieldSerializer<T> extends FieldSerializer<T> {
 	@Target(ElementType.FIELD)
 	public @interface Tag {
 		int value();
-		/** If true, the field is serialized with chunked encoding and is forward compatible, meaning safe to read in
+		/** If true, the field is serialized so it can be skipped and is forward compatible, meaning safe to read in
 		 * iterations of the class without it if {@link #isSkipUnknownTags()}. */
 		boolean annexed() default false;
 	}
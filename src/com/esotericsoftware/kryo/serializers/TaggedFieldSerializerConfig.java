@@ -70,7 +70,7 @@ public class TaggedFieldSerializerConfig extends FieldSerializerConfig {
 	}
 
 	@Override
-	protected TaggedFieldSerializerConfig clone () {
+	public TaggedFieldSerializerConfig clone () {
 		return (TaggedFieldSerializerConfig)super.clone();
 	}
 }
@@ -23,13 +23,10 @@ import static com.esotericsoftware.kryo.util.UnsafeUtil.*;
 
 import java.lang.reflect.Field;
 
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import com.esotericsoftware.kryo.io.UnsafeInput;
-import com.esotericsoftware.kryo.io.UnsafeMemoryInput;
-import com.esotericsoftware.kryo.io.UnsafeMemoryOutput;
-import com.esotericsoftware.kryo.io.UnsafeOutput;
 import com.esotericsoftware.kryo.serializers.FieldSerializer.CachedField;
 
 import sun.misc.Unsafe;
@@ -219,72 +216,64 @@ class UnsafeCacheFields {
 		}
 	}
 
-	/** Helper class for doing bulk copies of memory regions containing adjacent primitive fields. Should be normally used only
-	 * with Unsafe streams to deliver best performance. */
+	/** Helper class for doing bulk copies of memory regions containing adjacent primitive fields. The region is read, written and
+	 * copied a long at a time, since the JVM only allows bulk memory copies to and from arrays. A fingerprint of the memory layout
+	 * is written before the first occurrence of the region in each object graph, so data written by a JVM with a different layout
+	 * fails to be read. */
 	final static class UnsafeRegionField extends UnsafeCachedField {
+		final Kryo kryo;
 		final long len;
-		static final boolean bulkReadsSupported = false;
+		final int fingerprint;
+		/** The {@link Kryo#getGraphGeneration() graph generation} in which the fingerprint was last written or read. */
+		private long writeGeneration = -1, readGeneration = -1;
 
-		public UnsafeRegionField (long offset, long len) {
+		public UnsafeRegionField (Kryo kryo, long offset, long len, int fingerprint) {
 			super(offset);
+			this.kryo = kryo;
 			this.len = len;
+			this.fingerprint = fingerprint;
 		}
 
 		final public void write (Output output, Object object) {
-			if (output instanceof UnsafeOutput) {
-				UnsafeOutput unsafeOutput = (UnsafeOutput)output;
-				unsafeOutput.writeBytes(object, offset, len);
-			} else if (output instanceof UnsafeMemoryOutput) {
-				UnsafeMemoryOutput unsafeOutput = (UnsafeMemoryOutput)output;
-				unsafeOutput.writeBytes(object, offset, len);
-			} else {
-				long off;
-				Unsafe unsafe = unsafe();
-				for (off = offset; off < offset + len - 8; off += 8) {
-					output.writeLong(unsafe.getLong(object, off));
-				}
-
-				if (off < offset + len) {
-					for (; off < offset + len; ++off) {
-						output.write(unsafe.getByte(object, off));
-					}
-				}
+			long generation = kryo.getGraphGeneration();
+			if (writeGeneration != generation) {
+				writeGeneration = generation;
+				output.writeInt(fingerprint);
 			}
+			Unsafe unsafe = unsafe();
+			long off = offset, end = offset + len;
+			for (; off + 8 <= end; off += 8)
+				output.writeLong(unsafe.getLong(object, off));
+			for (; off < end; off++)
+				output.writeByte(unsafe.getByte(object, off));
 		}
 
+		/** Unsafe streams read longs in native byte order, so the bytes end up in memory as they were written. */
 		final public void read (Input input, Object object) {
-			if (bulkReadsSupported && input instanceof UnsafeInput) {
-				UnsafeInput unsafeInput = (UnsafeInput)input;
-				unsafeInput.readBytes(object, offset, len);
-			} else if (bulkReadsSupported && input instanceof UnsafeMemoryInput) {
-				UnsafeMemoryInput unsafeInput = (UnsafeMemoryInput)input;
-				unsafeInput.readBytes(object, offset, len);
-			} else {
-				readSlow(input, object);
+			long generation = kryo.getGraphGeneration();
+			if (readGeneration != generation) {
+				readGeneration = generation;
+				int fingerprint = input.readInt();
+				if (fingerprint != this.fingerprint) {
+					throw new KryoException("Memory layout of primitive fields differs from the layout used for serialization: " + this
+						+ " (" + object.getClass().getName() + ")");
+				}
 			}
-		}
-
-		/*** This is a fall-back solution for the case that bulk reading of bytes into object memory is not supported.
-		 * Unfortunately, current Oracle JDKs do not allow for bulk reading in this style due to problems with GC.
-		 * 
-		 * @param input
-		 * @param object */
-		private void readSlow (Input input, Object object) {
-			long off;
 			Unsafe unsafe = unsafe();
-			for (off = offset; off < offset + len - 8; off += 8) {
+			long off = offset, end = offset + len;
+			for (; off + 8 <= end; off += 8)
 				unsafe.putLong(object, off, input.readLong());
-			}
-
-			if (off < offset + len) {
-				for (; off < offset + len; ++off) {
-					unsafe.putByte(object, off, input.readByte());
-				}
-			}
+			for (; off < end; off++)
+				unsafe.putByte(object, off, input.readByte());
 		}
 
 		public void copy (Object original, Object copy) {
-			unsafe().copyMemory(original, offset, copy, offset, len);
+			Unsafe unsafe = unsafe();
+			long off = offset, end = offset + len;
+			for (; off + 8 <= end; off += 8)
+				unsafe.putLong(copy, off, unsafe.getLong(original, off));
+			for (; off < end; off++)
+				unsafe.putByte(copy, off, unsafe.getByte(original, off));
 		}
 	}
 
@@ -0,0 +1,81 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+/** An object array stored in fixed size chunks. Growing allocates a new chunk and copies only the array of chunk references, so
+ * the elements are never copied and no more than one chunk is unused. */
+public class ChunkedObjectArray {
+	static private final int CHUNK_SHIFT = 10;
+	static private final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	static private final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private Object[][] chunks = new Object[8][];
+	private int chunkCount;
+	public int size;
+
+	/** Appends the value and returns its index.
+	 * @param value May be null. */
+	public int add (Object value) {
+		int index = size, chunk = index >>> CHUNK_SHIFT;
+		if (chunk == chunkCount) {
+			if (chunk == chunks.length) {
+				Object[][] newChunks = new Object[chunks.length << 1][];
+				System.arraycopy(chunks, 0, newChunks, 0, chunkCount);
+				chunks = newChunks;
+			}
+			chunks[chunkCount++] = new Object[CHUNK_SIZE];
+		}
+		chunks[chunk][index & CHUNK_MASK] = value;
+		size++;
+		return index;
+	}
+
+	/** @return May be null. */
+	public Object get (int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	/** @param value May be null. */
+	public void set (int index, Object value) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = value;
+	}
+
+	/** Removes all values. The first chunk is kept and the others are released. */
+	public void clear () {
+		if (chunkCount > 1) {
+			for (int i = 1; i < chunkCount; i++)
+				chunks[i] = null;
+			chunkCount = 1;
+		}
+		if (chunkCount == 1) {
+			Object[] chunk = chunks[0];
+			for (int i = Math.min(size, CHUNK_SIZE) - 1; i >= 0; i--)
+				chunk[i] = null;
+		}
+		size = 0;
+	}
+
+	/** Returns the number of elements that can be stored before another chunk is allocated. */
+	public int capacity () {
+		return chunkCount << CHUNK_SHIFT;
+	}
+}
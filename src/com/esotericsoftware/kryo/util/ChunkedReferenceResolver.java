@@ -0,0 +1,207 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.ReferenceResolver;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/** Like {@link MapReferenceResolver}, but stores read objects in a {@link ChunkedObjectArray}, so reading a large graph never
+ * copies the read objects to grow the table and {@link #reset()} releases all but the first chunk.
+ * <p>
+ * If the writer signals which objects are referenced again, eg with a bitmap sent ahead of the object graph, it can be passed
+ * to {@link #setReferencedIds(long[])} before reading. Then only those objects are stored, so objects that are never referenced
+ * again can be garbage collected while the rest of the graph is read.
+ * <p>
+ * When writing, the IDs of objects that are referenced again are marked, see {@link #getWrittenReferencedIds()}.
+ * {@link #writeClassAndObject(Output, Object)} uses this to write the graph in two passes: the graph is first written to a
+ * buffer, then the referenced IDs are written followed by the buffered graph. {@link #readClassAndObject(Input)} reads the
+ * referenced IDs and then reads the graph storing only the objects that are referenced again. */
+public class ChunkedReferenceResolver implements ReferenceResolver {
+	protected Kryo kryo;
+	protected final IdentityObjectIntMap writtenObjects = new IdentityObjectIntMap();
+	protected final ChunkedObjectArray readObjects = new ChunkedObjectArray();
+	private long[] referencedIds;
+	private final IntMap referencedObjects = new IntMap();
+	private int nextReadId;
+	private long[] writtenReferencedIds = new long[16];
+	private int writtenReferencedWords;
+	private Output buffer, bufferTarget;
+
+	public void setKryo (Kryo kryo) {
+		this.kryo = kryo;
+	}
+
+	public int addWrittenObject (Object object) {
+		int id = writtenObjects.size;
+		writtenObjects.put(object, id);
+		return id;
+	}
+
+	public int getWrittenId (Object object) {
+		int id = writtenObjects.get(object, -1);
+		if (id != -1) {
+			int word = id >>> 6;
+			if (word >= writtenReferencedWords) {
+				if (word >= writtenReferencedIds.length) {
+					int length = Math.max(word + 1, writtenReferencedIds.length << 1);
+					writtenReferencedIds = Arrays.copyOf(writtenReferencedIds, length);
+				}
+				writtenReferencedWords = word + 1;
+			}
+			writtenReferencedIds[word] |= 1L << id;
+		}
+		return id;
+	}
+
+	public int nextReadId (Class type) {
+		if (referencedIds != null) return nextReadId++;
+		return readObjects.add(null);
+	}
+
+	public void setReadObject (int id, Object object) {
+		if (referencedIds == null)
+			readObjects.set(id, object);
+		else if (isReferenced(id)) //
+			referencedObjects.put(id, object);
+	}
+
+	public Object getReadObject (Class type, int id) {
+		if (referencedIds == null) return readObjects.get(id);
+		if (!isReferenced(id)) throw new KryoException("Object was not marked as referenced: " + id);
+		return referencedObjects.get(id);
+	}
+
+	private boolean isReferenced (int id) {
+		int word = id >>> 6;
+		return word < referencedIds.length && (referencedIds[word] & (1L << id)) != 0;
+	}
+
+	/** Stores only the read objects whose IDs are set in the bitmap, until the next {@link #reset()}. Bit <code>id & 63</code> of
+	 * element <code>id >>> 6</code> is set if the object with that ID is referenced again after it is first read. Must be called
+	 * before an object graph is read.
+	 * @param referencedIds May be null to store all read objects. */
+	public void setReferencedIds (long[] referencedIds) {
+		if (nextReadId > 0 || readObjects.size > 0) throw new IllegalStateException("Referenced IDs must be set before reading.");
+		this.referencedIds = referencedIds;
+	}
+
+	/** @return May be null. */
+	public long[] getReferencedIds () {
+		return referencedIds;
+	}
+
+	/** Returns a bitmap of the IDs of the written objects that were referenced again since the last {@link #reset()}, in the
+	 * format used by {@link #setReferencedIds(long[])}. */
+	public long[] getWrittenReferencedIds () {
+		return Arrays.copyOf(writtenReferencedIds, writtenReferencedWords);
+	}
+
+	/** Writes the class and object graph in two passes so the reader only stores objects that are referenced again. The graph is
+	 * written to a buffer from {@link Output#newOutput(int)}, so it has the same byte order and integer encoding as the output. The
+	 * buffer is reused while the same output is passed and grows to the size of the largest graph. Then the referenced IDs are
+	 * written to the output followed by the buffered graph. Kryo is {@link Kryo#reset() reset} afterward. Must be read with
+	 * {@link #readClassAndObject(Input)}.
+	 * @param object May be null. */
+	public void writeClassAndObject (Output output, Object object) {
+		if (output == null) throw new IllegalArgumentException("output cannot be null.");
+		if (!kryo.getReferences()) throw new IllegalStateException("References must be enabled.");
+		if (bufferTarget != output) {
+			buffer = output.newOutput(4096);
+			bufferTarget = output;
+		}
+		boolean autoReset = kryo.isAutoReset();
+		kryo.setAutoReset(false);
+		try {
+			buffer.clear();
+			kryo.writeClassAndObject(buffer, object);
+			output.writeVarInt(bitCount(), true);
+			int previous = 0;
+			for (int word = 0; word < writtenReferencedWords; word++) {
+				long bits = writtenReferencedIds[word];
+				while (bits != 0) {
+					int id = (word << 6) + Long.numberOfTrailingZeros(bits);
+					output.writeVarInt(id - previous, true);
+					previous = id;
+					bits &= bits - 1;
+				}
+			}
+			buffer.writeTo(output);
+		} finally {
+			kryo.setAutoReset(autoReset);
+			kryo.reset();
+		}
+	}
+
+	private int bitCount () {
+		int count = 0;
+		for (int i = 0; i < writtenReferencedWords; i++)
+			count += Long.bitCount(writtenReferencedIds[i]);
+		return count;
+	}
+
+	/** Reads a class and object graph written by {@link #writeClassAndObject(Output, Object)}, storing only the objects that are
+	 * referenced again. Kryo is {@link Kryo#reset() reset} afterward.
+	 * @return May be null. */
+	public Object readClassAndObject (Input input) {
+		if (input == null) throw new IllegalArgumentException("input cannot be null.");
+		if (!kryo.getReferences()) throw new IllegalStateException("References must be enabled.");
+		int count = input.readVarInt(true);
+		long[] referencedIds = new long[0];
+		for (int i = 0, id = 0; i < count; i++) {
+			id += input.readVarInt(true);
+			if (id < 0) throw new KryoException("Invalid referenced ID: " + id);
+			int word = id >>> 6;
+			if (word >= referencedIds.length)
+				referencedIds = Arrays.copyOf(referencedIds, Math.max(word + 1, referencedIds.length << 1));
+			referencedIds[word] |= 1L << id;
+		}
+		boolean autoReset = kryo.isAutoReset();
+		kryo.setAutoReset(false);
+		try {
+			setReferencedIds(referencedIds);
+			return kryo.readClassAndObject(input);
+		} finally {
+			kryo.setAutoReset(autoReset);
+			kryo.reset();
+		}
+	}
+
+	/** Also clears the {@link #setReferencedIds(long[]) referenced IDs} and the
+	 * {@link #getWrittenReferencedIds() written referenced IDs}. */
+	public void reset () {
+		readObjects.clear();
+		referencedObjects.clear(2048);
+		referencedIds = null;
+		nextReadId = 0;
+		writtenObjects.clear(2048);
+		Arrays.fill(writtenReferencedIds, 0, writtenReferencedWords, 0);
+		writtenReferencedWords = 0;
+	}
+
+	/** Returns false for all primitive wrappers. */
+	public boolean useReferences (Class type) {
+		return !Util.isWrapperClass(type);
+	}
+}
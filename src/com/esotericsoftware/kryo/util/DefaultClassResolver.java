@@ -88,6 +88,15 @@ public class DefaultClassResolver implements ClassResolver {
 		return idToRegistration.get(classID);
 	}
 
+	/** Returns the registrations that have an ID, in no particular order. */
+	public Registration[] getRegistrations () {
+		Registration[] registrations = new Registration[idToRegistration.size];
+		int i = 0;
+		for (Registration registration : idToRegistration.values())
+			registrations[i++] = registration;
+		return registrations;
+	}
+
 	public Registration writeClass (Output output, Class type) {
 		if (type == null) {
 			if (TRACE || (DEBUG && kryo.getDepth() == 1)) log("Write", null);
@@ -133,7 +142,7 @@ public class DefaultClassResolver implements ClassResolver {
 			return readName(input);
 		}
 		if (classID == memoizedClassId) return memoizedClassIdValue;
-		Registration registration = idToRegistration.get(classID - 2);
+		Registration registration = getRegistration(classID - 2);
 		if (registration == null) throw new KryoException("Encountered unregistered class ID: " + (classID - 2));
 		if (TRACE) trace("kryo", "Read class " + (classID - 2) + ": " + className(registration.getType()));
 		memoizedClassId = classID;
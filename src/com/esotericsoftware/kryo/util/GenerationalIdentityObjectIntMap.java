@@ -0,0 +1,162 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import java.util.Arrays;
+
+/** An unordered map where identity comparison is used for keys and the values are ints. This implementation uses linear probing
+ * and stamps each slot with the generation it was written in, so {@link #clear()} only increments the generation and is O(1)
+ * regardless of the table size. Entries cannot be removed individually. Null keys are not allowed. No allocation is done except
+ * when growing the table size.
+ * <p>
+ * Keys from before the last clear are not returned, but stay referenced by the table until their slot is reused, the table
+ * grows, or {@link #clear(int)} shrinks it.
+ * @see IdentityObjectIntMap */
+public class GenerationalIdentityObjectIntMap<K> {
+	public int size;
+
+	K[] keyTable;
+	int[] valueTable;
+	int[] generationTable;
+	int generation = 1;
+
+	private final float loadFactor;
+	private int mask, shift, threshold;
+
+	/** Creates a new map with an initial capacity of 32 and a load factor of 0.5. This map will hold 16 items before growing the
+	 * backing table. */
+	public GenerationalIdentityObjectIntMap () {
+		this(32, 0.5f);
+	}
+
+	/** Creates a new map with the specified initial capacity and load factor. This map will hold initialCapacity * loadFactor
+	 * items before growing the backing table. */
+	public GenerationalIdentityObjectIntMap (int initialCapacity, float loadFactor) {
+		if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+		if (initialCapacity > 1 << 30) throw new IllegalArgumentException("initialCapacity is too large: " + initialCapacity);
+		if (loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+		this.loadFactor = loadFactor;
+		allocate(Math.max(2, ObjectMap.nextPowerOfTwo(initialCapacity)));
+	}
+
+	private void allocate (int capacity) {
+		keyTable = (K[])new Object[capacity];
+		valueTable = new int[capacity];
+		generationTable = new int[capacity];
+		mask = capacity - 1;
+		shift = 32 - Integer.numberOfTrailingZeros(capacity);
+		threshold = Math.min((int)(capacity * loadFactor), capacity - 1);
+	}
+
+	/** Fibonacci hashing spreads the identity hash codes, which are often sequential, across the table. */
+	private int place (Object key) {
+		return (System.identityHashCode(key) * 0x9E3779B9) >>> shift;
+	}
+
+	public void put (K key, int value) {
+		if (key == null) throw new IllegalArgumentException("key cannot be null.");
+		K[] keyTable = this.keyTable;
+		int[] generationTable = this.generationTable;
+		int generation = this.generation, mask = this.mask;
+		int i = place(key);
+		while (generationTable[i] == generation) {
+			if (keyTable[i] == key) {
+				valueTable[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keyTable[i] = key;
+		valueTable[i] = value;
+		generationTable[i] = generation;
+		if (++size >= threshold) resize(keyTable.length << 1);
+	}
+
+	/** @param defaultValue Returned if the key was not associated with a value. */
+	public int get (K key, int defaultValue) {
+		K[] keyTable = this.keyTable;
+		int[] generationTable = this.generationTable;
+		int generation = this.generation, mask = this.mask;
+		int i = place(key);
+		while (generationTable[i] == generation) {
+			if (keyTable[i] == key) return valueTable[i];
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public boolean containsKey (K key) {
+		K[] keyTable = this.keyTable;
+		int[] generationTable = this.generationTable;
+		int generation = this.generation, mask = this.mask;
+		int i = place(key);
+		while (generationTable[i] == generation) {
+			if (keyTable[i] == key) return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	private void resize (int newSize) {
+		K[] oldKeyTable = keyTable;
+		int[] oldValueTable = valueTable;
+		int[] oldGenerationTable = generationTable;
+		int oldGeneration = generation;
+		allocate(newSize);
+		generation = 1;
+		for (int i = 0, n = oldKeyTable.length; i < n; i++) {
+			if (oldGenerationTable[i] != oldGeneration) continue;
+			int index = place(oldKeyTable[i]);
+			while (generationTable[index] == 1)
+				index = (index + 1) & mask;
+			keyTable[index] = oldKeyTable[i];
+			valueTable[index] = oldValueTable[i];
+			generationTable[index] = 1;
+		}
+	}
+
+	/** Removes all entries in O(1) time by starting a new generation. The table is only touched when the generation counter
+	 * overflows. */
+	public void clear () {
+		size = 0;
+		if (++generation == 0) {
+			Arrays.fill(generationTable, 0);
+			Arrays.fill(keyTable, null);
+			generation = 1;
+		}
+	}
+
+	/** Removes all entries and reduces the size of the backing table to the maximum capacity if it is larger, releasing the keys.
+	 * Otherwise this is the same as {@link #clear()}. */
+	public void clear (int maximumCapacity) {
+		if (keyTable.length <= maximumCapacity) {
+			clear();
+			return;
+		}
+		size = 0;
+		generation = 1;
+		allocate(Math.max(2, ObjectMap.nextPowerOfTwo(maximumCapacity)));
+	}
+
+	/** Returns the length of the backing table. */
+	public int capacity () {
+		return keyTable.length;
+	}
+}
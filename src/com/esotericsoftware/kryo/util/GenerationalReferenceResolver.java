@@ -0,0 +1,99 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.ReferenceResolver;
+
+/** Uses a {@link GenerationalIdentityObjectIntMap} to track objects that have already been written; with the default maximum
+ * capacity this gives no gain over {@link MapReferenceResolver} for graphs of more than about 1000 objects, so pass a larger
+ * maximum capacity for large graphs. Like MapReferenceResolver this can handle graphs with any number of objects, but the map
+ * uses linear probing rather than cuckoo hashing, so adding an object never random walks or rehashes into a stash, and
+ * {@link #reset()} does not reallocate the table after a graph that fit in the maximum capacity. Written objects from the
+ * previous graph stay referenced by the table until they are overwritten or the table is larger than the maximum capacity at
+ * reset, so the maximum capacity bounds what a pooled Kryo keeps alive between uses.
+ * <p>
+ * The default maximum capacity is the same as {@link MapReferenceResolver}'s, so by default a pooled Kryo keeps no more alive
+ * than with that resolver, and the table is reallocated at reset after graphs of more than about 1000 objects. When large graphs
+ * are written repeatedly and the Kryo instances are few, pass a larger maximum capacity to reset those graphs in constant time.
+ * Each slot of the table takes 12 to 16 bytes, and the objects of the last graph stay referenced until they are overwritten. */
+public class GenerationalReferenceResolver implements ReferenceResolver {
+	protected Kryo kryo;
+	protected final GenerationalIdentityObjectIntMap writtenObjects = new GenerationalIdentityObjectIntMap();
+	protected final ArrayList readObjects = new ArrayList();
+	private final int maximumCapacity;
+
+	/** The maximum capacity used by {@link #GenerationalReferenceResolver()}, 2048. */
+	static public final int DEFAULT_MAXIMUM_CAPACITY = 2048;
+
+	/** Creates a resolver with the {@link #DEFAULT_MAXIMUM_CAPACITY default maximum capacity}, which resets in constant time only
+	 * after graphs of up to about 1000 objects. */
+	public GenerationalReferenceResolver () {
+		this(DEFAULT_MAXIMUM_CAPACITY);
+	}
+
+	/** @param maximumCapacity When the written objects table is larger than this at {@link #reset()}, it is reallocated at this
+	 *           size. Use {@link Integer#MAX_VALUE} to keep the table at any size, which never reallocates but keeps the objects
+	 *           of the largest graph referenced. */
+	public GenerationalReferenceResolver (int maximumCapacity) {
+		if (maximumCapacity < 0) throw new IllegalArgumentException("maximumCapacity must be >= 0: " + maximumCapacity);
+		this.maximumCapacity = maximumCapacity;
+	}
+
+	public void setKryo (Kryo kryo) {
+		this.kryo = kryo;
+	}
+
+	public int addWrittenObject (Object object) {
+		int id = writtenObjects.size;
+		writtenObjects.put(object, id);
+		return id;
+	}
+
+	public int getWrittenId (Object object) {
+		return writtenObjects.get(object, -1);
+	}
+
+	public int nextReadId (Class type) {
+		int id = readObjects.size();
+		readObjects.add(null);
+		return id;
+	}
+
+	public void setReadObject (int id, Object object) {
+		readObjects.set(id, object);
+	}
+
+	public Object getReadObject (Class type, int id) {
+		return readObjects.get(id);
+	}
+
+	public void reset () {
+		readObjects.clear();
+		writtenObjects.clear(maximumCapacity);
+	}
+
+	/** Returns false for all primitive wrappers. */
+	public boolean useReferences (Class type) {
+		return !Util.isWrapperClass(type);
+	}
+}
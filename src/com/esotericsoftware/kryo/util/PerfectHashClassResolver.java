@@ -0,0 +1,180 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.util.ObjectMap.Entry;
+
+/** Resolves classes like {@link DefaultClassResolver}, but looks up the registration for a class in a two level perfect hash
+ * table built over the registered classes. A lookup is two multiplications and never probes, so it is fast even when the class
+ * changes on every call, eg when writing a collection of objects of alternating types, where the single class memo of
+ * DefaultClassResolver does not help. After a class is registered, lookups go to DefaultClassResolver until there have been at
+ * least as many lookups without a registration as there are registered classes, then the table is rebuilt. Registering many
+ * classes therefore does not rebuild the table for each one, and the cost of a rebuild is spread over the lookups before it.
+ * {@link #build()} can be called after registration to build the table right away. Classes not in the table are looked up by
+ * DefaultClassResolver. */
+public class PerfectHashClassResolver extends DefaultClassResolver {
+	static private final int MULTIPLIER = 0x9E3779B9;
+	static private final int MIN_LOOKUPS_BEFORE_BUILD = 256;
+
+	private Class[] classes;
+	private Registration[] registrations;
+	private int shift;
+	private int[] bucketOffsets, bucketMultipliers, bucketShifts;
+	private boolean dirty = true;
+	private int lookupsSinceRegister;
+
+	public Registration register (Registration registration) {
+		registration = super.register(registration);
+		dirty = true;
+		lookupsSinceRegister = 0;
+		return registration;
+	}
+
+	public Registration getRegistration (Class type) {
+		if (dirty) {
+			if (++lookupsSinceRegister < Math.max(MIN_LOOKUPS_BEFORE_BUILD, classToRegistration.size))
+				return super.getRegistration(type);
+			build();
+		}
+		int hash = System.identityHashCode(type);
+		int bucket = (hash * MULTIPLIER) >>> shift;
+		int index = bucketOffsets[bucket] + ((hash * bucketMultipliers[bucket]) >>> bucketShifts[bucket]);
+		if (classes[index] == type) return registrations[index];
+		return super.getRegistration(type);
+	}
+
+	/** Builds the table over the registered classes. This is done automatically, but can be called after all classes are
+	 * registered so lookups use the table right away. */
+	public void build () {
+		dirty = false;
+		int count = classToRegistration.size;
+		Class[] keys = new Class[count];
+		int[] hashes = new int[count];
+		for (Entry<Class, Registration> entry : classToRegistration.entries()) {
+			keys[--count] = entry.key;
+			hashes[count] = System.identityHashCode(entry.key);
+		}
+		count = removeDuplicateHashes(keys, hashes);
+
+		// Distribute the classes into about one bucket per class.
+		int bucketCount = Math.max(2, ObjectMap.nextPowerOfTwo(count));
+		shift = 32 - Integer.numberOfTrailingZeros(bucketCount);
+		int[] buckets = new int[count], bucketSizes = new int[bucketCount];
+		for (int i = 0; i < count; i++) {
+			buckets[i] = (hashes[i] * MULTIPLIER) >>> shift;
+			bucketSizes[buckets[i]]++;
+		}
+		int[] bucketStarts = new int[bucketCount + 1];
+		for (int i = 0; i < bucketCount; i++)
+			bucketStarts[i + 1] = bucketStarts[i] + bucketSizes[i];
+		int[] sorted = new int[count], next = new int[bucketCount];
+		System.arraycopy(bucketStarts, 0, next, 0, bucketCount);
+		for (int i = 0; i < count; i++)
+			sorted[next[buckets[i]]++] = i;
+
+		// Find a multiplier for each bucket that maps its classes to distinct slots. With at least size^2 slots, about half of
+		// the multipliers do.
+		bucketOffsets = new int[bucketCount];
+		bucketMultipliers = new int[bucketCount];
+		bucketShifts = new int[bucketCount];
+		Random random = new Random(count);
+		boolean[] used = new boolean[0];
+		int tableSize = 0;
+		for (int bucket = 0; bucket < bucketCount; bucket++) {
+			int start = bucketStarts[bucket], size = bucketSizes[bucket];
+			bucketOffsets[bucket] = tableSize;
+			if (size <= 1) {
+				// A multiplier of 0 maps every class to the first slot.
+				tableSize += size;
+				continue;
+			}
+			for (int bits = 32 - Integer.numberOfLeadingZeros(size * size - 1);; bits++) {
+				int slotCount = 1 << bits;
+				if (used.length < slotCount) used = new boolean[slotCount];
+				int multiplier = findMultiplier(hashes, sorted, start, size, bits, used, random);
+				if (multiplier != 0) {
+					bucketMultipliers[bucket] = multiplier;
+					bucketShifts[bucket] = 32 - bits;
+					tableSize += slotCount;
+					break;
+				}
+			}
+		}
+
+		// An empty bucket at the end points to the extra slot, which is always empty.
+		classes = new Class[tableSize + 1];
+		registrations = new Registration[classes.length];
+		for (int i = 0; i < count; i++) {
+			int bucket = buckets[i];
+			int index = bucketOffsets[bucket] + ((hashes[i] * bucketMultipliers[bucket]) >>> bucketShifts[bucket]);
+			classes[index] = keys[i];
+			registrations[index] = classToRegistration.get(keys[i]);
+		}
+	}
+
+	/** Returns a multiplier that maps the hashes to distinct slots, or 0. */
+	private int findMultiplier (int[] hashes, int[] sorted, int start, int size, int bits, boolean[] used, Random random) {
+		int slotCount = 1 << bits, shift = 32 - bits;
+		for (int attempt = 0; attempt < 64; attempt++) {
+			int multiplier = random.nextInt() | 1;
+			boolean collision = false;
+			for (int i = start, end = start + size; i < end; i++) {
+				int slot = (hashes[sorted[i]] * multiplier) >>> shift;
+				if (used[slot]) {
+					collision = true;
+					break;
+				}
+				used[slot] = true;
+			}
+			for (int i = 0; i < slotCount; i++)
+				used[i] = false;
+			if (!collision) return multiplier;
+		}
+		return 0;
+	}
+
+	/** Classes with the same identity hash code can't be separated by any multiplier, so they are removed and looked up by
+	 * DefaultClassResolver instead.
+	 * @return The number of remaining classes, which are moved to the start of the arrays. */
+	static private int removeDuplicateHashes (Class[] keys, int[] hashes) {
+		int count = hashes.length;
+		int[] sortedHashes = hashes.clone();
+		Arrays.sort(sortedHashes);
+		IntArray duplicates = null;
+		for (int i = 1; i < count; i++) {
+			if (sortedHashes[i] == sortedHashes[i - 1]) {
+				if (duplicates == null) duplicates = new IntArray();
+				duplicates.add(sortedHashes[i]);
+			}
+		}
+		if (duplicates == null) return count;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (duplicates.contains(hashes[i])) continue;
+			keys[n] = keys[i];
+			hashes[n++] = hashes[i];
+		}
+		return n;
+	}
+}
@@ -0,0 +1,155 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import java.lang.reflect.Modifier;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.NoReferences;
+import com.esotericsoftware.kryo.ReferenceResolver;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.FieldSerializer.CachedField;
+
+/** Wraps a ReferenceResolver and only uses references for types whose objects can be shared or be part of a cycle. References
+ * are not used for:
+ * <ul>
+ * <li>primitive wrappers and enums,</li>
+ * <li>classes annotated with {@link NoReferences},</li>
+ * <li>classes registered with a serializer that is {@link Serializer#isImmutable() immutable}, such as String,</li>
+ * <li>if {@link #setAnalyzeFields(boolean) field analysis} is enabled, leaf classes: primitive arrays, and classes registered with
+ * a {@link FieldSerializer} whose fields are all primitives or final leaf classes.</li>
+ * </ul>
+ * Objects of these types that appear more than once in a graph are written each time and read as separate copies, so this
+ * should only be used when the identity of such objects does not matter. Leaf classes can never be part of a cycle. The decision
+ * is cached in the {@link Registration#setUseReferences(Boolean) registration}, so the class is analyzed once. Writing and
+ * reading must use the same settings and registrations. */
+public class SelectiveReferenceResolver implements ReferenceResolver {
+	protected Kryo kryo;
+	protected final ReferenceResolver resolver;
+	private boolean analyzeFields;
+
+	/** Uses a {@link MapReferenceResolver} for types that use references. */
+	public SelectiveReferenceResolver () {
+		this(new MapReferenceResolver());
+	}
+
+	public SelectiveReferenceResolver (ReferenceResolver resolver) {
+		if (resolver == null) throw new IllegalArgumentException("resolver cannot be null.");
+		this.resolver = resolver;
+	}
+
+	public void setKryo (Kryo kryo) {
+		this.kryo = kryo;
+		resolver.setKryo(kryo);
+	}
+
+	public int getWrittenId (Object object) {
+		return resolver.getWrittenId(object);
+	}
+
+	public int addWrittenObject (Object object) {
+		return resolver.addWrittenObject(object);
+	}
+
+	public int nextReadId (Class type) {
+		return resolver.nextReadId(type);
+	}
+
+	public void setReadObject (int id, Object object) {
+		resolver.setReadObject(id, object);
+	}
+
+	public Object getReadObject (Class type, int id) {
+		return resolver.getReadObject(type, id);
+	}
+
+	public void reset () {
+		resolver.reset();
+	}
+
+	public boolean useReferences (Class type) {
+		if (!resolver.useReferences(type)) return false;
+		Registration registration = getRegistration(type);
+		if (registration == null) return needsReferences(type, null);
+		Boolean useReferences = registration.getUseReferences();
+		if (useReferences == null) {
+			useReferences = needsReferences(type, registration) ? Boolean.TRUE : Boolean.FALSE;
+			registration.setUseReferences(useReferences);
+		}
+		return useReferences;
+	}
+
+	/** Returns true if references are needed for the type. Subclasses can override this to change which types use references.
+	 * @param registration May be null if the type is not registered. */
+	protected boolean needsReferences (Class type, Registration registration) {
+		if (Enum.class.isAssignableFrom(type)) return false;
+		if (type.isAnnotationPresent(NoReferences.class)) return false;
+		if (registration != null && registration.getSerializer().isImmutable()) return false;
+		if (analyzeFields && isLeaf(type, new IdentityMap())) return false;
+		return true;
+	}
+
+	/** Returns true if objects of the type cannot reference other objects that use references.
+	 * @param visiting The types being analyzed, which are not leaves if they are reached again. */
+	private boolean isLeaf (Class type, IdentityMap visiting) {
+		if (type.isPrimitive() || Util.isWrapperClass(type) || Enum.class.isAssignableFrom(type) || type == String.class)
+			return true;
+		if (type.isArray()) return type.getComponentType().isPrimitive();
+		if (visiting.containsKey(type)) return false;
+		Registration registration = getRegistration(type);
+		if (registration == null || !(registration.getSerializer() instanceof FieldSerializer)) return false;
+		visiting.put(type, type);
+		for (CachedField field : ((FieldSerializer)registration.getSerializer()).getFields()) {
+			Class fieldType = field.getField().getType();
+			if (fieldType.isPrimitive() || Enum.class.isAssignableFrom(fieldType)) continue;
+			// A field of a type that is not final can hold a subclass.
+			if (!fieldType.isArray() && !Modifier.isFinal(fieldType.getModifiers())) return false;
+			if (!isLeaf(fieldType, visiting)) return false;
+		}
+		visiting.remove(type);
+		return true;
+	}
+
+	/** Returns the registration for the type, registering it implicitly if registration is not required so writing and reading
+	 * analyze the same serializers.
+	 * @return May be null if registration is required and the type is not registered. */
+	private Registration getRegistration (Class type) {
+		if (kryo.isRegistrationRequired()) return kryo.getClassResolver().getRegistration(type);
+		return kryo.getRegistration(type);
+	}
+
+	/** If true, leaf classes do not use references, so a leaf object that appears more than once in a graph is read as separate
+	 * copies. This is only safe when the identity of such objects does not matter. Default is false.
+	 * <p>
+	 * This must be set before the resolver is first used, since the decision for a class is cached in its registration. */
+	public void setAnalyzeFields (boolean analyzeFields) {
+		this.analyzeFields = analyzeFields;
+	}
+
+	public boolean getAnalyzeFields () {
+		return analyzeFields;
+	}
+
+	public ReferenceResolver getResolver () {
+		return resolver;
+	}
+}
@@ -0,0 +1,69 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.util;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.RegistrationTable;
+
+/** Resolves classes like {@link DefaultClassResolver}, looking up classes and IDs that are not registered with this resolver in
+ * a shared {@link RegistrationTable}. A registration from the table is added to this resolver the first time it is used, with a
+ * serializer created for this resolver's Kryo. Classes registered with this resolver take precedence over the table.
+ * @see Kryo#Kryo(RegistrationTable) */
+public class SharedClassResolver extends DefaultClassResolver {
+	private final RegistrationTable table;
+
+	public SharedClassResolver (RegistrationTable table) {
+		if (table == null) throw new IllegalArgumentException("table cannot be null.");
+		this.table = table;
+	}
+
+	public Registration getRegistration (Class type) {
+		Registration registration = super.getRegistration(type);
+		if (registration == null) {
+			registration = table.newRegistration(kryo, type);
+			if (registration != null) register(registration);
+		}
+		return registration;
+	}
+
+	public Registration getRegistration (int classID) {
+		Registration registration = super.getRegistration(classID);
+		if (registration == null) {
+			Class type = table.getType(classID);
+			// The class was registered again with this resolver, which replaces the table's registration.
+			if (type == null || classToRegistration.containsKey(type)) return null;
+			registration = table.newRegistration(kryo, classID);
+			register(registration);
+		}
+		return registration;
+	}
+
+	/** Returns the registrations that have an ID, including those from the table, which are added to this resolver first. */
+	public Registration[] getRegistrations () {
+		for (int id : table.getIds())
+			getRegistration(id);
+		return super.getRegistrations();
+	}
+
+	public RegistrationTable getTable () {
+		return table;
+	}
+}
@@ -0,0 +1,181 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Pipe;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.ChannelInput;
+import com.esotericsoftware.kryo.io.ChannelOutput;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+
+public class ChannelInputOutputTest extends KryoTestCase {
+	public void testChannel () {
+		kryo.register(ArrayList.class);
+		kryo.register(byte[].class);
+		ArrayList list = newList();
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte)i;
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ChannelOutput output = new ChannelOutput(Channels.newChannel(stream), 64);
+		kryo.writeClassAndObject(output, list);
+		kryo.writeClassAndObject(output, bytes);
+		output.flush();
+
+		ByteBufferOutput expected = new ByteBufferOutput(1024, -1);
+		kryo.writeClassAndObject(expected, list);
+		kryo.writeClassAndObject(expected, bytes);
+		assertEquals(expected.total(), output.total());
+		assertTrue(Arrays.equals(expected.toBytes(), stream.toByteArray()));
+
+		ChannelInput input = new ChannelInput(Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), 64);
+		assertEquals(list, kryo.readClassAndObject(input));
+		assertTrue(Arrays.equals(bytes, (byte[])kryo.readClassAndObject(input)));
+		assertEquals(stream.size(), input.total());
+	}
+
+	public void testFileChannel () throws Exception {
+		kryo.register(ArrayList.class);
+		ArrayList list = newList();
+
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			ChannelOutput output = new ChannelOutput(channel, 128);
+			for (int i = 0; i < 10; i++)
+				kryo.writeClassAndObject(output, list);
+			output.flush();
+			assertEquals(output.total(), channel.size());
+
+			channel.position(0);
+			ChannelInput input = new ChannelInput(channel, 128);
+			for (int i = 0; i < 10; i++)
+				assertEquals(list, kryo.readClassAndObject(input));
+			assertEquals(-1, input.read());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	public void testLengthPrefix () {
+		CompatibleFieldSerializer serializer = new CompatibleFieldSerializer(kryo, TestClass.class);
+		serializer.setChunkedEncoding(false);
+		kryo.register(TestClass.class, serializer);
+		kryo.register(ArrayList.class);
+		TestClass object = new TestClass();
+		object.list = newList();
+		object.value = 1234;
+
+		// The object is larger than the buffer, so the field lengths can't be patched after the buffer is flushed.
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		ChannelOutput output = new ChannelOutput(Channels.newChannel(stream), 64);
+		kryo.writeObject(output, object);
+		output.flush();
+		assertTrue(stream.size() > 64);
+
+		ChannelInput input = new ChannelInput(Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), 64);
+		TestClass read = kryo.readObject(input, TestClass.class);
+		assertEquals(object.list, read.list);
+		assertEquals(object.value, read.value);
+		assertEquals(stream.size(), input.total());
+	}
+
+	public void testNonBlockingChannel () throws Exception {
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.source().configureBlocking(false);
+			try {
+				new ChannelInput(pipe.source());
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+
+			pipe.source().configureBlocking(true);
+			ChannelInput input = new ChannelInput(pipe.source());
+			pipe.source().configureBlocking(false);
+			try {
+				input.readInt();
+				fail();
+			} catch (KryoException expected) {
+			}
+		} finally {
+			pipe.source().close();
+			pipe.sink().close();
+		}
+	}
+
+	public void testNonBlockingOutputChannel () throws Exception {
+		Pipe pipe = Pipe.open();
+		try {
+			pipe.sink().configureBlocking(false);
+			try {
+				new ChannelOutput(pipe.sink());
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+			try {
+				new ChannelOutput().setChannel(pipe.sink());
+				fail();
+			} catch (IllegalArgumentException expected) {
+			}
+
+			pipe.sink().configureBlocking(true);
+			ChannelOutput output = new ChannelOutput(pipe.sink());
+			pipe.sink().configureBlocking(false);
+			try {
+				// Nothing reads from the pipe, so the channel stops accepting bytes once the pipe is full.
+				for (int i = 0; i < 1024; i++)
+					output.writeBytes(new byte[4096]);
+				fail();
+			} catch (KryoException expected) {
+			}
+		} finally {
+			pipe.source().close();
+			pipe.sink().close();
+		}
+	}
+
+	private ArrayList newList () {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 100; i++) {
+			list.add("string " + i);
+			list.add(i * 1000);
+			list.add(i * 1.5f);
+		}
+		return list;
+	}
+
+	static public class TestClass {
+		public ArrayList list;
+		public int value;
+	}
+}
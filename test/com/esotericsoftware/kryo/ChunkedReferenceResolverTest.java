@@ -0,0 +1,183 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.GenerationalReferenceResolverTest.Node;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import com.esotericsoftware.kryo.util.ChunkedObjectArray;
+import com.esotericsoftware.kryo.util.ChunkedReferenceResolver;
+
+public class ChunkedReferenceResolverTest extends KryoTestCase {
+	public void testArray () {
+		ChunkedObjectArray array = new ChunkedObjectArray();
+		for (int i = 0; i < 5000; i++)
+			assertEquals(i, array.add(i));
+		assertEquals(5000, array.size);
+		assertEquals(5120, array.capacity());
+		for (int i = 0; i < 5000; i++)
+			assertEquals(i, array.get(i));
+		array.set(4000, "a");
+		assertEquals("a", array.get(4000));
+		try {
+			array.get(5000);
+			fail();
+		} catch (IndexOutOfBoundsException ex) {
+		}
+
+		array.clear();
+		assertEquals(0, array.size);
+		assertEquals(1024, array.capacity());
+		assertEquals(0, array.add(null));
+		assertNull(array.get(0));
+	}
+
+	public void testGraphs () {
+		kryo = new Kryo(new ChunkedReferenceResolver());
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		Output output = new Output(1024, -1);
+		for (int size : new int[] {10, 10000, 3}) {
+			ArrayList<Node> nodes = GenerationalReferenceResolverTest.nodes(size);
+			nodes.get(0).other = nodes.get(size - 1);
+			output.clear();
+			kryo.writeObject(output, nodes);
+			ArrayList<Node> read = kryo.readObject(new Input(output.toBytes()), ArrayList.class);
+			assertEquals(size, read.size());
+			for (int i = 1; i < size; i++)
+				assertSame(read.get(i / 2), read.get(i).other);
+			assertSame(read.get(size - 1), read.get(0).other);
+		}
+	}
+
+	public void testReferencedIds () {
+		ChunkedReferenceResolver resolver = new ChunkedReferenceResolver();
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+
+		Node a = new Node(), b = new Node(), c = new Node();
+		ArrayList list = new ArrayList();
+		list.add(a);
+		list.add(b);
+		list.add(a);
+		list.add(c);
+		Output output = new Output(1024, -1);
+		kryo.writeObject(output, list);
+		byte[] bytes = output.toBytes();
+
+		// The list has ID 0, a has ID 1.
+		resolver.setReferencedIds(new long[] {1 << 1});
+		ArrayList read = kryo.readObject(new Input(bytes), ArrayList.class);
+		assertEquals(4, read.size());
+		assertSame(read.get(0), read.get(2));
+		assertNotSame(read.get(1), read.get(3));
+		assertNull(resolver.getReferencedIds());
+
+		resolver.setReferencedIds(new long[] {1 << 2});
+		try {
+			kryo.readObject(new Input(bytes), ArrayList.class);
+			fail();
+		} catch (KryoException ex) {
+		}
+	}
+
+	public void testTwoPass () {
+		ChunkedReferenceResolver resolver = new ChunkedReferenceResolver();
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		Output output = new Output(1024, -1);
+		for (int size : new int[] {10, 10000, 3}) {
+			ArrayList<Node> nodes = GenerationalReferenceResolverTest.nodes(size);
+			nodes.get(0).other = nodes.get(size - 1);
+			output.clear();
+			resolver.writeClassAndObject(output, nodes);
+			assertEquals(0, resolver.getWrittenReferencedIds().length);
+			ArrayList<Node> read = (ArrayList)resolver.readClassAndObject(new Input(output.toBytes()));
+			assertEquals(size, read.size());
+			for (int i = 1; i < size; i++)
+				assertSame(read.get(i / 2), read.get(i).other);
+			assertSame(read.get(size - 1), read.get(0).other);
+		}
+
+		output.clear();
+		resolver.writeClassAndObject(output, null);
+		assertNull(resolver.readClassAndObject(new Input(output.toBytes())));
+	}
+
+	public void testTwoPassStreams () {
+		ChunkedReferenceResolver resolver = new ChunkedReferenceResolver();
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		ArrayList<Node> nodes = GenerationalReferenceResolverTest.nodes(100);
+
+		UnsafeOutput output = new UnsafeOutput(1024, -1);
+		resolver.writeClassAndObject(output, nodes);
+		assertNodes(nodes, (ArrayList)resolver.readClassAndObject(new UnsafeInput(output.toBytes())));
+
+		ByteBufferOutput byteBufferOutput = new ByteBufferOutput(1024, -1);
+		byteBufferOutput.order(ByteOrder.LITTLE_ENDIAN);
+		byteBufferOutput.setVarIntsEnabled(false);
+		resolver.writeClassAndObject(byteBufferOutput, nodes);
+		ByteBufferInput input = new ByteBufferInput(ByteBuffer.wrap(byteBufferOutput.toBytes()).order(ByteOrder.LITTLE_ENDIAN));
+		input.setVarIntsEnabled(false);
+		assertNodes(nodes, (ArrayList)resolver.readClassAndObject(input));
+	}
+
+	private void assertNodes (ArrayList<Node> expected, ArrayList<Node> read) {
+		assertEquals(expected.size(), read.size());
+		for (int i = 0; i < expected.size(); i++)
+			assertEquals(expected.get(i).value, read.get(i).value);
+		for (int i = 1; i < expected.size(); i++)
+			assertSame(read.get(i / 2), read.get(i).other);
+	}
+
+	public void testWrittenReferencedIds () {
+		ChunkedReferenceResolver resolver = new ChunkedReferenceResolver();
+		kryo = new Kryo(resolver);
+		kryo.setAutoReset(false);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+
+		Node a = new Node(), b = new Node();
+		ArrayList list = new ArrayList();
+		list.add(a);
+		list.add(b);
+		list.add(b);
+		list.add(b);
+		kryo.writeObject(new Output(1024, -1), list);
+		// The list has ID 0, b has ID 2.
+		long[] ids = resolver.getWrittenReferencedIds();
+		assertEquals(1, ids.length);
+		assertEquals(1 << 2, ids[0]);
+		kryo.reset();
+		assertEquals(0, resolver.getWrittenReferencedIds().length);
+	}
+}
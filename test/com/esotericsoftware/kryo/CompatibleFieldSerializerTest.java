@@ -19,13 +19,20 @@
 
 package com.esotericsoftware.kryo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
 import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
 import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer.Schema;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer.SessionSchemaStore;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import org.apache.commons.lang.builder.EqualsBuilder;
 
@@ -46,6 +53,21 @@ public class CompatibleFieldSerializerTest extends KryoTestCase {
 		roundTrip(107, 107, object1);
 	}
 
+	public void testNestedObjects () throws FileNotFoundException {
+		// Nesting deeper than the initial number of chunked buffers.
+		TestClass object1 = new TestClass();
+		TestClass parent = object1;
+		for (int i = 0; i < 5; i++) {
+			parent.child = new TestClass();
+			parent.moo = i;
+			parent = parent.child;
+		}
+		kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
+		kryo.register(TestClass.class);
+		kryo.register(AnotherClass.class);
+		roundTrip(297, 297, object1);
+	}
+
 	public void testAddedField () throws FileNotFoundException {
 		TestClass object1 = new TestClass();
 		object1.child = new TestClass();
@@ -63,6 +85,120 @@ public class CompatibleFieldSerializerTest extends KryoTestCase {
 		assertEquals(object1, object2);
 	}
 
+	public void testLengthPrefixEncoding () {
+		TestClass object1 = new TestClass();
+		object1.child = new TestClass();
+		object1.other = new AnotherClass();
+		object1.other.value = "meow";
+		kryo.getFieldSerializerConfig().setChunkedEncoding(false);
+		kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
+		kryo.register(TestClass.class);
+		kryo.register(AnotherClass.class);
+
+		// The length is patched in place when writing to a buffer.
+		Output output = new Output(16, -1);
+		kryo.writeClassAndObject(output, object1);
+		Input input = new Input(output.toBytes());
+		assertEquals(object1, kryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+
+		output = new UnsafeOutput(16, -1);
+		kryo.writeClassAndObject(output, object1);
+		input = new UnsafeInput(output.toBytes());
+		assertEquals(object1, kryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+
+		// Chunked encoding is used when writing to a stream.
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		output = new Output(outStream, 10);
+		kryo.writeClassAndObject(output, object1);
+		output.flush();
+		input = new Input(new ByteArrayInputStream(outStream.toByteArray()), 10);
+		assertEquals(object1, kryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+	}
+
+	public void testLengthPrefixEncodingAddedAndRemovedField () {
+		TestClass object1 = new TestClass();
+		object1.child = new TestClass();
+		kryo.getFieldSerializerConfig().setChunkedEncoding(false);
+
+		CompatibleFieldSerializer serializer = new CompatibleFieldSerializer(kryo, TestClass.class);
+		serializer.removeField("text");
+		kryo.register(TestClass.class, serializer);
+		Output output = new Output(16, -1);
+		kryo.writeClassAndObject(output, object1);
+
+		kryo.register(TestClass.class, new CompatibleFieldSerializer(kryo, TestClass.class));
+		Input input = new Input(output.toBytes());
+		assertEquals(object1, kryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+
+		output.clear();
+		kryo.writeClassAndObject(output, object1);
+
+		kryo.register(TestClass.class, serializer);
+		input = new Input(output.toBytes());
+		assertEquals(object1, kryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+	}
+
+	public void testSchemaStore () {
+		TestClass object1 = new TestClass();
+		object1.child = new TestClass();
+		object1.other = new AnotherClass();
+		object1.other.value = "meow";
+		kryo.setDefaultSerializer(CompatibleFieldSerializer.class);
+		kryo.register(TestClass.class);
+		kryo.register(AnotherClass.class);
+		CompatibleFieldSerializer.setSchemaStore(kryo, new SessionSchemaStore());
+
+		// The reader has a serializer with a removed field, which is skipped.
+		Kryo readKryo = new Kryo();
+		readKryo.setReferences(false);
+		readKryo.setRegistrationRequired(true);
+		CompatibleFieldSerializer serializer = new CompatibleFieldSerializer(readKryo, TestClass.class);
+		serializer.removeField("text");
+		readKryo.register(TestClass.class, serializer);
+		readKryo.register(AnotherClass.class, new CompatibleFieldSerializer(readKryo, AnotherClass.class));
+		CompatibleFieldSerializer.setSchemaStore(readKryo, new SessionSchemaStore());
+
+		// The first object graph writes the field names, later graphs only the schema ids.
+		Output output = new Output(16, -1);
+		kryo.writeClassAndObject(output, object1);
+		int firstLength = output.position();
+		kryo.writeClassAndObject(output, object1);
+		int secondLength = output.position() - firstLength;
+		assertEquals(109, firstLength);
+		assertEquals(78, secondLength);
+
+		Input input = new Input(output.toBytes());
+		assertEquals(object1, readKryo.readClassAndObject(input));
+		assertEquals(object1, readKryo.readClassAndObject(input));
+		assertEquals(output.total(), input.total());
+
+		// A new session doesn't know the schema ids.
+		CompatibleFieldSerializer.setSchemaStore(readKryo, new SessionSchemaStore());
+		input.setPosition(firstLength);
+		try {
+			readKryo.readClassAndObject(input);
+			fail();
+		} catch (KryoException expected) {
+		}
+
+		// A schema id known for a different class is rejected.
+		SessionSchemaStore schemaStore = new SessionSchemaStore();
+		schemaStore.putReadSchema(0, new Schema(AnotherClass.class.getName(), new String[] {"value"}));
+		CompatibleFieldSerializer.setSchemaStore(readKryo, schemaStore);
+		input.setPosition(firstLength);
+		try {
+			readKryo.readClassAndObject(input);
+			fail();
+		} catch (KryoException expected) {
+			assertTrue(expected.getMessage().startsWith("Schema id 0 is for class " + AnotherClass.class.getName()));
+		}
+	}
+
 	public void testAddedFieldToClassWithManyFields () throws FileNotFoundException {
 		// class must have more than CompatibleFieldSerializer#THRESHOLD_BINARY_SEARCH number of fields
 		ClassWithManyFields object1 = new ClassWithManyFields();
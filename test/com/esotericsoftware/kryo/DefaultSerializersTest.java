@@ -38,6 +38,7 @@ import org.objenesis.strategy.StdInstantiatorStrategy;
 
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
 
 /** @author Nathan Sweet <misc@n4te.com> */
 public class DefaultSerializersTest extends KryoTestCase {
@@ -389,6 +390,21 @@ public class DefaultSerializersTest extends KryoTestCase {
 		roundTrip(78, 78, new URL("https://github.com:443/EsotericSoftware/kryo/pulls?utf8=%E2%9C%93&q=is%3Apr"));
 	}
 
+	public void testGenerateSerializerWithoutProcessor () {
+		// The annotation processor is not run for the tests, so the default serializer is used.
+		kryo.register(Generated.class);
+		assertEquals(FieldSerializer.class, kryo.getSerializer(Generated.class).getClass());
+		Generated generated = new Generated();
+		generated.value = 123;
+		roundTrip(3, 5, generated);
+
+		try {
+			new Kryo().registerGenerated(Generated.class);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
 	public enum TestEnum {
 		a, b, c
 	}
@@ -402,6 +418,15 @@ public class DefaultSerializersTest extends KryoTestCase {
 		}
 	}
 
+	@GenerateSerializer
+	static public class Generated {
+		public int value;
+
+		public boolean equals (Object obj) {
+			return obj instanceof Generated && ((Generated)obj).value == value;
+		}
+	}
+
 	static class BigDecimalSubclass extends BigDecimal {
 		public BigDecimalSubclass (BigInteger unscaledVal, int scale) {
 			super(unscaledVal, scale);
@@ -82,6 +82,57 @@ public class FieldSerializerTest extends KryoTestCase {
 		roundTrip(78, 88, test);
 	}
 
+	public void testMemRegions () {
+		FieldSerializer serializer = new FieldSerializer(kryo, DefaultTypes.class);
+		serializer.setUseMemRegions(true);
+		if (!serializer.getUseMemRegions()) return; // Unsafe is unavailable.
+		kryo.register(DefaultTypes.class, serializer);
+		kryo.register(byte[].class);
+		DefaultTypes test = new DefaultTypes();
+		test.booleanField = true;
+		test.byteField = 123;
+		test.charField = 'Z';
+		test.shortField = 12345;
+		test.intField = 123456;
+		test.longField = 123456789;
+		test.floatField = 123.456f;
+		test.doubleField = 1.23456d;
+		test.StringField = "stringvalue";
+		test.IntegerField = -123456;
+		roundTrip(60, 61, test);
+
+		// Data written with a different memory layout fails to be read.
+		FieldSerializer primitivesSerializer = new FieldSerializer(kryo, HasPrimitiveFields.class);
+		primitivesSerializer.setUseMemRegions(true);
+		kryo.register(HasPrimitiveFields.class, primitivesSerializer);
+		HasPrimitiveFields primitives = new HasPrimitiveFields();
+		primitives.a = 1;
+		primitives.b = 2;
+		primitives.c = 3;
+		Output output = new Output(64);
+		kryo.writeObject(output, primitives);
+		byte[] bytes = output.toBytes();
+		HasPrimitiveFields read = kryo.readObject(new Input(bytes), HasPrimitiveFields.class);
+		assertEquals(3, read.c);
+		bytes[0]++;
+		try {
+			kryo.readObject(new Input(bytes), HasPrimitiveFields.class);
+			fail("Expected KryoException.");
+		} catch (KryoException expected) {
+			assertTrue(expected.getMessage().startsWith("Memory layout"));
+		}
+		// The fingerprint is only written for the first object in the graph.
+		kryo.register(HasPrimitiveFields[].class);
+		HasPrimitiveFields[] array = {primitives, new HasPrimitiveFields()};
+		array[1].c = 4;
+		output = new Output(64);
+		kryo.writeObject(output, array);
+		assertEquals(1 + 2 * (1 + bytes.length) - 4, output.position());
+		HasPrimitiveFields[] readArray = kryo.readObject(new Input(output.toBytes()), HasPrimitiveFields[].class);
+		assertEquals(3, readArray[0].c);
+		assertEquals(4, readArray[1].c);
+	}
+
 	public void testFieldRemoval () {
 		kryo.register(DefaultTypes.class);
 		kryo.register(byte[].class);
@@ -946,6 +997,11 @@ public class FieldSerializerTest extends KryoTestCase {
 		}
 	}
 
+	static public class HasPrimitiveFields {
+		int a, b;
+		long c;
+	}
+
 	static public class HasStringField {
 		public String text;
 
@@ -0,0 +1,154 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.serializers.GeneratedFieldSerializer;
+
+public class GeneratedFieldSerializerTest extends KryoTestCase {
+	{
+		supportsCopy = true;
+	}
+
+	public void testGeneratedFieldSerializer () {
+		kryo.register(TestClass.class, new GeneratedFieldSerializer(kryo, TestClass.class));
+		assertTrue(((GeneratedFieldSerializer)kryo.getSerializer(TestClass.class)).isGenerated());
+		TestClass object1 = newTestClass();
+		assertSameBytes(object1);
+		roundTrip(64, 96, object1);
+	}
+
+	public void testUseAsm () {
+		kryo.getFieldSerializerConfig().setUseAsm(true);
+		kryo.register(TestClass.class, new GeneratedFieldSerializer(kryo, TestClass.class));
+		assertTrue(((GeneratedFieldSerializer)kryo.getSerializer(TestClass.class)).isGenerated());
+		TestClass object1 = newTestClass();
+		assertSameBytes(object1);
+		roundTrip(64, 96, object1);
+	}
+
+	public void testNoVarInts () {
+		kryo.register(TestClass.class, new GeneratedFieldSerializer(kryo, TestClass.class));
+		TestClass object1 = newTestClass();
+		object1.intValue = -1;
+		object1.longValue = Long.MIN_VALUE;
+		assertSameBytes(object1);
+	}
+
+	public void testRemovedField () {
+		GeneratedFieldSerializer serializer = new GeneratedFieldSerializer(kryo, TestClass.class);
+		kryo.register(TestClass.class, serializer);
+		serializer.removeField("text");
+		assertTrue(serializer.isGenerated());
+		TestClass object1 = newTestClass();
+		object1.text = null;
+		object1.child.text = null;
+		FieldSerializer fieldSerializer = new FieldSerializer(kryo, TestClass.class);
+		fieldSerializer.removeField("text");
+		assertTrue(Arrays.equals(write(object1, fieldSerializer), write(object1, serializer)));
+		roundTrip(55, 87, object1);
+	}
+
+	public void testInaccessibleFields () {
+		kryo.register(PrivateClass.class, new GeneratedFieldSerializer(kryo, PrivateClass.class));
+		assertFalse(((GeneratedFieldSerializer)kryo.getSerializer(PrivateClass.class)).isGenerated());
+		PrivateClass object1 = new PrivateClass();
+		object1.value = 12;
+		roundTrip(2, 5, object1);
+	}
+
+	private TestClass newTestClass () {
+		TestClass object1 = new TestClass(33);
+		object1.intValue = 1234;
+		object1.longValue = 123456789012L;
+		object1.floatValue = 1.5f;
+		object1.doubleValue = 2.25;
+		object1.shortValue = -3;
+		object1.byteValue = 4;
+		object1.booleanValue = true;
+		object1.charValue = 'x';
+		object1.text = "text";
+		object1.packageValue = 5;
+		object1.privateValue = 6;
+		object1.child = new TestClass();
+		object1.child.text = "child";
+		return object1;
+	}
+
+	private void assertSameBytes (Object object) {
+		Class type = object.getClass();
+		byte[] expected = write(object, new FieldSerializer(kryo, type));
+		byte[] actual = write(object, kryo.getSerializer(type));
+		assertTrue(Arrays.equals(expected, actual));
+	}
+
+	private byte[] write (Object object, Serializer serializer) {
+		Output output = new Output(64, -1);
+		kryo.writeObject(output, object, serializer);
+		return output.toBytes();
+	}
+
+	static public class TestClass {
+		public int intValue;
+		public long longValue;
+		public float floatValue;
+		public double doubleValue;
+		public short shortValue;
+		public byte byteValue;
+		public boolean booleanValue;
+		public char charValue;
+		public String text;
+		int packageValue;
+		private int privateValue;
+		public final int finalValue;
+		public TestClass child;
+
+		public TestClass () {
+			finalValue = 0;
+		}
+
+		public TestClass (int finalValue) {
+			this.finalValue = finalValue;
+		}
+
+		public boolean equals (Object obj) {
+			if (this == obj) return true;
+			if (obj == null || getClass() != obj.getClass()) return false;
+			TestClass other = (TestClass)obj;
+			if (intValue != other.intValue || longValue != other.longValue || floatValue != other.floatValue
+				|| doubleValue != other.doubleValue || shortValue != other.shortValue || byteValue != other.byteValue
+				|| booleanValue != other.booleanValue || charValue != other.charValue || packageValue != other.packageValue
+				|| privateValue != other.privateValue || finalValue != other.finalValue) return false;
+			if (text == null ? other.text != null : !text.equals(other.text)) return false;
+			return child == null ? other.child == null : child.equals(other.child);
+		}
+	}
+
+	static private class PrivateClass {
+		private int value;
+
+		public boolean equals (Object obj) {
+			return obj instanceof PrivateClass && ((PrivateClass)obj).value == value;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.GenerationalIdentityObjectIntMap;
+import com.esotericsoftware.kryo.util.GenerationalReferenceResolver;
+
+public class GenerationalReferenceResolverTest extends KryoTestCase {
+	public void testMap () {
+		GenerationalIdentityObjectIntMap map = new GenerationalIdentityObjectIntMap();
+		Object[] keys = new Object[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = new Object();
+			map.put(keys[i], i);
+		}
+		assertEquals(1000, map.size);
+		for (int i = 0; i < keys.length; i++)
+			assertEquals(i, map.get(keys[i], -1));
+		assertEquals(-1, map.get(new Object(), -1));
+		map.put(keys[5], 42);
+		assertEquals(42, map.get(keys[5], -1));
+		assertEquals(1000, map.size);
+
+		int capacity = map.capacity();
+		map.clear();
+		assertEquals(0, map.size);
+		assertEquals(capacity, map.capacity());
+		for (int i = 0; i < keys.length; i++)
+			assertFalse(map.containsKey(keys[i]));
+		map.put(keys[1], 1);
+		assertEquals(1, map.get(keys[1], -1));
+		assertEquals(-1, map.get(keys[2], -1));
+
+		map.clear(64);
+		assertEquals(64, map.capacity());
+		assertEquals(-1, map.get(keys[1], -1));
+	}
+
+	public void testGraphs () {
+		kryo = new Kryo(new GenerationalReferenceResolver());
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		Output output = new Output(1024, -1);
+		for (int size : new int[] {10, 10000, 3}) {
+			ArrayList<Node> nodes = nodes(size);
+			nodes.get(0).other = nodes.get(size - 1);
+			output.clear();
+			kryo.writeObject(output, nodes);
+			ArrayList<Node> read = kryo.readObject(new Input(output.toBytes()), ArrayList.class);
+			assertEquals(size, read.size());
+			for (int i = 1; i < size; i++)
+				assertSame(read.get(i / 2), read.get(i).other);
+			assertSame(read.get(size - 1), read.get(0).other);
+		}
+	}
+
+	public void testMaximumCapacity () {
+		GenerationalReferenceResolver resolver = new GenerationalReferenceResolver() {
+			public void reset () {
+				super.reset();
+				assertTrue(writtenObjects.capacity() <= GenerationalReferenceResolver.DEFAULT_MAXIMUM_CAPACITY);
+			}
+		};
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		kryo.writeObject(new Output(1024, -1), nodes(10000));
+
+		// A larger maximum capacity keeps the table of a large graph, so reset does not reallocate it.
+		final int[] capacity = new int[1];
+		resolver = new GenerationalReferenceResolver(1 << 20) {
+			public void reset () {
+				super.reset();
+				capacity[0] = writtenObjects.capacity();
+			}
+		};
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Node.class);
+		kryo.writeObject(new Output(1024, -1), nodes(10000));
+		assertTrue(capacity[0] > 10000);
+	}
+
+	static ArrayList<Node> nodes (int size) {
+		ArrayList<Node> nodes = new ArrayList(size);
+		for (int i = 0; i < size; i++) {
+			Node node = new Node();
+			node.value = i;
+			// Each node references one written before it.
+			if (i > 0) node.other = nodes.get(i / 2);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	static public class Node {
+		int value;
+		Node other;
+	}
+}
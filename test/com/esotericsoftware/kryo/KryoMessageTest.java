@@ -0,0 +1,160 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.KryoMessageReader;
+import com.esotericsoftware.kryo.io.KryoMessageWriter;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryInput;
+import com.esotericsoftware.kryo.io.UnsafeMemoryOutput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+
+public class KryoMessageTest extends KryoTestCase {
+	public void testBatchedWrites () {
+		kryo.register(ArrayList.class);
+		final int[] writes = {0};
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		OutputStream countingStream = new OutputStream() {
+			public void write (int b) {
+				writes[0]++;
+				stream.write(b);
+			}
+
+			public void write (byte[] bytes, int offset, int count) {
+				writes[0]++;
+				stream.write(bytes, offset, count);
+			}
+		};
+
+		KryoMessageWriter writer = new KryoMessageWriter(kryo, new Output(countingStream, 8192));
+		for (int i = 0; i < 100; i++)
+			writer.write(newList(i));
+		writer.write(null);
+		assertEquals(0, writes[0]);
+		writer.flush();
+		assertEquals(1, writes[0]);
+
+		KryoMessageReader reader = new KryoMessageReader(kryo, new Input(new ByteArrayInputStream(stream.toByteArray()), 64));
+		for (int i = 0; i < 100; i++)
+			assertEquals(newList(i), reader.read());
+		assertNull(reader.read());
+		assertTrue(reader.getInput().eof());
+	}
+
+	public void testFeed () {
+		kryo.register(ArrayList.class);
+		Output output = new Output(1024, -1);
+		KryoMessageWriter writer = new KryoMessageWriter(kryo, output);
+		for (int i = 0; i < 50; i++)
+			writer.write(newList(i));
+		byte[] bytes = output.toBytes();
+
+		// Feed the bytes in small pieces, as they might be received from a non-blocking socket.
+		KryoMessageReader reader = new KryoMessageReader(kryo);
+		assertFalse(reader.isMessageBuffered());
+		int next = 0;
+		for (int offset = 0; offset < bytes.length; offset += 7) {
+			reader.feed(ByteBuffer.wrap(bytes, offset, Math.min(7, bytes.length - offset)));
+			while (reader.isMessageBuffered())
+				assertEquals(newList(next++), reader.read());
+		}
+		assertEquals(50, next);
+		assertEquals(bytes.length, reader.getInput().total());
+	}
+
+	public void testUnsafeStreams () {
+		kryo.register(Values.class);
+		UnsafeOutput output = new UnsafeOutput(1024, -1);
+		writeValues(new KryoMessageWriter(kryo, output));
+		readValues(new KryoMessageReader(kryo, new UnsafeInput(output.toBytes())));
+
+		UnsafeMemoryOutput memoryOutput = new UnsafeMemoryOutput(1024, -1);
+		writeValues(new KryoMessageWriter(kryo, memoryOutput));
+		readValues(new KryoMessageReader(kryo, new UnsafeMemoryInput(memoryOutput.toBytes())));
+	}
+
+	public void testByteBufferStreams () {
+		kryo.register(Values.class);
+		ByteBufferOutput output = new ByteBufferOutput(1024, -1);
+		output.order(ByteOrder.LITTLE_ENDIAN);
+		output.setVarIntsEnabled(false);
+		writeValues(new KryoMessageWriter(kryo, output));
+
+		ByteBufferInput input = new ByteBufferInput(ByteBuffer.wrap(output.toBytes()).order(ByteOrder.LITTLE_ENDIAN));
+		input.setVarIntsEnabled(false);
+		readValues(new KryoMessageReader(kryo, input));
+	}
+
+	private void writeValues (KryoMessageWriter writer) {
+		for (int i = 0; i < 20; i++)
+			writer.write(new Values(i));
+		writer.flush();
+	}
+
+	private void readValues (KryoMessageReader reader) {
+		for (int i = 0; i < 20; i++)
+			assertEquals(new Values(i), reader.read());
+		assertTrue(reader.getInput().eof());
+	}
+
+	private ArrayList newList (int index) {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < index % 7; i++)
+			list.add("message " + index + " " + i);
+		return list;
+	}
+
+	static public class Values {
+		public int intValue;
+		public long longValue;
+		public float floatValue;
+		public double doubleValue;
+		public String text;
+
+		public Values () {
+		}
+
+		public Values (int index) {
+			intValue = index * 1000003;
+			longValue = index * 1000000007L;
+			floatValue = index * 1.5f;
+			doubleValue = index * 0.25;
+			text = "values " + index;
+		}
+
+		public boolean equals (Object object) {
+			if (!(object instanceof Values)) return false;
+			Values other = (Values)object;
+			return intValue == other.intValue && longValue == other.longValue && floatValue == other.floatValue
+				&& doubleValue == other.doubleValue && text.equals(other.text);
+		}
+	}
+}
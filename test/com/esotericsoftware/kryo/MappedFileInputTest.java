@@ -0,0 +1,128 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.io.MappedFileInput;
+import com.esotericsoftware.kryo.io.Output;
+
+public class MappedFileInputTest extends KryoTestCase {
+	public void testWindows () throws Exception {
+		kryo.register(ArrayList.class);
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+
+		long[] offsets = new long[100];
+		Output output = new Output(new FileOutputStream(file));
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = output.total();
+			kryo.writeClassAndObject(output, newList(i));
+		}
+		output.close();
+
+		// Small windows so values span window boundaries.
+		MappedFileInput input = new MappedFileInput(file, 100);
+		try {
+			assertEquals(file.length(), input.size());
+			for (int i = 0; i < offsets.length; i++) {
+				assertEquals(offsets[i], input.total());
+				assertEquals(newList(i), kryo.readClassAndObject(input));
+			}
+			assertTrue(input.eof());
+			assertEquals(-1, input.read());
+
+			for (int i = offsets.length - 1; i >= 0; i -= 7) {
+				input.seek(offsets[i]);
+				assertEquals(newList(i), kryo.readClassAndObject(input));
+			}
+
+			input.rewind();
+			input.skip(offsets[50]);
+			assertEquals(newList(50), kryo.readClassAndObject(input));
+		} finally {
+			input.close();
+		}
+	}
+
+	public void testWindowTooSmall () throws Exception {
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+		Output output = new Output(new FileOutputStream(file));
+		output.writeLong(123);
+		output.close();
+
+		MappedFileInput input = new MappedFileInput(file, 4);
+		try {
+			input.readLong();
+			fail();
+		} catch (KryoException expected) {
+		} finally {
+			input.close();
+		}
+	}
+
+	public void testWindowsStayMapped () throws Exception {
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+		Output output = new Output(new FileOutputStream(file));
+		for (int i = 0; i < 16; i++)
+			output.writeInt(i);
+		output.close();
+
+		MappedFileInput input = new MappedFileInput(file, 8);
+		ByteBuffer window = input.getByteBuffer();
+		input.seek(32);
+		assertEquals(8, input.readInt());
+		input.close();
+		// A window handed out before seeking and closing can still be read.
+		assertEquals(1, window.getInt(4));
+		assertEquals(9, input.getByteBuffer().getInt(4));
+	}
+
+	public void testConstructorClosesChannel () throws Exception {
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+		FileOutputStream stream = new FileOutputStream(file);
+		stream.write(new byte[16]);
+		FileChannel channel = stream.getChannel();
+		try {
+			// The channel cannot be read, so the first window cannot be mapped.
+			new MappedFileInput(channel);
+			fail();
+		} catch (NonReadableChannelException expected) {
+		}
+		assertFalse(channel.isOpen());
+	}
+
+	private ArrayList newList (int index) {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < index % 10 + 1; i++) {
+			list.add("string " + index + " " + i);
+			list.add(index * 1000L + i);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,108 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import com.esotericsoftware.kryo.util.PerfectHashClassResolver;
+
+public class PerfectHashClassResolverTest extends KryoTestCase {
+	public void testGetRegistration () {
+		PerfectHashClassResolver resolver = new PerfectHashClassResolver();
+		kryo = new Kryo(resolver, new MapReferenceResolver());
+		ArrayList<Class> types = arrayTypes(500);
+		for (int i = 0; i < types.size(); i++) {
+			Class type = types.get(i);
+			assertNull(resolver.getRegistration(type));
+			Registration registration = kryo.register(type);
+			assertSame(registration, resolver.getRegistration(type));
+			// Check the classes registered before are still found after the table is rebuilt.
+			if (i % 50 == 0) {
+				for (int ii = 0; ii <= i; ii++)
+					assertSame(types.get(ii), resolver.getRegistration(types.get(ii)).getType());
+			}
+		}
+		resolver.build();
+		for (Class type : types)
+			assertSame(type, resolver.getRegistration(type).getType());
+		assertSame(kryo.getRegistration(int.class), resolver.getRegistration(Integer.class));
+		assertNull(resolver.getRegistration(ArrayList.class));
+
+		Registration registration = new Registration(types.get(7), kryo.getRegistration(types.get(7)).getSerializer(), 1000);
+		kryo.register(registration);
+		assertSame(registration, resolver.getRegistration(types.get(7)));
+	}
+
+	public void testRegisterManyClasses () {
+		final int[] builds = new int[1];
+		PerfectHashClassResolver resolver = new PerfectHashClassResolver() {
+			public void build () {
+				super.build();
+				builds[0]++;
+			}
+		};
+		kryo = new Kryo(resolver, new MapReferenceResolver());
+		ArrayList<Class> types = arrayTypes(2500);
+		for (Class type : types)
+			kryo.register(type);
+		assertEquals(0, builds[0]);
+
+		// The table is built once there have been as many lookups as registered classes.
+		for (int i = 0; i < 2; i++) {
+			for (Class type : types)
+				assertSame(type, resolver.getRegistration(type).getType());
+		}
+		assertEquals(1, builds[0]);
+	}
+
+	public void testRoundTrip () {
+		kryo = new Kryo(new PerfectHashClassResolver(), new MapReferenceResolver());
+		kryo.setReferences(false);
+		kryo.setRegistrationRequired(true);
+		kryo.register(ArrayList.class);
+		kryo.register(Integer.class);
+		kryo.register(Long.class);
+		kryo.register(Float.class);
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 10; i++) {
+			list.add(i);
+			list.add("s" + i);
+			list.add((long)i);
+			list.add((float)i);
+		}
+		ArrayList read = roundTrip(122, 222, list);
+		assertEquals(list.size(), read.size());
+		assertEquals("s9", read.get(37));
+	}
+
+	/** Returns array classes, which are distinct classes that don't need to be declared. */
+	static ArrayList<Class> arrayTypes (int count) {
+		Class[] componentTypes = {byte.class, short.class, int.class, long.class, float.class, double.class, char.class,
+			boolean.class, String.class, Object.class};
+		ArrayList<Class> types = new ArrayList(count);
+		for (int dimension = 1; types.size() < count; dimension++) {
+			for (int i = 0; i < componentTypes.length && types.size() < count; i++)
+				types.add(Array.newInstance(componentTypes[i], new int[dimension]).getClass());
+		}
+		return types;
+	}
+}
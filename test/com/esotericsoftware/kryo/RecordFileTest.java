@@ -0,0 +1,156 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.io.RecordFileReader;
+import com.esotericsoftware.kryo.io.RecordFileWriter;
+
+public class RecordFileTest extends KryoTestCase {
+	public void testIndex () throws Exception {
+		kryo.register(ArrayList.class);
+		File file = newFile();
+
+		RecordFileWriter writer = new RecordFileWriter(kryo, file);
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, writer.append(i % 10 == 0 ? "key" + i : null, newList(i)));
+		writer.append(null);
+		writer.close();
+
+		RecordFileReader reader = new RecordFileReader(kryo, file, 1024);
+		try {
+			assertEquals(1001, reader.size());
+			for (int i = 999; i >= 0; i -= 3)
+				assertEquals(newList(i), reader.read(i));
+			assertNull(reader.read(1000));
+
+			reader.seek(500);
+			for (int i = 500; i < 1000; i++)
+				assertEquals(newList(i), reader.readNext());
+			assertNull(reader.readNext());
+			assertFalse(reader.hasNext());
+
+			assertEquals(990, reader.indexOf("key990"));
+			assertEquals(-1, reader.indexOf("key991"));
+			assertEquals(newList(20), reader.read("key20"));
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testAppend () throws Exception {
+		kryo.register(ArrayList.class);
+		File file = newFile();
+
+		RecordFileWriter writer = new RecordFileWriter(kryo, file);
+		writer.append("first", newList(0));
+		writer.close();
+
+		writer = new RecordFileWriter(kryo, file);
+		assertEquals(1, writer.size());
+		writer.append("second", newList(1));
+		writer.append("first", newList(2));
+		writer.close();
+
+		RecordFileReader reader = new RecordFileReader(kryo, file);
+		try {
+			assertEquals(3, reader.size());
+			// The last record written with a key is found.
+			assertEquals(newList(2), reader.read("first"));
+			assertEquals(newList(1), reader.read("second"));
+			assertEquals(newList(0), reader.read(0));
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testRecover () throws Exception {
+		kryo.register(ArrayList.class);
+		File file = newFile();
+
+		// Simulate a crash: records are synced but the index is never written and the last record is incomplete.
+		RecordFileWriter writer = new RecordFileWriter(kryo, file);
+		for (int i = 0; i < 10; i++)
+			writer.append("key" + i, newList(i));
+		writer.sync();
+		long length = file.length();
+		writer.append(newList(10));
+		writer.flush();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.setLength(length + 10);
+		randomAccessFile.close();
+
+		RecordFileReader reader = new RecordFileReader(kryo, file);
+		try {
+			assertEquals(10, reader.size());
+			assertEquals(newList(9), reader.read(9));
+			assertEquals(newList(3), reader.read("key3"));
+		} finally {
+			reader.close();
+		}
+
+		writer = new RecordFileWriter(kryo, file);
+		assertEquals(10, writer.size());
+		writer.append("key10", newList(10));
+		writer.close();
+
+		reader = new RecordFileReader(kryo, file);
+		try {
+			assertEquals(11, reader.size());
+			assertEquals(newList(10), reader.read("key10"));
+			assertEquals(newList(5), reader.read("key5"));
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testNotRecordFile () throws Exception {
+		File file = newFile();
+		FileOutputStream stream = new FileOutputStream(file);
+		stream.write(new byte[] {1, 2, 3});
+		stream.close();
+		try {
+			new RecordFileWriter(kryo, file);
+			fail();
+		} catch (KryoException expected) {
+		}
+		assertEquals(3, file.length());
+	}
+
+	private File newFile () throws Exception {
+		File file = File.createTempFile("kryo", ".records");
+		file.delete();
+		file.deleteOnExit();
+		return file;
+	}
+
+	private ArrayList newList (int index) {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < index % 5 + 1; i++) {
+			list.add("record " + index);
+			list.add(index * 10 + i);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,287 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.esotericsoftware.kryo.factories.ReflectionSerializerFactory;
+import com.esotericsoftware.kryo.factories.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CollectionSerializer;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.serializers.DefaultSerializers.StringSerializer;
+import com.esotericsoftware.kryo.serializers.FieldLayout;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.esotericsoftware.kryo.util.SharedClassResolver;
+
+public class RegistrationTableTest extends KryoTestCase {
+	public void testSharedRegistrations () {
+		kryo.setRegistrationRequired(true);
+		kryo.register(ArrayList.class, 100);
+		kryo.register(HashMap.class, new CollectionSerializerMap(), 101);
+		kryo.register(Pair.class, 102);
+		RegistrationTable table = new RegistrationTable(kryo);
+
+		Kryo kryo1 = new Kryo(table);
+		Kryo kryo2 = new Kryo(table);
+		assertTrue(kryo1.getClassResolver() instanceof SharedClassResolver);
+		assertTrue(kryo1.isRegistrationRequired());
+		assertEquals(kryo.getNextRegistrationId(), kryo1.getNextRegistrationId());
+
+		Registration registration1 = kryo1.getRegistration(Pair.class);
+		Registration registration2 = kryo2.getRegistration(Pair.class);
+		assertEquals(102, registration1.getId());
+		assertTrue(registration1.getSerializer() instanceof FieldSerializer);
+		assertNotSame(registration1.getSerializer(), registration2.getSerializer());
+		assertSame(registration1, kryo1.getRegistration(102));
+		assertTrue(kryo1.getRegistration(101).getSerializer() instanceof CollectionSerializerMap);
+		assertTrue(kryo1.getRegistration(String.class).getSerializer() instanceof StringSerializer);
+		assertEquals(int.class, kryo1.getRegistration(Integer.class).getType());
+
+		Pair pair = new Pair();
+		pair.name = "a";
+		pair.values = new ArrayList();
+		pair.values.add(1);
+		Output output = new Output(128);
+		kryo.writeClassAndObject(output, pair);
+		Object read = kryo2.readClassAndObject(new Input(output.toBytes()));
+		assertEquals(pair, read);
+
+		output.clear();
+		kryo1.writeClassAndObject(output, pair);
+		assertEquals(pair, kryo.readClassAndObject(new Input(output.toBytes())));
+	}
+
+	public void testLocalRegistrationOverridesTable () {
+		kryo.register(Pair.class, 102);
+		RegistrationTable table = new RegistrationTable(kryo);
+
+		Kryo kryo1 = new Kryo(table);
+		Registration registration = kryo1.register(Pair.class, new FieldSerializer(kryo1, Pair.class), 103);
+		assertSame(registration, kryo1.getRegistration(Pair.class));
+		assertNull(kryo1.getRegistration(102));
+		assertSame(registration, kryo1.getRegistration(103));
+
+		// A table can be made from a Kryo that uses a table.
+		ObjectMap<Class, SerializerFactory> factories = new ObjectMap();
+		factories.put(Pair.class, new ReflectionSerializerFactory(FieldSerializer.class));
+		RegistrationTable table2 = new RegistrationTable(kryo1, factories);
+		assertEquals(103, new Kryo(table2).getRegistration(Pair.class).getId());
+	}
+
+	public void testSettingsAreCopied () {
+		kryo.setReferences(false);
+		kryo.setMaxDepth(10);
+		kryo.setAutoReset(false);
+		kryo.getFieldSerializerConfig().setFieldsCanBeNull(false);
+		kryo.addDefaultSerializer(Pair.class, CollectionSerializer.class);
+		RegistrationTable table = new RegistrationTable(kryo);
+		kryo.getFieldSerializerConfig().setFieldsCanBeNull(true);
+
+		Kryo kryo1 = new Kryo(table);
+		assertFalse(kryo1.getReferences());
+		assertFalse(kryo1.isAutoReset());
+		assertFalse(kryo1.getFieldSerializerConfig().isFieldsCanBeNull());
+		assertNotSame(table.fieldSerializerConfig, kryo1.getFieldSerializerConfig());
+		assertTrue(kryo1.getDefaultSerializer(Pair.class) instanceof CollectionSerializer);
+		assertTrue(kryo1.getDefaultSerializer(ArrayList.class) instanceof CollectionSerializer);
+		// The primitives and String registered by the Kryo constructor.
+		assertEquals(10, table.size());
+	}
+
+	public void testFieldLayoutsAreShared () {
+		kryo.register(Pair.class, 100);
+		kryo.register(Point.class, new CompatibleFieldSerializer(kryo, Point.class), 101);
+		RegistrationTable table = new RegistrationTable(kryo);
+		FieldLayout layout = ((FieldSerializer)kryo.getSerializer(Pair.class)).getFieldLayout();
+		assertSame(layout, table.getFieldLayout(Pair.class));
+		assertNotNull(table.getFieldLayout(Point.class));
+		assertNull(table.getFieldLayout(String.class));
+
+		Kryo kryo1 = new Kryo(table), kryo2 = new Kryo(table);
+		FieldSerializer serializer1 = (FieldSerializer)kryo1.getSerializer(Pair.class);
+		FieldSerializer serializer2 = (FieldSerializer)kryo2.getSerializer(Pair.class);
+		assertNotSame(serializer1, serializer2);
+		assertSame(layout, serializer1.getFieldLayout());
+		assertSame(layout, serializer2.getFieldLayout());
+		assertSame(table.getFieldLayout(Point.class), ((FieldSerializer)kryo1.getSerializer(Point.class)).getFieldLayout());
+
+		// A layout found with different settings is not used.
+		Kryo kryo3 = new Kryo(table);
+		kryo3.getFieldSerializerConfig().setIgnoreSyntheticFields(false);
+		assertNotSame(layout, ((FieldSerializer)kryo3.getSerializer(Pair.class)).getFieldLayout());
+	}
+
+	public void testSnapshot () {
+		kryo.register(ArrayList.class, 100);
+		kryo.register(HashMap.class, new CollectionSerializerMap(), 101);
+		kryo.register(Pair.class, 102);
+		kryo.register(String[].class, 103);
+		ObjectMap<Class, SerializerFactory> factories = new ObjectMap();
+		factories.put(Point.class, new ReflectionSerializerFactory(CompatibleFieldSerializer.class));
+		kryo.register(Point.class, new CompatibleFieldSerializer(kryo, Point.class), 104);
+		RegistrationTable table = new RegistrationTable(kryo, factories);
+		Output output = new Output(1024, -1);
+		table.write(output);
+
+		// The snapshot is read with a Kryo configured the same way, without the registrations.
+		Kryo template = new Kryo();
+		template.setReferences(false);
+		RegistrationTable read = RegistrationTable.read(template, new Input(output.toBytes()), factories);
+		assertEquals(table.size(), read.size());
+		assertEquals(Pair.class, read.getType(102));
+		assertEquals(String[].class, read.getType(103));
+		assertEquals(int.class, read.getType(0));
+		assertNull(read.getFieldLayout(Pair.class));
+
+		Kryo kryo1 = new Kryo(read);
+		Registration registration = kryo1.getRegistration(Pair.class);
+		assertEquals(102, registration.getId());
+		assertTrue(registration.getSerializer() instanceof FieldSerializer);
+		assertSame(registration, kryo1.getRegistration(102));
+		assertEquals(int.class, kryo1.getRegistration(Integer.class).getType());
+		assertTrue(kryo1.getRegistration(101).getSerializer() instanceof CollectionSerializerMap);
+		assertTrue(kryo1.getRegistration(100).getSerializer() instanceof CollectionSerializer);
+		assertTrue(kryo1.getRegistration(104).getSerializer() instanceof CompatibleFieldSerializer);
+
+		Pair pair = new Pair();
+		pair.name = "a";
+		pair.values = new ArrayList();
+		pair.values.add("b");
+		output.clear();
+		kryo.writeClassAndObject(output, pair);
+		byte[] expected = output.toBytes();
+		assertEquals(pair, kryo1.readClassAndObject(new Input(expected)));
+		output.clear();
+		kryo1.writeClassAndObject(output, pair);
+		assertTrue(Arrays.equals(expected, output.toBytes()));
+
+		try {
+			RegistrationTable.read(template, new Input(expected));
+			fail();
+		} catch (KryoException expectedException) {
+		}
+		output.clear();
+		table.write(output);
+		try {
+			RegistrationTable.read(template, new Input(output.toBytes()));
+			fail();
+		} catch (KryoException expectedException) {
+			assertTrue(expectedException.getMessage().contains("factory"));
+		}
+	}
+
+	public void testUnconfiguredSerializer () {
+		kryo.register(Point.class, new FieldSerializer(kryo, Point.class), 100);
+		kryo.register(Pair.class, new CompatibleFieldSerializer(kryo, Pair.class), 101);
+		kryo.register(ArrayList.class, new CollectionSerializer(), 102);
+		RegistrationTable table = new RegistrationTable(kryo);
+
+		Kryo kryo1 = new Kryo(table);
+		assertEquals(FieldSerializer.class, kryo1.getRegistration(Point.class).getSerializer().getClass());
+		assertEquals(CompatibleFieldSerializer.class, kryo1.getRegistration(Pair.class).getSerializer().getClass());
+		Pair pair = new Pair();
+		pair.name = "a";
+		pair.values = new ArrayList();
+		Output output = new Output(64, -1);
+		kryo.writeObject(output, pair);
+		assertEquals(pair, kryo1.readObject(new Input(output.toBytes()), Pair.class));
+	}
+
+	public void testConfiguredSerializer () {
+		FieldSerializer serializer = new FieldSerializer(kryo, Point.class);
+		serializer.setFieldsCanBeNull(false);
+		kryo.register(Point.class, serializer, 100);
+		try {
+			new RegistrationTable(kryo);
+			fail();
+		} catch (IllegalArgumentException expected) {
+			assertTrue(expected.getMessage().contains("configured differently"));
+		}
+
+		serializer = new FieldSerializer(kryo, Point.class);
+		serializer.removeField("y");
+		kryo.register(Point.class, serializer, 100);
+		try {
+			new RegistrationTable(kryo);
+			fail();
+		} catch (IllegalArgumentException expected) {
+			assertTrue(expected.getMessage().contains("configured differently"));
+		}
+
+		ObjectMap<Class, SerializerFactory> factories = new ObjectMap();
+		factories.put(Point.class, new SerializerFactory() {
+			public Serializer makeSerializer (Kryo kryo, Class<?> type) {
+				FieldSerializer serializer = new FieldSerializer(kryo, type);
+				serializer.removeField("y");
+				return serializer;
+			}
+		});
+		RegistrationTable table = new RegistrationTable(kryo, factories);
+		Point point = new Point();
+		point.x = 1;
+		point.y = 2;
+		Output output = new Output(32, -1);
+		kryo.writeObject(output, point);
+		byte[] expected = output.toBytes();
+		output.clear();
+		new Kryo(table).writeObject(output, point);
+		assertTrue(Arrays.equals(expected, output.toBytes()));
+		assertEquals(1, new Kryo(table).readObject(new Input(expected), Point.class).x);
+	}
+
+	public void testSerializerCannotBeCreated () {
+		kryo.register(Point.class, new Serializer<Point>() {
+			public void write (Kryo kryo, Output output, Point object) {
+			}
+
+			public Point read (Kryo kryo, Input input, Class<Point> type) {
+				return new Point();
+			}
+		});
+		try {
+			new RegistrationTable(kryo);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	static public class Point {
+		int x, y;
+	}
+
+	static public class CollectionSerializerMap extends com.esotericsoftware.kryo.serializers.MapSerializer {
+	}
+
+	static public class Pair {
+		String name;
+		ArrayList values;
+
+		public boolean equals (Object obj) {
+			if (!(obj instanceof Pair)) return false;
+			Pair other = (Pair)obj;
+			return name.equals(other.name) && values.equals(other.values);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.ResumableInput;
+
+public class ResumableInputTest extends KryoTestCase {
+	public void testFeedOneByteAtATime () {
+		kryo.setReferences(true);
+		kryo.register(ArrayList.class);
+		kryo.register(HashMap.class);
+
+		ArrayList objects = new ArrayList();
+		for (int i = 0; i < 20; i++) {
+			ArrayList list = new ArrayList();
+			String shared = "shared " + i;
+			list.add(shared);
+			list.add(shared);
+			list.add(i * 1000L);
+			HashMap map = new HashMap();
+			map.put("key " + i, list.size());
+			list.add(map);
+			objects.add(list);
+		}
+		objects.add(null);
+
+		Output output = new Output(1024, -1);
+		for (Object object : objects)
+			kryo.writeClassAndObject(output, object);
+		byte[] bytes = output.toBytes();
+
+		ResumableInput input = new ResumableInput(16);
+		assertSame(ResumableInput.INCOMPLETE, input.tryReadClassAndObject(kryo));
+		ArrayList results = new ArrayList();
+		for (int i = 0; i < bytes.length; i++) {
+			input.feed(bytes, i, 1);
+			while (true) {
+				Object object = input.tryReadClassAndObject(kryo);
+				if (object == ResumableInput.INCOMPLETE) break;
+				results.add(object);
+				if (results.size() == objects.size()) break;
+			}
+		}
+		assertEquals(objects, results);
+		assertEquals(bytes.length, input.total());
+		ArrayList first = (ArrayList)results.get(0);
+		assertSame(first.get(0), first.get(1));
+	}
+
+	public void testAutoResetRequired () {
+		kryo.setAutoReset(false);
+		try {
+			new ResumableInput().tryReadClassAndObject(kryo);
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.SegmentPool;
+import com.esotericsoftware.kryo.io.SegmentedOutput;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+
+public class SegmentedOutputTest extends KryoTestCase {
+	public void testSegments () {
+		kryo.register(ArrayList.class);
+		ArrayList list = newList();
+
+		SegmentedOutput output = new SegmentedOutput(64);
+		kryo.writeClassAndObject(output, list);
+		assertTrue(output.getSegmentCount() > 10);
+
+		Output expected = new Output(1024, -1);
+		kryo.writeClassAndObject(expected, list);
+		byte[] bytes = output.toBytes();
+		assertEquals(expected.total(), output.total());
+		assertTrue(Arrays.equals(expected.toBytes(), bytes));
+		assertEquals(list, kryo.readClassAndObject(new Input(bytes)));
+
+		int length = 0;
+		for (ByteBuffer buffer : output.getByteBuffers())
+			length += buffer.remaining();
+		assertEquals(bytes.length, length);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		output.writeTo(stream);
+		assertTrue(Arrays.equals(bytes, stream.toByteArray()));
+	}
+
+	public void testGatheringWrite () throws Exception {
+		kryo.register(ArrayList.class);
+		SegmentedOutput output = new SegmentedOutput(128);
+		kryo.writeClassAndObject(output, newList());
+		byte[] bytes = output.toBytes();
+
+		File file = File.createTempFile("kryo", ".bin");
+		file.deleteOnExit();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			assertEquals(bytes.length, output.writeTo(channel));
+			assertEquals(bytes.length, channel.size());
+			ByteBuffer read = ByteBuffer.allocate(bytes.length);
+			channel.read(read, 0);
+			assertTrue(Arrays.equals(bytes, read.array()));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	public void testPool () {
+		kryo.register(ArrayList.class);
+		SegmentPool pool = new SegmentPool(64, 100);
+		SegmentedOutput output = new SegmentedOutput(pool);
+		kryo.writeClassAndObject(output, newList());
+		int segmentCount = output.getSegmentCount();
+		assertEquals(0, pool.getFree());
+
+		output.clear();
+		assertEquals(1, output.getSegmentCount());
+		assertEquals(segmentCount - 1, pool.getFree());
+		assertEquals(0, output.total());
+
+		// Reuses the pooled segments.
+		kryo.writeClassAndObject(output, newList());
+		assertEquals(segmentCount, output.getSegmentCount());
+		assertEquals(0, pool.getFree());
+
+		output.close();
+		assertEquals(segmentCount, pool.getFree());
+		output.clear();
+		kryo.writeClassAndObject(output, newList());
+		assertEquals(newList(), kryo.readClassAndObject(new Input(output.toBytes())));
+	}
+
+	public void testLengthPrefixFallback () {
+		CompatibleFieldSerializer serializer = new CompatibleFieldSerializer(kryo, TestClass.class);
+		serializer.setChunkedEncoding(false);
+		kryo.register(TestClass.class, serializer);
+		TestClass object = new TestClass();
+		object.text = "a long enough string to span several segments of the output";
+		object.value = 1234;
+
+		SegmentedOutput output = new SegmentedOutput(16);
+		kryo.writeObject(output, object);
+		assertTrue(output.getSegmentCount() > 1);
+		TestClass read = kryo.readObject(new Input(output.toBytes()), TestClass.class);
+		assertEquals(object.text, read.text);
+		assertEquals(object.value, read.value);
+	}
+
+	private ArrayList newList () {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 200; i++) {
+			list.add("value" + i);
+			list.add(i * 1000);
+			list.add((long)i << 40);
+		}
+		return list;
+	}
+
+	static public class TestClass {
+		public String text;
+		public int value;
+	}
+}
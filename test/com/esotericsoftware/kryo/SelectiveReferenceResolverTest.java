@@ -0,0 +1,167 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo;
+
+import java.util.ArrayList;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import com.esotericsoftware.kryo.util.SelectiveReferenceResolver;
+
+public class SelectiveReferenceResolverTest extends KryoTestCase {
+	public void testUseReferences () {
+		SelectiveReferenceResolver resolver = new SelectiveReferenceResolver();
+		resolver.setAnalyzeFields(true);
+		kryo = new Kryo(resolver);
+		kryo.register(Point.class);
+		kryo.register(Line.class);
+		kryo.register(Shape.class);
+		kryo.register(Tag.class);
+		kryo.register(Color.class);
+		kryo.register(int[].class);
+		kryo.register(Object[].class);
+		kryo.register(Node.class);
+
+		assertFalse(resolver.useReferences(Integer.class));
+		assertFalse(resolver.useReferences(String.class));
+		assertFalse(resolver.useReferences(Color.class));
+		assertFalse(resolver.useReferences(Tag.class));
+		assertFalse(resolver.useReferences(int[].class));
+		assertFalse(resolver.useReferences(Point.class));
+		assertFalse(resolver.useReferences(Line.class));
+		assertTrue(resolver.useReferences(Shape.class));
+		assertTrue(resolver.useReferences(Object[].class));
+		assertTrue(resolver.useReferences(Node.class));
+
+		assertEquals(Boolean.FALSE, kryo.getRegistration(Point.class).getUseReferences());
+		assertEquals(Boolean.TRUE, kryo.getRegistration(Node.class).getUseReferences());
+
+		kryo.getRegistration(Node.class).setUseReferences(Boolean.FALSE);
+		assertFalse(resolver.useReferences(Node.class));
+
+		// Changing the serializer decides again.
+		kryo.register(Point.class, new JavaSerializer());
+		assertNull(kryo.getRegistration(Point.class).getUseReferences());
+		assertTrue(resolver.useReferences(Point.class));
+
+		// Without field analysis, leaf classes use references.
+		resolver = new SelectiveReferenceResolver();
+		assertFalse(resolver.getAnalyzeFields());
+		kryo = new Kryo(resolver);
+		kryo.register(Point.class);
+		kryo.register(int[].class);
+		assertTrue(resolver.useReferences(Point.class));
+		assertTrue(resolver.useReferences(int[].class));
+	}
+
+	public void testRoundTrip () {
+		SelectiveReferenceResolver resolver = new SelectiveReferenceResolver();
+		resolver.setAnalyzeFields(true);
+		kryo = new Kryo(resolver);
+		kryo.register(ArrayList.class);
+		kryo.register(Point.class);
+		kryo.register(Node.class);
+
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 100; i++) {
+			Point point = new Point();
+			point.x = i;
+			point.y = -i;
+			list.add(point);
+		}
+		Node node = new Node();
+		node.next = node;
+		list.add(node);
+		list.add(node);
+		Point shared = new Point();
+		list.add(shared);
+		list.add(shared);
+
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, list);
+		ArrayList read = (ArrayList)kryo.readClassAndObject(new Input(output.toBytes()));
+		assertEquals(list, read);
+		Node readNode = (Node)read.get(100);
+		assertSame(readNode, readNode.next);
+		assertSame(readNode, read.get(101));
+		// Points do not use references, so the shared point is read as copies.
+		assertNotSame(read.get(102), read.get(103));
+
+		Kryo mapKryo = new Kryo(new MapReferenceResolver());
+		mapKryo.register(ArrayList.class);
+		mapKryo.register(Point.class);
+		mapKryo.register(Node.class);
+		Output mapOutput = new Output(1024, -1);
+		mapKryo.writeClassAndObject(mapOutput, list);
+		assertTrue(output.position() < mapOutput.position());
+	}
+
+	public void testSharedLeafByDefault () {
+		kryo = new Kryo(new SelectiveReferenceResolver());
+		kryo.register(Line.class);
+		kryo.register(Point.class);
+
+		Line line = new Line();
+		line.start = line.end = new Point();
+		Output output = new Output(1024, -1);
+		kryo.writeObject(output, line);
+		Line read = kryo.readObject(new Input(output.toBytes()), Line.class);
+		assertSame(read.start, read.end);
+	}
+
+	static public final class Point {
+		public int x, y;
+
+		public boolean equals (Object obj) {
+			if (!(obj instanceof Point)) return false;
+			Point other = (Point)obj;
+			return x == other.x && y == other.y;
+		}
+	}
+
+	static public final class Line {
+		public Point start, end;
+		public String name;
+	}
+
+	static public class Shape {
+		public Object data;
+	}
+
+	@NoReferences
+	static public class Tag {
+		public ArrayList values;
+	}
+
+	static public enum Color {
+		red, green
+	}
+
+	static public class Node {
+		public Node next;
+		public int value;
+
+		public boolean equals (Object obj) {
+			return obj instanceof Node && ((Node)obj).value == value;
+		}
+	}
+}
@@ -72,6 +72,14 @@ public class TaggedFieldSerializerTest extends KryoTestCase {
 	 * fields to simulate a past version of the compiled application. An array is used to ensure subsequent bytes in the stream 
 	 * are unaffected.*/
 	public void testForwardCompatibility () {
+		forwardCompatibility(true);
+	}
+
+	public void testForwardCompatibilityLengthPrefix () {
+		forwardCompatibility(false);
+	}
+
+	private void forwardCompatibility (boolean chunkedEncoding) {
 		FutureClass futureObject = new FutureClass();
 		futureObject.value = 3;
 		futureObject.futureString = "future";
@@ -91,6 +99,7 @@ public class TaggedFieldSerializerTest extends KryoTestCase {
 
 		kryo.setDefaultSerializer(TaggedFieldSerializer.class);
 		kryo.getTaggedFieldSerializerConfig().setSkipUnknownTags(true);
+		kryo.getTaggedFieldSerializerConfig().setChunkedEncoding(chunkedEncoding);
 		kryo.register(TestClass.class);
 		kryo.register(Object[].class);
 		TaggedFieldSerializer futureSerializer = new TaggedFieldSerializer(kryo, FutureClass.class);
@@ -100,11 +109,19 @@ public class TaggedFieldSerializerTest extends KryoTestCase {
 		futureSerializer2.setSkipUnknownTags(true);
 		kryo.register(FutureClass2.class, futureSerializer2);
 
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-		output = new Output(outStream);
-		kryo.writeClassAndObject(output, futureArray);
-		output.flush();
-		byte[] futureArrayData = outStream.toByteArray();
+		byte[] futureArrayData;
+		if (chunkedEncoding) {
+			ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+			output = new Output(outStream);
+			kryo.writeClassAndObject(output, futureArray);
+			output.flush();
+			futureArrayData = outStream.toByteArray();
+		} else {
+			// Without an OutputStream the field lengths are patched in place.
+			output = new Output(16, -1);
+			kryo.writeClassAndObject(output, futureArray);
+			futureArrayData = output.toBytes();
+		}
 
 		TaggedFieldSerializer presentSerializer = new TaggedFieldSerializer(kryo, FutureClass.class);
 		presentSerializer.setSkipUnknownTags(true);
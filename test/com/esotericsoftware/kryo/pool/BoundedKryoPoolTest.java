@@ -0,0 +1,124 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+
+public class BoundedKryoPoolTest {
+
+	private static KryoFactory factory = new KryoFactory() {
+		@Override
+		public Kryo create () {
+			return new Kryo();
+		}
+	};
+
+	@Test
+	public void builderShouldBuildBoundedPool () {
+		KryoPool pool = new KryoPool.Builder(factory).maxSize(2).build();
+		assertTrue(pool instanceof BoundedKryoPool);
+		assertEquals(2, ((BoundedKryoPool)pool).getMaxSize());
+	}
+
+	@Test
+	public void borrowShouldReuseReleasedInstance () {
+		BoundedKryoPool pool = new BoundedKryoPool(factory, 2);
+		Kryo kryo = pool.borrow();
+		assertEquals(1, pool.getBorrowedCount());
+		pool.release(kryo);
+		assertEquals(0, pool.getBorrowedCount());
+		assertEquals(1, pool.getIdleCount());
+		assertSame(kryo, pool.borrow());
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowCount());
+	}
+
+	@Test
+	public void releaseShouldRejectInstanceNotBorrowed () {
+		BoundedKryoPool pool = new BoundedKryoPool(factory, 1);
+		try {
+			pool.release(new Kryo());
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		Kryo kryo = pool.borrow();
+		assertTrue(pool.isBorrowed(kryo));
+		pool.release(kryo);
+		assertFalse(pool.isBorrowed(kryo));
+		try {
+			pool.release(kryo);
+			fail("Expected IllegalArgumentException.");
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(0, pool.getBorrowedCount());
+		assertEquals(1, pool.getIdleCount());
+		// Still only one instance can be borrowed.
+		assertSame(kryo, pool.borrow());
+		assertEquals(1, pool.getBorrowedCount());
+	}
+
+	@Test
+	public void borrowShouldTimeOutWhenExhausted () throws InterruptedException {
+		BoundedKryoPool pool = new BoundedKryoPool(factory, 1);
+		Kryo kryo = pool.borrow();
+		assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+		assertEquals(1, pool.getWaitCount());
+		assertEquals(1, pool.getTimeoutCount());
+		pool.release(kryo);
+		assertSame(kryo, pool.borrow(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void borrowShouldNotCreateMoreThanMaxSize () throws InterruptedException {
+		final BoundedKryoPool pool = new BoundedKryoPool(factory, 4);
+		final AtomicInteger maxBorrowed = new AtomicInteger();
+		int threadCount = 50;
+		final CountDownLatch done = new CountDownLatch(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			new Thread() {
+				public void run () {
+					for (int i = 0; i < 100; i++) {
+						pool.run(new KryoCallback<Void>() {
+							public Void execute (Kryo kryo) {
+								int borrowed = pool.getBorrowedCount();
+								if (borrowed > maxBorrowed.get()) maxBorrowed.set(borrowed);
+								return null;
+							}
+						});
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		assertTrue(pool.getCreatedCount() <= 4);
+		assertTrue(maxBorrowed.get() <= 4);
+		assertEquals(0, pool.getBorrowedCount());
+		assertEquals(threadCount * 100, pool.getBorrowCount());
+	}
+}
@@ -0,0 +1,257 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultStreamFactory;
+
+public class BufferPoolTest {
+
+	private static KryoFactory factory = new KryoFactory() {
+		@Override
+		public Kryo create () {
+			return new Kryo();
+		}
+	};
+
+	@Test
+	public void acquireShouldRoundUpToSizeClass () {
+		BufferPool bufferPool = new BufferPool(100, 1000, 4);
+		assertEquals(128, bufferPool.getMinBufferSize());
+		assertEquals(1024, bufferPool.getMaxBufferSize());
+		assertEquals(128, bufferPool.acquire(0).length);
+		assertEquals(128, bufferPool.acquire(128).length);
+		assertEquals(256, bufferPool.acquire(129).length);
+		assertEquals(1024, bufferPool.acquire(1000).length);
+		assertEquals(5000, bufferPool.acquire(5000).length);
+	}
+
+	@Test
+	public void releasedBufferShouldBeReused () {
+		BufferPool bufferPool = new BufferPool(128, 1024, 4);
+		byte[] buffer = bufferPool.acquire(200);
+		bufferPool.release(buffer);
+		assertEquals(1, bufferPool.getPooledCount());
+		assertNotSame(buffer, bufferPool.acquire(100));
+		assertSame(buffer, bufferPool.acquire(256));
+		assertEquals(0, bufferPool.getPooledCount());
+
+		// A buffer that isn't a power of two is used for the size class it covers.
+		byte[] odd = new byte[300];
+		bufferPool.release(odd);
+		assertSame(odd, bufferPool.acquire(256));
+	}
+
+	@Test
+	public void releaseShouldDropLargeSmallAndExcessBuffers () {
+		BufferPool bufferPool = new BufferPool(128, 1024, 2);
+		bufferPool.release(new byte[2048]);
+		bufferPool.release(new byte[64]);
+		assertEquals(0, bufferPool.getPooledCount());
+		for (int i = 0; i < 3; i++)
+			bufferPool.release(new byte[512]);
+		assertEquals(2, bufferPool.getPooledCount());
+		bufferPool.clear();
+		assertEquals(0, bufferPool.getPooledCount());
+	}
+
+	@Test
+	public void directBuffersShouldBePooled () {
+		BufferPool bufferPool = new BufferPool(128, 1024, 2);
+		ByteBuffer buffer = bufferPool.acquireDirect(300);
+		assertTrue(buffer.isDirect());
+		assertEquals(512, buffer.capacity());
+		buffer.putInt(1);
+		bufferPool.releaseDirect(buffer);
+		bufferPool.releaseDirect(ByteBuffer.allocate(512));
+		assertEquals(1, bufferPool.getPooledDirectCount());
+		ByteBuffer reused = bufferPool.acquireDirect(512);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(512, reused.limit());
+	}
+
+	@Test
+	public void streamFactoryShouldUsePooledBuffers () {
+		BufferPool bufferPool = new BufferPool(128, 1024, 4);
+		PooledStreamFactory streamFactory = new PooledStreamFactory(bufferPool);
+		Output output = streamFactory.getOutput(200, -1);
+		assertEquals(256, output.getBuffer().length);
+		output.writeString("abc");
+		byte[] buffer = output.getBuffer();
+		streamFactory.release(output);
+		assertEquals(1, bufferPool.getPooledCount());
+
+		Input input = streamFactory.getInput(256);
+		assertSame(buffer, input.getBuffer());
+		assertEquals(0, input.limit());
+		streamFactory.release(input);
+
+		// The pooled buffer would exceed the maximum, so a buffer of the requested size is used.
+		assertEquals(200, streamFactory.getOutput(200, 200).getBuffer().length);
+		assertEquals(1, bufferPool.getPooledCount());
+
+		// Without a maximum, the Output is limited to the pooled buffer rather than the requested size.
+		output = streamFactory.getOutput(200);
+		assertSame(buffer, output.getBuffer());
+		output.writeBytes(new byte[256]);
+		try {
+			output.writeByte(0);
+			fail();
+		} catch (KryoException expected) {
+		}
+		streamFactory.release(output);
+		assertEquals(1, bufferPool.getPooledCount());
+	}
+
+	@Test
+	public void streamFactoryShouldUsePooledDirectBuffersForByteBufferStreams () {
+		BufferPool bufferPool = new BufferPool(128, 1024, 4);
+		PooledStreamFactory streamFactory = new PooledStreamFactory(bufferPool, new ByteBufferStreamFactory());
+		Output output = streamFactory.getOutput(200, -1);
+		assertTrue(output instanceof ByteBufferOutput);
+		ByteBuffer buffer = ((ByteBufferOutput)output).getByteBuffer();
+		assertTrue(buffer.isDirect());
+		assertEquals(256, buffer.capacity());
+		output.writeString("abc");
+		streamFactory.release(output);
+		assertEquals(1, bufferPool.getPooledDirectCount());
+		assertEquals(0, bufferPool.getPooledCount());
+
+		Input input = streamFactory.getInput(256);
+		assertTrue(input instanceof ByteBufferInput);
+		assertSame(buffer, ((ByteBufferInput)input).getByteBuffer());
+		assertEquals(0, input.limit());
+		streamFactory.release(input);
+		assertEquals(1, bufferPool.getPooledDirectCount());
+	}
+
+	@Test
+	public void runShouldReuseDirectBuffers () {
+		BufferPool bufferPool = new BufferPool();
+		KryoPool pool = new KryoPool.Builder(new KryoFactory() {
+			public Kryo create () {
+				Kryo kryo = new Kryo();
+				kryo.setStreamFactory(new ByteBufferStreamFactory());
+				return kryo;
+			}
+		}).bufferPool(bufferPool).build();
+		final byte[] bytes = new byte[100 * 1024];
+		int capacity = PooledStreamFactory.run(pool, new KryoStreamCallback<Integer>() {
+			public Integer execute (Kryo kryo, Input input, Output output) {
+				assertTrue(output instanceof ByteBufferOutput);
+				kryo.writeObject(output, bytes);
+				input.setBuffer(output.toBytes());
+				assertEquals(bytes.length, kryo.readObject(input, byte[].class).length);
+				return ((ByteBufferOutput)output).getByteBuffer().capacity();
+			}
+		});
+		assertEquals(128 * 1024, capacity);
+		// The grown buffer was returned to the pool and replaced with a small one.
+		assertEquals(1, bufferPool.getPooledDirectCount());
+		capacity = PooledStreamFactory.run(pool, new KryoStreamCallback<Integer>() {
+			public Integer execute (Kryo kryo, Input input, Output output) {
+				assertEquals(0, input.limit());
+				return ((ByteBufferOutput)output).getByteBuffer().capacity();
+			}
+		});
+		assertEquals(PooledStreamFactory.DEFAULT_BUFFER_SIZE, capacity);
+		assertEquals(0, bufferPool.getPooledCount());
+	}
+
+	@Test
+	public void runShouldReuseStreams () {
+		BufferPool bufferPool = new BufferPool();
+		KryoPool pool = new KryoPool.Builder(factory).bufferPool(bufferPool).build();
+		final ArrayList<Object> streams = new ArrayList<Object>();
+		KryoStreamCallback<Object> callback = new KryoStreamCallback<Object>() {
+			public Object execute (Kryo kryo, Input input, Output output) {
+				streams.add(input);
+				streams.add(output);
+				kryo.writeClassAndObject(output, "abc");
+				input.setBuffer(output.toBytes());
+				return kryo.readClassAndObject(input);
+			}
+		};
+		assertEquals("abc", PooledStreamFactory.run(pool, callback));
+		assertEquals("abc", PooledStreamFactory.run(pool, callback));
+		assertSame(streams.get(0), streams.get(2));
+		assertSame(streams.get(1), streams.get(3));
+		assertEquals(0, ((Output)streams.get(1)).position());
+	}
+
+	@Test
+	public void runShouldTrimLargeOutputBuffer () {
+		BufferPool bufferPool = new BufferPool();
+		KryoPool pool = new KryoPool.Builder(factory).bufferPool(bufferPool).build();
+		final byte[] bytes = new byte[100 * 1024];
+		Arrays.fill(bytes, (byte)1);
+		int length = PooledStreamFactory.run(pool, new KryoStreamCallback<Integer>() {
+			public Integer execute (Kryo kryo, Input input, Output output) {
+				kryo.writeObject(output, bytes);
+				return output.getBuffer().length;
+			}
+		});
+		assertEquals(128 * 1024, length);
+		length = PooledStreamFactory.run(pool, new KryoStreamCallback<Integer>() {
+			public Integer execute (Kryo kryo, Input input, Output output) {
+				return output.getBuffer().length;
+			}
+		});
+		assertEquals(PooledStreamFactory.DEFAULT_BUFFER_SIZE, length);
+		assertEquals(1, bufferPool.getPooledCount());
+	}
+
+	@Test
+	public void runWithoutBufferPoolShouldProvideStreams () {
+		KryoPool pool = new KryoPool.Builder(factory).maxSize(1).build();
+		Object result = PooledStreamFactory.run(pool, new KryoStreamCallback<Object>() {
+			public Object execute (Kryo kryo, Input input, Output output) {
+				kryo.writeObject(output, 42);
+				input.setBuffer(output.toBytes());
+				return kryo.readObject(input, Integer.class);
+			}
+		});
+		assertEquals(42, result);
+	}
+
+	static private class ByteBufferStreamFactory extends DefaultStreamFactory {
+		public Input getInput () {
+			return new ByteBufferInput();
+		}
+
+		public Output getOutput () {
+			return new ByteBufferOutput();
+		}
+	}
+}
@@ -20,6 +20,7 @@
 package com.esotericsoftware.kryo.pool;
 
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -39,6 +40,9 @@ public class KryoPoolBenchmarkTest {
 	private static final int ITER_CNT = 10000;
 	private static final int SLEEP_BETWEEN_RUNS = 100;
 
+	/** Numbers of threads borrowing and releasing concurrently. */
+	private static final int[] THREAD_CNTS = {1, 4, 16, 64};
+
 	// not private to prevent the synthetic accessor method
 	static KryoFactory factory = new KryoFactory() {
 		@Override
@@ -73,6 +77,26 @@ public class KryoPoolBenchmarkTest {
 		runWithPool(builder, RUN_CNT, ITER_CNT, true);
 	}
 
+	@Test
+	public void testWithStripedPool () throws Exception {
+		KryoPool.Builder builder = new KryoPool.Builder(factory).striped();
+		// Warm-up phase: Perform 100000 iterations
+		runWithPool(builder, 1, WARMUP_ITERATIONS, false);
+		runWithPool(builder, RUN_CNT, ITER_CNT, true);
+	}
+
+	@Test
+	public void testConcurrentPools () throws Exception {
+		KryoPool.Builder[] builders = {new KryoPool.Builder(factory), new KryoPool.Builder(factory).softReferences(),
+			new KryoPool.Builder(factory).striped(), new KryoPool.Builder(factory).striped().softReferences()};
+		for (KryoPool.Builder builder : builders)
+			runWithPoolConcurrently(builder, 1, WARMUP_ITERATIONS, 4, false);
+		for (int threadCount : THREAD_CNTS) {
+			for (KryoPool.Builder builder : builders)
+				runWithPoolConcurrently(builder, RUN_CNT, ITER_CNT, threadCount, true);
+		}
+	}
+
 	private void run (String description, Runnable runnable, final int runCount, final int iterCount, boolean outputResults)
 		throws Exception {
 		long avgDur = 0;
@@ -124,6 +148,34 @@ public class KryoPoolBenchmarkTest {
 		}, runCount, iterCount, outputResults);
 	}
 
+	private void runWithPoolConcurrently (final KryoPool.Builder builder, final int runCount, final int iterCount,
+		final int threadCount, boolean outputResults) throws Exception {
+		final KryoPool pool = builder.build();
+		run("With pool " + builder.toString() + ", " + threadCount + " threads", new Runnable() {
+			@Override
+			public void run () {
+				final CountDownLatch done = new CountDownLatch(threadCount);
+				for (int i = 0; i < threadCount; i++) {
+					new Thread() {
+						@Override
+						public void run () {
+							for (int j = 0; j < iterCount; j++) {
+								Kryo kryo = pool.borrow();
+								pool.release(kryo);
+							}
+							done.countDown();
+						}
+					}.start();
+				}
+				try {
+					done.await();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		}, runCount, 1, outputResults);
+	}
+
 	private void systemCleanupAfterRun () throws InterruptedException {
 		System.gc();
 		Thread.sleep(SLEEP_BETWEEN_RUNS);
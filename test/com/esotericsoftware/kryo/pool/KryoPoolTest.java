@@ -46,7 +46,8 @@ public class KryoPoolTest {
 
 	@Parameters
 	public static Collection<Object[]> data () {
-		return Arrays.asList(new Object[][] {{new KryoPool.Builder(factory)}, {new KryoPool.Builder(factory).softReferences()}});
+		return Arrays.asList(new Object[][] {{new KryoPool.Builder(factory)}, {new KryoPool.Builder(factory).softReferences()},
+			{new KryoPool.Builder(factory).striped()}, {new KryoPool.Builder(factory).striped().softReferences()}});
 	}
 
 	private KryoPool pool;
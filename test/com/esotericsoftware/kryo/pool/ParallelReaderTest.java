@@ -0,0 +1,186 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.RecordFileReader;
+import com.esotericsoftware.kryo.io.RecordFileWriter;
+import com.esotericsoftware.kryo.serializers.CollectionSerializer;
+
+public class ParallelReaderTest {
+	private static KryoFactory factory = new KryoFactory() {
+		public Kryo create () {
+			Kryo kryo = new Kryo();
+			kryo.register(ArrayList.class);
+			return kryo;
+		}
+	};
+
+	private KryoPool pool;
+	private ForkJoinPool forkJoinPool;
+	private ParallelReader reader;
+
+	@Before
+	public void beforeMethod () {
+		pool = new KryoPool.Builder(factory).build();
+		forkJoinPool = new ForkJoinPool(4);
+		reader = new ParallelReader(pool, forkJoinPool);
+		reader.setBatchSize(16);
+	}
+
+	@After
+	public void afterMethod () {
+		forkJoinPool.shutdown();
+	}
+
+	@Test
+	public void readRecordFile () throws Exception {
+		File file = File.createTempFile("kryo", ".records");
+		file.delete();
+		file.deleteOnExit();
+		RecordFileWriter writer = new RecordFileWriter(factory.create(), file);
+		for (int i = 0; i < 1000; i++)
+			writer.append(newList(i));
+		writer.close();
+
+		List<Object> results = reader.read(file);
+		assertEquals(1000, results.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(newList(i), results.get(i));
+
+		RecordFileReader fileReader = new RecordFileReader(factory.create(), file);
+		try {
+			results = reader.read(fileReader, 100, 200);
+			assertEquals(100, results.size());
+			for (int i = 0; i < 100; i++)
+				assertEquals(newList(i + 100), results.get(i));
+		} finally {
+			fileReader.close();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void readRecordFileWithBoundedPool () throws Exception {
+		File file = File.createTempFile("kryo", ".records");
+		file.delete();
+		file.deleteOnExit();
+		RecordFileWriter writer = new RecordFileWriter(factory.create(), file);
+		for (int i = 0; i < 100; i++)
+			writer.append(newList(i));
+		writer.close();
+
+		reader = new ParallelReader(new KryoPool.Builder(factory).maxSize(1).build(), forkJoinPool);
+		reader.setBatchSize(16);
+		List<Object> results = reader.read(file);
+		assertEquals(100, results.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals(newList(i), results.get(i));
+	}
+
+	@Test
+	public void readDelimited () {
+		Kryo kryo = factory.create();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Output output = new Output(stream);
+		Output record = new Output(1024, -1);
+		for (int i = 0; i < 1000; i++) {
+			record.clear();
+			kryo.writeClassAndObject(record, newList(i));
+			output.writeVarInt(record.position(), true);
+			output.writeBytes(record.getBuffer(), 0, record.position());
+		}
+		output.close();
+
+		List<Object> results = reader.readDelimited(new Input(stream.toByteArray()));
+		assertEquals(1000, results.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(newList(i), results.get(i));
+	}
+
+	@Test
+	public void readDelimitedInBatches () {
+		Kryo kryo = factory.create();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		Output output = new Output(stream);
+		Output record = new Output(1024, -1);
+		for (int i = 0; i < 1000; i++) {
+			record.clear();
+			kryo.writeClassAndObject(record, newList(i));
+			output.writeVarInt(record.position(), true);
+			output.writeBytes(record.getBuffer(), 0, record.position());
+		}
+		output.close();
+
+		final AtomicInteger deserialized = new AtomicInteger();
+		reader = new ParallelReader(new KryoPool.Builder(new KryoFactory() {
+			public Kryo create () {
+				Kryo kryo = new Kryo();
+				kryo.register(ArrayList.class, new CollectionSerializer() {
+					public Collection read (Kryo kryo, Input input, Class<Collection> type) {
+						deserialized.incrementAndGet();
+						return super.read(kryo, input, type);
+					}
+				});
+				return kryo;
+			}
+		}).build(), forkJoinPool);
+		reader.setBatchSize(16);
+		reader.setMaxPendingBatches(2);
+		final int[] deserializedAtEnd = {-1};
+		InputStream in = new ByteArrayInputStream(stream.toByteArray()) {
+			public synchronized int read (byte[] bytes, int offset, int length) {
+				int count = super.read(bytes, offset, Math.min(length, 64));
+				if (count == -1 && deserializedAtEnd[0] == -1) deserializedAtEnd[0] = deserialized.get();
+				return count;
+			}
+		};
+		List<Object> results = reader.readDelimited(new Input(in, 64));
+		assertEquals(1000, results.size());
+		for (int i = 0; i < 1000; i++)
+			assertEquals(newList(i), results.get(i));
+		// Batches are deserialized while the input is read, with at most 2 batches of 16 records pending.
+		assertTrue(deserializedAtEnd[0] >= 1000 - 2 * 16 - 16);
+	}
+
+	private ArrayList newList (int index) {
+		ArrayList list = new ArrayList();
+		list.add("record " + index);
+		list.add(index);
+		return list;
+	}
+}
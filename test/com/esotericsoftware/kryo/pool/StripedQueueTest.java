@@ -0,0 +1,68 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.pool;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Test;
+
+public class StripedQueueTest {
+
+	@Test
+	public void queueMethodsShouldSeeSlotsAndDelegate () {
+		StripedQueue<String> queue = new StripedQueue(new ConcurrentLinkedQueue(), 1);
+		// The first element goes to the slot, the others to the delegate.
+		queue.addAll(Arrays.asList("a", "b", "c"));
+		assertEquals(3, queue.size());
+		assertEquals("a", queue.peek());
+		assertEquals("a", queue.element());
+		assertTrue(queue.contains("a"));
+		assertTrue(queue.contains("c"));
+		assertFalse(queue.contains("d"));
+		assertTrue(queue.containsAll(Arrays.asList("a", "b")));
+		assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(queue.toArray()));
+		assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(queue.toArray(new String[0])));
+
+		assertTrue(queue.remove("a"));
+		assertFalse(queue.remove("a"));
+		assertEquals("b", queue.peek());
+		assertTrue(queue.retainAll(Arrays.asList("c")));
+		assertEquals(Arrays.asList("c"), new ArrayList(queue));
+		assertEquals("c", queue.remove());
+		assertTrue(queue.isEmpty());
+		assertNull(queue.peek());
+	}
+
+	@Test
+	public void iteratorShouldRemoveFromQueue () {
+		StripedQueue<String> queue = new StripedQueue(new ConcurrentLinkedQueue(), 4);
+		queue.addAll(Arrays.asList("a", "b", "c"));
+		for (Iterator<String> iterator = queue.iterator(); iterator.hasNext();)
+			if (!iterator.next().equals("b")) iterator.remove();
+		assertEquals(Arrays.asList("b"), new ArrayList(queue));
+		assertTrue(queue.removeAll(Arrays.asList("b")));
+		assertEquals(0, queue.size());
+	}
+}
@@ -0,0 +1,146 @@
+/* Copyright (c) 2008, Nathan Sweet
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following
+ * conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * - Neither the name of Esoteric Software nor the names of its contributors may be used to endorse or promote products derived
+ * from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING,
+ * BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. */
+
+package com.esotericsoftware.kryo.serializers;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.KryoTestCase;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoFactory;
+import com.esotericsoftware.kryo.pool.KryoPool;
+
+public class ParallelCollectionSerializerTest extends KryoTestCase {
+	private ForkJoinPool forkJoinPool;
+	private KryoPool pool;
+
+	protected void setUp () throws Exception {
+		super.setUp();
+		forkJoinPool = new ForkJoinPool(4);
+		pool = new KryoPool.Builder(new KryoFactory() {
+			public Kryo create () {
+				Kryo kryo = new Kryo();
+				register(kryo);
+				return kryo;
+			}
+		}).build();
+		register(kryo);
+	}
+
+	protected void tearDown () throws Exception {
+		forkJoinPool.shutdown();
+		super.tearDown();
+	}
+
+	private void register (Kryo kryo) {
+		kryo.setReferences(true);
+		ParallelCollectionSerializer serializer = new ParallelCollectionSerializer(pool, forkJoinPool);
+		serializer.setSegmentSize(100);
+		kryo.register(ArrayList.class, serializer);
+		kryo.register(LinkedList.class, serializer);
+		kryo.register(StringHolder.class);
+	}
+
+	public void testSegments () {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 1000; i++)
+			list.add(i % 3 == 0 ? "string " + i : i % 3 == 1 ? i : null);
+		assertEquals(list, write(list));
+
+		LinkedList small = new LinkedList();
+		small.add("a");
+		small.add(1);
+		assertEquals(small, write(small));
+
+		roundTrip(4, 4, new ArrayList());
+	}
+
+	public void testReferencesPerSegment () {
+		StringHolder holder = new StringHolder();
+		holder.value = "shared";
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 250; i++)
+			list.add(holder);
+
+		ArrayList result = write(list);
+		assertEquals(250, result.size());
+		// References are tracked within a segment, so each segment has its own copy.
+		assertSame(result.get(0), result.get(99));
+		assertNotSame(result.get(99), result.get(100));
+		assertSame(result.get(100), result.get(199));
+		assertEquals("shared", ((StringHolder)result.get(249)).value);
+	}
+
+	public void testNestedCollections () {
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 300; i++) {
+			ArrayList inner = new ArrayList();
+			for (int ii = 0; ii < i; ii++)
+				inner.add(ii);
+			list.add(inner);
+		}
+		assertEquals(list, write(list));
+	}
+
+	public void testBoundedPool () {
+		pool = new KryoPool.Builder(new KryoFactory() {
+			public Kryo create () {
+				Kryo kryo = new Kryo();
+				register(kryo);
+				return kryo;
+			}
+		}).maxSize(1).build();
+		register(kryo);
+		ArrayList list = new ArrayList();
+		for (int i = 0; i < 1000; i++)
+			list.add(i);
+		// The segments share the single pooled instance.
+		assertEquals(list, write(list));
+
+		// A Kryo borrowed from the same pool would wait for itself, so it fails instead.
+		Kryo borrowed = pool.borrow();
+		try {
+			borrowed.writeClassAndObject(new Output(1024, -1), list);
+			fail();
+		} catch (KryoException expected) {
+			assertTrue(expected.getMessage().contains("bounded pool"));
+		} finally {
+			pool.release(borrowed);
+		}
+	}
+
+	private <T> T write (T object) {
+		Output output = new Output(1024, -1);
+		kryo.writeClassAndObject(output, object);
+		return (T)kryo.readClassAndObject(new Input(output.toBytes()));
+	}
+
+	static public class StringHolder {
+		public String value;
+
+		public boolean equals (Object obj) {
+			return obj instanceof StringHolder && ((StringHolder)obj).value.equals(value);
+		}
+	}
+}